@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.json.Json;
+import org.jclouds.json.config.GsonModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cdancy.bitbucket.rest.domain.activities.ActivitiesPage;
+import com.cdancy.bitbucket.rest.domain.commit.Commit;
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.file.LinePage;
+import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequest;
+import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequestPage;
+import com.cdancy.bitbucket.rest.fallbacks.BitbucketFallbacks;
+import com.google.inject.Guice;
+
+/**
+ * Decoding of the json Bitbucket hands back, using the same jclouds Json
+ * the client itself uses, into our AutoValue domain objects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeserializationBenchmark {
+
+    private Json json;
+    private String pullRequest;
+    private String pullRequestPage;
+    private String activities;
+    private String linePageWithBlame;
+    private String commit;
+    private String errors;
+
+    @Setup
+    public void setup() {
+        json = Guice.createInjector(new GsonModule()).getInstance(Json.class);
+        pullRequest = Fixtures.load("/pull-request.json");
+        pullRequestPage = Fixtures.load("/pull-request-page.json");
+        activities = Fixtures.load("/pull-request-activities.json");
+        linePageWithBlame = Fixtures.load("/line-page-with-blame.json");
+        commit = Fixtures.load("/commit.json");
+        errors = Fixtures.load("/pull-request-activities-error.json");
+    }
+
+    @Benchmark
+    public PullRequest pullRequest() {
+        return json.fromJson(pullRequest, PullRequest.class);
+    }
+
+    @Benchmark
+    public PullRequestPage pullRequestPage() {
+        return json.fromJson(pullRequestPage, PullRequestPage.class);
+    }
+
+    @Benchmark
+    public ActivitiesPage activitiesPage() {
+        return json.fromJson(activities, ActivitiesPage.class);
+    }
+
+    @Benchmark
+    public LinePage linePageWithBlame() {
+        return json.fromJson(linePageWithBlame, LinePage.class);
+    }
+
+    @Benchmark
+    public Commit commit() {
+        return json.fromJson(commit, Commit.class);
+    }
+
+    @Benchmark
+    public List<Error> errors() {
+        return BitbucketFallbacks.getErrors(errors);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.http.HttpRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cdancy.bitbucket.rest.BitbucketAuthentication;
+import com.cdancy.bitbucket.rest.filters.BitbucketAuthenticationFilter;
+import com.cdancy.bitbucket.rest.filters.ScrubNullFromPathFilter;
+import com.google.inject.Guice;
+
+/**
+ * The request filters every call goes through before being sent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+    private ScrubNullFromPathFilter scrubNullFromPathFilter;
+    private BitbucketAuthenticationFilter authenticationFilter;
+    private HttpRequest withNulls;
+    private HttpRequest withoutNulls;
+
+    @Setup
+    public void setup() {
+        final BitbucketAuthentication authentication = BitbucketAuthentication.builder().credentials("admin:password").build();
+        scrubNullFromPathFilter = new ScrubNullFromPathFilter();
+        authenticationFilter = Guice.createInjector(binder -> binder.bind(BitbucketAuthentication.class).toInstance(authentication))
+                .getInstance(BitbucketAuthenticationFilter.class);
+        withNulls = HttpRequest.builder()
+                .method("GET")
+                .endpoint("http://127.0.0.1:7990/rest/api/1.0/projects/PRJ/repos/my-repo/browse/%7Bpath%7D/")
+                .build();
+        withoutNulls = HttpRequest.builder()
+                .method("GET")
+                .endpoint("http://127.0.0.1:7990/rest/api/1.0/projects/PRJ/repos/my-repo/pull-requests/101")
+                .build();
+    }
+
+    @Benchmark
+    public HttpRequest scrubNullFromPathWithNulls() {
+        return scrubNullFromPathFilter.filter(withNulls);
+    }
+
+    @Benchmark
+    public HttpRequest scrubNullFromPathWithoutNulls() {
+        return scrubNullFromPathFilter.filter(withoutNulls);
+    }
+
+    @Benchmark
+    public HttpRequest authentication() {
+        return authenticationFilter.filter(withoutNulls);
+    }
+}
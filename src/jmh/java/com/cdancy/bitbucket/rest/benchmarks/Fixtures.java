@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.Resources;
+
+/**
+ * Loads the json fixtures shared with the mock tests.
+ */
+class Fixtures {
+
+    static String load(final String resource) {
+        try {
+            return Resources.toString(Resources.getResource(Fixtures.class, resource), StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    protected Fixtures() {
+        throw new UnsupportedOperationException("Purposefully not implemented");
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.benchmarks;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequest;
+import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequestPage;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * Full trips through the client, from building the request to parsing
+ * the response, against a local MockWebServer handing back fixtures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    private MockWebServer server;
+    private BitbucketClient client;
+
+    @Setup
+    public void setup() throws IOException {
+        final String pullRequest = Fixtures.load("/pull-request.json");
+        final String pullRequestPage = Fixtures.load("/pull-request-page.json");
+
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                final String body = request.getPath().contains("/pull-requests/") ? pullRequest : pullRequestPage;
+                return new MockResponse().setBody(body).setResponseCode(200);
+            }
+        });
+        server.start();
+
+        final Properties overrides = new Properties();
+        overrides.setProperty(Constants.PROPERTY_MAX_RETRIES, "0");
+        client = BitbucketClient.builder()
+                .endPoint(server.getUrl("/").toString())
+                .credentials("admin:password")
+                .overrides(overrides)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        server.shutdown();
+    }
+
+    @Benchmark
+    public PullRequest getPullRequest() {
+        return client.api().pullRequestApi().get("PRJ", "my-repo", 101);
+    }
+
+    @Benchmark
+    public PullRequestPage listPullRequests() {
+        return client.api().pullRequestApi().list("PRJ", "my-repo", null, null, null, null, null, null, 0, 25);
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest;
+
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.concurrent.BitbucketExecutors;
+import com.cdancy.bitbucket.rest.concurrent.BoundedExecutor;
+import com.cdancy.bitbucket.rest.features.AdminApi;
+import com.cdancy.bitbucket.rest.features.BranchApi;
+import com.cdancy.bitbucket.rest.features.BuildStatusApi;
+import com.cdancy.bitbucket.rest.features.CommentsApi;
+import com.cdancy.bitbucket.rest.features.CommitsApi;
+import com.cdancy.bitbucket.rest.features.DefaultReviewersApi;
+import com.cdancy.bitbucket.rest.features.FileApi;
+import com.cdancy.bitbucket.rest.features.HookApi;
+import com.cdancy.bitbucket.rest.features.InsightsApi;
+import com.cdancy.bitbucket.rest.features.KeysApi;
+import com.cdancy.bitbucket.rest.features.ProjectApi;
+import com.cdancy.bitbucket.rest.features.PullRequestApi;
+import com.cdancy.bitbucket.rest.features.RepositoryApi;
+import com.cdancy.bitbucket.rest.features.SearchApi;
+import com.cdancy.bitbucket.rest.features.SyncApi;
+import com.cdancy.bitbucket.rest.features.SystemApi;
+import com.cdancy.bitbucket.rest.features.TagApi;
+import com.cdancy.bitbucket.rest.features.TasksApi;
+import com.cdancy.bitbucket.rest.features.WebHookApi;
+import com.cdancy.bitbucket.rest.snapshot.PullRequestSnapshot;
+import com.cdancy.bitbucket.rest.snapshot.PullRequestSnapshots;
+
+/**
+ * Asynchronous facade over {@link BitbucketApi}. Every call is handed the
+ * relevant feature Api and run on a background Executor, returning a
+ * CompletableFuture of the very same domain object (including any attached
+ * Error's should the endpoint fall back) the blocking call would have returned.
+ *
+ * <p>No more than `maxInFlight` calls are ever running at once with any
+ * additional calls being queued, without blocking the caller, until a slot
+ * frees up. For example:
+ *
+ * <p>{@code asyncApi.pullRequestApi(api -> api.canMerge("PRJ", "my-repo", 101))}
+ */
+public final class BitbucketAsyncApi implements Closeable {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+    private final BitbucketApi api;
+    private final BoundedExecutor executor;
+    private final ExecutorService ownedExecutor;
+
+    /**
+     * Create a BitbucketAsyncApi.
+     *
+     * @param api the blocking BitbucketApi to delegate to.
+     * @param executor optional Executor to run calls on. If null a pool of daemon
+     *     threads, owned and shutdown by this object, is created.
+     * @param maxInFlight maximum number of calls allowed to run at once.
+     */
+    public BitbucketAsyncApi(final BitbucketApi api,
+            @Nullable final ExecutorService executor,
+            final int maxInFlight) {
+        this(api, executor, maxInFlight, false);
+    }
+
+    /**
+     * Create a BitbucketAsyncApi.
+     *
+     * @param api the blocking BitbucketApi to delegate to.
+     * @param executor optional Executor to run calls on. If null an Executor,
+     *     owned and shutdown by this object, is created.
+     * @param maxInFlight maximum number of calls allowed to run at once.
+     * @param virtualThreads whether an internally created Executor should run
+     *     calls on virtual threads, when supported by the running JVM, rather
+     *     than a pool of daemon threads.
+     */
+    public BitbucketAsyncApi(final BitbucketApi api,
+            @Nullable final ExecutorService executor,
+            final int maxInFlight,
+            final boolean virtualThreads) {
+        this.api = Objects.requireNonNull(api, "api cannot be null");
+        if (executor != null) {
+            this.ownedExecutor = null;
+        } else {
+            this.ownedExecutor = virtualThreads
+                    ? BitbucketExecutors.newVirtualThreadPerTaskExecutor("bitbucket-rest-async-")
+                    : BitbucketExecutors.newDaemonCachedThreadPool("bitbucket-rest-async-%d");
+        }
+        this.executor = new BoundedExecutor(executor != null ? executor : ownedExecutor, maxInFlight);
+    }
+
+    /**
+     * Asynchronously execute a call against the BitbucketApi.
+     *
+     * @param <R> the type of object handed back by the call.
+     * @param call the blocking call to execute.
+     * @return CompletableFuture completed with the result of the call.
+     */
+    public <R> CompletableFuture<R> execute(final Function<BitbucketApi, R> call) {
+        Objects.requireNonNull(call, "call cannot be null");
+        final Call<R> task = new Call<>(api, call);
+        executor.execute(task);
+        return task.future;
+    }
+
+    public <R> CompletableFuture<R> adminApi(final Function<AdminApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.adminApi()));
+    }
+
+    public <R> CompletableFuture<R> branchApi(final Function<BranchApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.branchApi()));
+    }
+
+    public <R> CompletableFuture<R> buildStatusApi(final Function<BuildStatusApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.buildStatusApi()));
+    }
+
+    public <R> CompletableFuture<R> commentsApi(final Function<CommentsApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.commentsApi()));
+    }
+
+    public <R> CompletableFuture<R> commitsApi(final Function<CommitsApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.commitsApi()));
+    }
+
+    public <R> CompletableFuture<R> defaultReviewersApi(final Function<DefaultReviewersApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.defaultReviewersApi()));
+    }
+
+    public <R> CompletableFuture<R> fileApi(final Function<FileApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.fileApi()));
+    }
+
+    public <R> CompletableFuture<R> hookApi(final Function<HookApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.hookApi()));
+    }
+
+    public <R> CompletableFuture<R> webHookApi(final Function<WebHookApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.webHookApi()));
+    }
+
+    public <R> CompletableFuture<R> projectApi(final Function<ProjectApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.projectApi()));
+    }
+
+    public <R> CompletableFuture<R> pullRequestApi(final Function<PullRequestApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.pullRequestApi()));
+    }
+
+    public <R> CompletableFuture<R> repositoryApi(final Function<RepositoryApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.repositoryApi()));
+    }
+
+    public <R> CompletableFuture<R> syncApi(final Function<SyncApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.syncApi()));
+    }
+
+    public <R> CompletableFuture<R> systemApi(final Function<SystemApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.systemApi()));
+    }
+
+    public <R> CompletableFuture<R> tagApi(final Function<TagApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.tagApi()));
+    }
+
+    public <R> CompletableFuture<R> tasksApi(final Function<TasksApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.tasksApi()));
+    }
+
+    public <R> CompletableFuture<R> insightsApi(final Function<InsightsApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.insightsApi()));
+    }
+
+    public <R> CompletableFuture<R> keysApi(final Function<KeysApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.keysApi()));
+    }
+
+    public <R> CompletableFuture<R> searchApi(final Function<SearchApi, R> call) {
+        return execute(bitbucketApi -> call.apply(bitbucketApi.searchApi()));
+    }
+
+    /**
+     * Concurrently fetch the pull request, its merge status, participants,
+     * activities, and the build status summary and Code Insights reports of its
+     * head commit.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param pullRequestId the id of the pull request.
+     * @param timeout overall deadline for the snapshot.
+     * @param unit unit of `timeout`.
+     * @return CompletableFuture completed, no later than the deadline, with the snapshot.
+     * @see PullRequestSnapshots
+     */
+    public CompletableFuture<PullRequestSnapshot> pullRequestSnapshot(final String project,
+            final String repo,
+            final int pullRequestId,
+            final long timeout,
+            final TimeUnit unit) {
+        return PullRequestSnapshots.fetch(this, project, repo, pullRequestId, timeout, unit);
+    }
+
+    /**
+     * Number of calls currently running.
+     *
+     * @return number of running calls.
+     */
+    public int inFlight() {
+        return executor.inFlight();
+    }
+
+    /**
+     * Number of calls waiting for a free slot.
+     *
+     * @return number of queued calls.
+     */
+    public int queued() {
+        return executor.queued();
+    }
+
+    /**
+     * Shutdown the internally created Executor, if any, failing every call
+     * still queued with a RejectedExecutionException. Calls already running
+     * are left to complete. A passed in Executor is left untouched as its
+     * lifecycle belongs to the caller.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+            executor.rejectQueued();
+        }
+    }
+
+    /**
+     * A single call along with the CompletableFuture handed back for it,
+     * completed much as {@link CompletableFuture#supplyAsync} would.
+     */
+    private static final class Call<R> implements BoundedExecutor.RejectableTask {
+
+        private final BitbucketApi api;
+        private final Function<BitbucketApi, R> call;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        Call(final BitbucketApi api, final Function<BitbucketApi, R> call) {
+            this.api = api;
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            // calls cancelled while queued are never made
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(call.apply(api));
+            } catch (final Throwable e) { // NOPMD
+                future.completeExceptionally(e instanceof CompletionException ? e : new CompletionException(e));
+            }
+        }
+
+        @Override
+        public void reject(final RejectedExecutionException e) {
+            future.completeExceptionally(new CompletionException(e));
+        }
+    }
+}
@@ -18,16 +18,44 @@
 package com.cdancy.bitbucket.rest;
 
 import com.cdancy.bitbucket.rest.auth.AuthenticationType;
+import com.cdancy.bitbucket.rest.cache.ResponseCache;
+import com.cdancy.bitbucket.rest.cache.ResponseCachePolicy;
+import com.cdancy.bitbucket.rest.concurrent.BitbucketExecutors;
 import com.cdancy.bitbucket.rest.config.BitbucketAuthenticationModule;
+import com.cdancy.bitbucket.rest.config.BitbucketHttpCommandExecutorServiceModule;
+import com.cdancy.bitbucket.rest.interceptors.CompressionInterceptor;
+import com.cdancy.bitbucket.rest.interceptors.ConnectionLimitInterceptor;
+import com.cdancy.bitbucket.rest.interceptors.HttpCommandInterceptor;
+import com.cdancy.bitbucket.rest.interceptors.ImmutableResponseInterceptor;
+import com.cdancy.bitbucket.rest.interceptors.IsolationInterceptor;
+import com.cdancy.bitbucket.rest.interceptors.MetricsInterceptor;
+import com.cdancy.bitbucket.rest.interceptors.RateLimitInterceptor;
+import com.cdancy.bitbucket.rest.interceptors.ResponseCacheInterceptor;
+import com.cdancy.bitbucket.rest.interceptors.RetryInterceptor;
+import com.cdancy.bitbucket.rest.interceptors.SingleFlightInterceptor;
+import com.cdancy.bitbucket.rest.metrics.MetricsSink;
+import com.cdancy.bitbucket.rest.resilience.Isolation;
+import com.cdancy.bitbucket.rest.retry.RetryPolicy;
+import com.cdancy.bitbucket.rest.transport.PooledHttpTransport;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.AbstractModule;
 import com.google.inject.Module;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 import org.jclouds.ContextBuilder;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.http.HttpRetryHandler;
+import org.jclouds.http.annotation.ServerError;
 import org.jclouds.javax.annotation.Nullable;
 
 public final class BitbucketClient implements Closeable {
@@ -35,6 +63,7 @@ public final class BitbucketClient implements Closeable {
     private final String endPoint;
     private final BitbucketAuthentication credentials;
     private final BitbucketApi bitbucketApi;
+    private final BitbucketAsyncApi bitbucketAsyncApi;
     private final Properties overrides;
 
     /**
@@ -61,6 +90,14 @@ public final class BitbucketClient implements Closeable {
             @Nullable final BitbucketAuthentication authentication,
             @Nullable final Properties overrides,
             @Nullable final List<Module> modules) {
+        this(endPoint, authentication, overrides, modules, new Builder());
+    }
+
+    private BitbucketClient(@Nullable final String endPoint,
+            @Nullable final BitbucketAuthentication authentication,
+            @Nullable final Properties overrides,
+            @Nullable final List<Module> modules,
+            final Builder options) {
         this.endPoint = endPoint != null
                 ? endPoint
                 : BitbucketUtils.inferEndpoint();
@@ -68,14 +105,41 @@ public final class BitbucketClient implements Closeable {
                 ? authentication
                 : BitbucketUtils.inferAuthentication();
         this.overrides = mergeOverrides(overrides);
-        this.bitbucketApi = createApi(this.endPoint, this.credentials, this.overrides, modules);
+        this.bitbucketApi = createApi(this.endPoint, this.credentials, this.overrides, modules, options);
+        this.bitbucketAsyncApi = new BitbucketAsyncApi(this.bitbucketApi,
+                options.asyncExecutor,
+                options.maxAsyncRequests,
+                options.virtualThreads);
     }
 
     private BitbucketApi createApi(final String endPoint,
                                    final BitbucketAuthentication authentication,
                                    final Properties overrides,
-                                   final List<Module> modules) {
+                                   final List<Module> modules,
+                                   final Builder options) {
         final List<Module> allModules = Lists.newArrayList(new BitbucketAuthenticationModule(authentication));
+        final List<HttpCommandInterceptor> interceptors = options.buildInterceptors(authentication);
+        if (options.pooledTransport != null) {
+            allModules.add(new BitbucketHttpCommandExecutorServiceModule(options.pooledTransport.transportModule(),
+                    options.pooledTransport.transportType(),
+                    interceptors));
+        } else if (!interceptors.isEmpty()) {
+            allModules.add(new BitbucketHttpCommandExecutorServiceModule(interceptors));
+        }
+        if (options.retryPolicy != null) {
+            // let the RetryPolicy, rather than jclouds, decide which server errors
+            // are retried while leaving jclouds to follow redirects and retry IOException's
+            allModules.add(new AbstractModule() {
+                @Override
+                protected void configure() {
+                    bind(HttpRetryHandler.class).annotatedWith(ServerError.class).toInstance(HttpRetryHandler.NEVER_RETRY);
+                }
+            });
+        }
+        if (options.virtualThreads) {
+            allModules.add(new ExecutorServiceModule(MoreExecutors
+                    .listeningDecorator(BitbucketExecutors.newVirtualThreadPerTaskExecutor("bitbucket-rest-user-"))));
+        }
         if (modules != null) {
             allModules.addAll(modules);
         }
@@ -127,12 +191,19 @@ public final class BitbucketClient implements Closeable {
         return this.bitbucketApi;
     }
 
+    public BitbucketAsyncApi asyncApi() {
+        return this.bitbucketAsyncApi;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
 
     @Override
     public void close() throws IOException {
+        if (this.asyncApi() != null) {
+            this.asyncApi().close();
+        }
         if (this.api() != null) {
             this.api().close();
         }
@@ -140,10 +211,28 @@ public final class BitbucketClient implements Closeable {
 
     public static class Builder {
 
+        private static final int DEFAULT_VIRTUAL_THREADS_MAX_CONNECTIONS_PER_ENDPOINT = 256;
+
         private String endPoint;
         private BitbucketAuthentication.Builder authBuilder;
         private Properties overrides;
         private List<Module> modules = Lists.newArrayList();
+        private ExecutorService asyncExecutor;
+        private int maxAsyncRequests = BitbucketAsyncApi.DEFAULT_MAX_IN_FLIGHT;
+        private boolean virtualThreads;
+        private int maxConnectionsPerEndpoint;
+        private final List<HttpCommandInterceptor> interceptors = Lists.newArrayList();
+        private ResponseCache immutableResponseCache;
+        private ResponseCache responseCache;
+        private ResponseCachePolicy responseCachePolicy;
+        private boolean coalesceRequests;
+        private double rateLimitPermitsPerSecond;
+        private int rateLimitBurst;
+        private MetricsSink metricsSink;
+        private PooledHttpTransport pooledTransport;
+        private boolean compression;
+        private RetryPolicy retryPolicy;
+        private final Map<Class<?>, Isolation> isolations = Maps.newLinkedHashMap();
 
         /**
          * Define the base endpoint to connect to.
@@ -207,6 +296,254 @@ public final class BitbucketClient implements Closeable {
             return this;
         }
 
+        /**
+         * Optional ExecutorService to run calls made through the
+         * BitbucketAsyncApi on. Defaults to an internally managed pool
+         * of daemon threads.
+         *
+         * @param asyncExecutor optional ExecutorService for asynchronous calls.
+         * @return this Builder.
+         */
+        public Builder asyncExecutor(final ExecutorService asyncExecutor) {
+            this.asyncExecutor = asyncExecutor;
+            return this;
+        }
+
+        /**
+         * Optional maximum number of calls made through the BitbucketAsyncApi
+         * allowed to be in flight at once. Additional calls are queued.
+         *
+         * @param maxAsyncRequests maximum number of in flight asynchronous calls.
+         * @return this Builder.
+         */
+        public Builder maxAsyncRequests(final int maxAsyncRequests) {
+            this.maxAsyncRequests = maxAsyncRequests;
+            return this;
+        }
+
+        /**
+         * Optionally run all outbound requests, and the jclouds user executor,
+         * on virtual threads. When the running JVM does not support virtual
+         * threads (i.e. anything before Java 21) a pool of platform daemon
+         * threads is used instead.
+         *
+         * <p>Unless {@link #maxConnectionsPerEndpoint(int)} is also set the
+         * number of concurrent requests per endpoint is capped at 256.
+         *
+         * @param virtualThreads whether or not to use virtual threads.
+         * @return this Builder.
+         */
+        public Builder virtualThreads(final boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Optional cap on the number of requests concurrently in flight
+         * against any single endpoint. Requests beyond the cap wait for a
+         * free slot. Unbounded by default.
+         *
+         * @param maxConnectionsPerEndpoint maximum number of concurrent requests per endpoint.
+         * @return this Builder.
+         */
+        public Builder maxConnectionsPerEndpoint(final int maxConnectionsPerEndpoint) {
+            this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+            return this;
+        }
+
+        /**
+         * Optionally cache, indefinitely, the responses of reads pinned to a
+         * full commit SHA (e.g. `CommitsApi.get` or `FileApi.raw` at a given
+         * commit) as these can never change.
+         *
+         * @param immutableResponseCache where responses are stored. Should be size-bounded (e.g. WeightedResponseCache).
+         * @return this Builder.
+         */
+        public Builder immutableResponseCache(final ResponseCache immutableResponseCache) {
+            this.immutableResponseCache = immutableResponseCache;
+            return this;
+        }
+
+        /**
+         * Optionally cache, and conditionally revalidate, the responses of
+         * those read operations allowed by the passed policy.
+         *
+         * @param responseCache where responses are stored. May be shared amongst clients.
+         * @param responseCachePolicy which operations may be cached and for how long.
+         * @return this Builder.
+         */
+        public Builder responseCache(final ResponseCache responseCache, final ResponseCachePolicy responseCachePolicy) {
+            this.responseCache = responseCache;
+            this.responseCachePolicy = responseCachePolicy;
+            return this;
+        }
+
+        /**
+         * Optionally coalesce identical GET's made concurrently such that
+         * only one is sent and all callers share its response.
+         *
+         * @param coalesceRequests whether or not to coalesce identical GET's.
+         * @return this Builder.
+         */
+        public Builder coalesceRequests(final boolean coalesceRequests) {
+            this.coalesceRequests = coalesceRequests;
+            return this;
+        }
+
+        /**
+         * Optionally isolate calls made to the passed feature API from those
+         * made to every other API through a bulkhead, capping how many may
+         * be in flight at once, and a circuit breaker which fails calls fast
+         * once too many recent ones failed or were slow.
+         *
+         * @param apiType feature API to isolate (e.g. SearchApi.class).
+         * @param isolation limits and thresholds to apply.
+         * @return this Builder.
+         */
+        public Builder isolate(final Class<?> apiType, final Isolation isolation) {
+            this.isolations.put(apiType, isolation);
+            return this;
+        }
+
+        /**
+         * Optionally send failed requests again, as allowed by the passed
+         * policy, backing off between attempts. jclouds' own retries of
+         * server errors are turned off such that the policy alone decides
+         * which are retried. jclouds still follows redirects and retries
+         * requests failing with an IOException (e.g. a reset connection) up
+         * to `jclouds.max-retries` times. Should a {@link #rateLimit(double, int)}
+         * be set as well 429's are left to the rate limiter and never retried
+         * by the policy.
+         *
+         * @param retryPolicy when, how often, and how long to wait before retrying.
+         * @return this Builder.
+         */
+        public Builder retryPolicy(final RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Optionally pace requests, per endpoint, through a token bucket which
+         * adapts to the limits advertised by the server. Requests answered
+         * with a 429 are held back for as long as the server asks and then
+         * sent again rather than failed, up to 5 times, taking over 429's
+         * from any {@link #retryPolicy(RetryPolicy)}.
+         *
+         * @param permitsPerSecond rate at which requests may be sent until the server says otherwise.
+         * @param burst number of requests which may be sent back-to-back.
+         * @return this Builder.
+         */
+        public Builder rateLimit(final double permitsPerSecond, final int burst) {
+            this.rateLimitPermitsPerSecond = permitsPerSecond;
+            this.rateLimitBurst = burst;
+            return this;
+        }
+
+        /**
+         * Optionally send requests through a transport which pools, and
+         * reuses, keep-alive connections. The same PooledHttpTransport may
+         * be passed to several clients for them to share its pool.
+         *
+         * @param pooledTransport transport to send requests through.
+         * @return this Builder.
+         */
+        public Builder pooledTransport(final PooledHttpTransport pooledTransport) {
+            this.pooledTransport = pooledTransport;
+            return this;
+        }
+
+        /**
+         * Optionally ask for gzip or deflate compressed responses and
+         * transparently decompress them as they're parsed.
+         *
+         * @param compression whether or not to negotiate compressed responses.
+         * @return this Builder.
+         */
+        public Builder compression(final boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * Optionally record, per operation and status code, the count, errors,
+         * payload sizes, and latency of every request sent to the server.
+         *
+         * @param metricsSink where measurements are sent (e.g. InMemoryMetricsSink).
+         * @return this Builder.
+         */
+        public Builder metrics(final MetricsSink metricsSink) {
+            this.metricsSink = metricsSink;
+            return this;
+        }
+
+        /**
+         * Optional HttpCommandInterceptor's to wrap around every request sent.
+         * These are placed after any interceptors configured through this
+         * Builder's other options.
+         *
+         * @param interceptors optional HttpCommandInterceptor's to add.
+         * @return this Builder.
+         */
+        public Builder interceptors(final HttpCommandInterceptor... interceptors) {
+            this.interceptors.addAll(Arrays.asList(interceptors));
+            return this;
+        }
+
+        /**
+         * Assemble, in order, the HttpCommandInterceptor's configured by this Builder.
+         *
+         * @param authentication authentication the built client will use.
+         * @return possibly empty List of HttpCommandInterceptor's.
+         */
+        List<HttpCommandInterceptor> buildInterceptors(final BitbucketAuthentication authentication) {
+            final List<HttpCommandInterceptor> allInterceptors = Lists.newArrayList();
+
+            final String identity = Hashing.sha256()
+                    .hashString(authentication.authType() + ":" + authentication.authValue(), StandardCharsets.UTF_8)
+                    .toString();
+            if (immutableResponseCache != null) {
+                allInterceptors.add(new ImmutableResponseInterceptor(immutableResponseCache, identity));
+            }
+            if (responseCache != null) {
+                allInterceptors.add(new ResponseCacheInterceptor(responseCache,
+                        responseCachePolicy != null ? responseCachePolicy : ResponseCachePolicy.defaults(),
+                        identity));
+            }
+            if (coalesceRequests) {
+                allInterceptors.add(new SingleFlightInterceptor(identity));
+            }
+            if (!isolations.isEmpty()) {
+                allInterceptors.add(new IsolationInterceptor(isolations));
+            }
+            if (retryPolicy != null) {
+                // a rate limiter, if any, owns 429's as it already holds back and re-sends them
+                allInterceptors.add(new RetryInterceptor(retryPolicy, rateLimitPermitsPerSecond <= 0));
+            }
+            if (rateLimitPermitsPerSecond > 0) {
+                allInterceptors.add(new RateLimitInterceptor(identity, rateLimitPermitsPerSecond, rateLimitBurst));
+            }
+
+            final int maxConnections = maxConnectionsPerEndpoint > 0 || !virtualThreads
+                    ? maxConnectionsPerEndpoint
+                    : DEFAULT_VIRTUAL_THREADS_MAX_CONNECTIONS_PER_ENDPOINT;
+            if (maxConnections > 0) {
+                allInterceptors.add(new ConnectionLimitInterceptor(maxConnections));
+            }
+            if (pooledTransport != null && pooledTransport.connectionLimit() != null) {
+                allInterceptors.add(pooledTransport.connectionLimit());
+            }
+            if (compression) {
+                allInterceptors.add(new CompressionInterceptor());
+            }
+            if (metricsSink != null) {
+                allInterceptors.add(new MetricsInterceptor(metricsSink));
+            }
+
+            allInterceptors.addAll(interceptors);
+            return allInterceptors;
+        }
+
         /**
          * Build an instance of BitbucketClient.
          *
@@ -219,7 +556,7 @@ public final class BitbucketClient implements Closeable {
                     ? authBuilder.build()
                     : null;
 
-            return new BitbucketClient(endPoint, authentication, overrides, modules);
+            return new BitbucketClient(endPoint, authentication, overrides, modules, this);
         }
     }
 }
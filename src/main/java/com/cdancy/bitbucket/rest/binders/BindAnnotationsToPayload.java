@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.binders;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.core.MediaType;
+
+import org.jclouds.http.HttpRequest;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.jclouds.rest.Binder;
+
+import com.cdancy.bitbucket.rest.options.CreateAnnotations;
+import com.google.common.base.Throwables;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Bind CreateAnnotations as JSON, writing each annotation straight into the
+ * bytes sent rather than first rendering the whole list as a String. Large
+ * batches of annotations are thus held in memory once, as UTF-8, and sent
+ * with a known Content-Length.
+ */
+@Singleton
+public class BindAnnotationsToPayload implements Binder {
+
+    private final Gson gson;
+
+    @Inject
+    public BindAnnotationsToPayload(final Gson gson) {
+        this.gson = gson;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R extends HttpRequest> R bindToRequest(final R request, final Object createAnnotations) {
+        checkArgument(createAnnotations instanceof CreateAnnotations, "binder is only valid for CreateAnnotations");
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(bytes, UTF_8))) {
+            gson.toJson(createAnnotations, createAnnotations.getClass(), writer);
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        }
+        final Payload payload = Payloads.newByteArrayPayload(bytes.toByteArray());
+        payload.getContentMetadata().setContentType(MediaType.APPLICATION_JSON);
+        return (R) request.toBuilder().payload(payload).build();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.jclouds.http.HttpResponse;
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.HttpHeaders;
+
+/**
+ * Immutable copy of a response, along with its validators, as held by a
+ * ResponseCache.
+ */
+public final class CachedResponse {
+
+    private final int statusCode;
+    private final String message;
+    private final ImmutableMultimap<String, String> headers;
+    @Nullable
+    private final String contentType;
+    private final byte[] body;
+    private final long storedAt;
+
+    private CachedResponse(final int statusCode,
+            final String message,
+            final Multimap<String, String> headers,
+            @Nullable final String contentType,
+            final byte[] body,
+            final long storedAt) {
+        this.statusCode = statusCode;
+        this.message = message;
+        this.headers = ImmutableMultimap.copyOf(headers);
+        this.contentType = contentType;
+        this.body = body;
+        this.storedAt = storedAt;
+    }
+
+    public static CachedResponse create(final int statusCode,
+            final String message,
+            final Multimap<String, String> headers,
+            @Nullable final String contentType,
+            final byte[] body,
+            final long storedAt) {
+        return new CachedResponse(statusCode, message, headers, contentType, Arrays.copyOf(body, body.length), storedAt);
+    }
+
+    /**
+     * Copy, fully reading and closing its payload, the passed response.
+     *
+     * @param response the response to copy.
+     * @param storedAt epoch millis at which the response was received.
+     * @return copy of the passed response.
+     * @throws IOException if the payload could not be read.
+     */
+    public static CachedResponse from(final HttpResponse response, final long storedAt) throws IOException {
+        String contentType = null;
+        byte[] body = new byte[0];
+        if (response.getPayload() != null) {
+            contentType = response.getPayload().getContentMetadata().getContentType();
+            try (final InputStream stream = response.getPayload().openStream()) {
+                body = ByteStreams.toByteArray(stream);
+            } finally {
+                response.getPayload().release();
+            }
+        }
+        return new CachedResponse(response.getStatusCode(),
+                response.getMessage(),
+                response.getHeaders(),
+                contentType,
+                body,
+                storedAt);
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    public ImmutableMultimap<String, String> headers() {
+        return headers;
+    }
+
+    @Nullable
+    public String contentType() {
+        return contentType;
+    }
+
+    public byte[] body() {
+        return Arrays.copyOf(body, body.length);
+    }
+
+    /**
+     * Epoch millis at which this response was received, or last revalidated.
+     *
+     * @return epoch millis.
+     */
+    public long storedAt() {
+        return storedAt;
+    }
+
+    @Nullable
+    public String etag() {
+        return firstHeader(headers, HttpHeaders.ETAG);
+    }
+
+    @Nullable
+    public String lastModified() {
+        return firstHeader(headers, HttpHeaders.LAST_MODIFIED);
+    }
+
+    /**
+     * Whether or not the server handed back any validators which can be
+     * used to conditionally re-request this response.
+     *
+     * @return true if either an ETag or Last-Modified header is present.
+     */
+    public boolean hasValidators() {
+        return hasValidators(headers);
+    }
+
+    /**
+     * Whether or not the passed response headers carry any validators.
+     *
+     * @param headers response headers.
+     * @return true if either an ETag or Last-Modified header is present.
+     */
+    public static boolean hasValidators(final Multimap<String, String> headers) {
+        return firstHeader(headers, HttpHeaders.ETAG) != null
+                || firstHeader(headers, HttpHeaders.LAST_MODIFIED) != null;
+    }
+
+    /**
+     * Size, in bytes, of the body of this response.
+     *
+     * @return size of body.
+     */
+    public int weight() {
+        return body.length;
+    }
+
+    /**
+     * Copy of this response marked as having been revalidated at the passed time.
+     *
+     * @param revalidatedAt epoch millis at which the response was revalidated.
+     * @return copy of this response.
+     */
+    public CachedResponse revalidated(final long revalidatedAt) {
+        return new CachedResponse(statusCode, message, headers, contentType, body, revalidatedAt);
+    }
+
+    /**
+     * Build a fresh HttpResponse, with its own payload, from this response.
+     *
+     * @return HttpResponse equivalent to the one originally cached.
+     */
+    public HttpResponse toHttpResponse() {
+        final HttpResponse response = HttpResponse.builder()
+                .statusCode(statusCode)
+                .message(message)
+                .headers(headers)
+                .payload(body)
+                .build();
+        if (contentType != null) {
+            response.getPayload().getContentMetadata().setContentType(contentType);
+        }
+        return response;
+    }
+
+    @Nullable
+    private static String firstHeader(final Multimap<String, String> headers, final String name) {
+        for (final String key : headers.keySet()) {
+            if (key.equalsIgnoreCase(name)) {
+                return headers.get(key).iterator().next();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,652 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableListMultimap;
+
+/**
+ * ResponseCache persisted to a local directory such that it survives
+ * restarts of the JVM. Best paired with an ImmutableResponseInterceptor as
+ * responses pinned to a commit SHA can never go stale.
+ *
+ * <p>Responses are appended to a series of segment files, rolling over to a
+ * new segment once the current one reaches `maxSegmentBytes`. Responses of
+ * full segments are read back through a memory-mapping of their segment,
+ * made once, whereas those of the segment being appended to are read
+ * straight from its file. The index of where each
+ * response lives is rebuilt, by scanning the headers of each record, when
+ * the cache is opened. Replaced and invalidated responses are left behind
+ * as garbage until the segment holding them is compacted.
+ *
+ * <p>Once the segments on disk grow beyond `maxBytes` the oldest segment is
+ * compacted, by copying its still live responses forward, if mostly garbage
+ * or otherwise dropped along with every response it holds.
+ *
+ * <p>Failing to write to disk (e.g. a full disk) is never the caller's
+ * problem: a response which could not be stored is simply a miss, and an
+ * invalidation whose tombstone could not be written takes effect right away
+ * with its tombstone written along with the next record which can be.
+ */
+public class DiskResponseCache implements ResponseCache, Closeable {
+
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private static final long MAX_SEGMENT_BYTES = 1024L * 1024 * 1024;
+    private static final int MAGIC = 0xB17B0C4E;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final byte PUT = 1;
+    private static final byte TOMBSTONE = 0;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.dat");
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxSegmentBytes;
+    private final Map<String, Location> index = new HashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Set<String> unwrittenTombstones = new LinkedHashSet<>();
+    private long nextSegmentId;
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public DiskResponseCache(final Path directory, final long maxBytes) {
+        this(directory, maxBytes, Math.max(1, Math.min(DEFAULT_MAX_SEGMENT_BYTES, maxBytes / 4)));
+    }
+
+    /**
+     * Open, creating if need be, a DiskResponseCache.
+     *
+     * @param directory directory in which to keep segment files.
+     * @param maxBytes maximum number of bytes, across all segments, to keep on disk.
+     * @param maxSegmentBytes size at which to roll over to a new segment.
+     */
+    public DiskResponseCache(final Path directory, final long maxBytes, final long maxSegmentBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be greater than 0: " + maxBytes);
+        } else if (maxSegmentBytes < 1 || maxSegmentBytes > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("maxSegmentBytes must be between 1 and " + MAX_SEGMENT_BYTES + ": " + maxSegmentBytes);
+        }
+        this.directory = Objects.requireNonNull(directory, "directory cannot be null");
+        this.maxBytes = maxBytes;
+        this.maxSegmentBytes = maxSegmentBytes;
+        try {
+            Files.createDirectories(directory);
+            load();
+            if (segments.isEmpty()) {
+                roll();
+            }
+            enforceMaxBytes();
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public synchronized CachedResponse get(final String key) {
+        final Location location = index.get(key);
+        if (location == null) {
+            misses++;
+            return null;
+        }
+        final boolean interrupted = Thread.interrupted();
+        try {
+            final CachedResponse response = decode(segments.get(location.segmentId).read(location.offset, location.length));
+            hits++;
+            return response;
+        } catch (final IOException | RuntimeException e) {
+            // treat a corrupt record as a miss so it gets re-fetched and re-written
+            index.remove(key);
+            misses++;
+            return null;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Store the passed response. Failing to write it (e.g. a full disk) is
+     * not the caller's problem, the server having answered just fine, so
+     * the key is merely left uncached.
+     */
+    @Override
+    public synchronized void put(final String key, final CachedResponse response) {
+        final boolean interrupted = Thread.interrupted();
+        try {
+            final ByteBuffer record = encode(key, response);
+            if (record.remaining() > maxBytes) {
+                invalidate(key);
+                return;
+            }
+            writeTombstones();
+            index.put(key, append(record));
+        } catch (final IOException e) {
+            // whatever was stored before is outdated by now
+            invalidate(key);
+            return;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // the response is safely stored, failing to make room for it is no reason to forget it
+        enforceMaxBytesQuietly();
+    }
+
+    /**
+     * Invalidate the passed key. Should its tombstone fail to be written the
+     * key is gone all the same, the tombstone being written along with the
+     * next record which can be.
+     */
+    @Override
+    public synchronized void invalidate(final String key) {
+        if (!index.containsKey(key) && !unwrittenTombstones.contains(key)) {
+            return;
+        }
+        index.remove(key);
+        unwrittenTombstones.add(key);
+        final boolean interrupted = Thread.interrupted();
+        try {
+            writeTombstones();
+        } catch (final IOException e) { // NOPMD
+            // kept in unwrittenTombstones until the disk lets us write it
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        enforceMaxBytesQuietly();
+    }
+
+    /**
+     * Drop every response. Responses are forgotten right away, whereas
+     * segments failing to be deleted are left behind on disk along with any
+     * tombstones still to be written.
+     */
+    @Override
+    public synchronized void invalidateAll() {
+        final List<Segment> dropped = new ArrayList<>(segments.values());
+        segments.clear();
+        index.clear();
+        totalBytes = 0;
+
+        final boolean interrupted = Thread.interrupted();
+        try {
+            for (final Segment segment : dropped) {
+                try {
+                    segment.delete();
+                } catch (final IOException e) { // NOPMD
+                    // every response it holds is already forgotten
+                }
+            }
+            try {
+                roll();
+            } catch (final IOException e) { // NOPMD
+                // rolled again by the next append
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public synchronized long size() {
+        return index.size();
+    }
+
+    /**
+     * Copy the live responses of every segment, save for the one currently
+     * being appended to, forward and delete those segments thereby
+     * reclaiming the space taken by replaced and invalidated responses.
+     */
+    public synchronized void compact() {
+        try {
+            final Segment active = segments.lastEntry().getValue();
+            for (final Segment segment : new ArrayList<>(segments.values())) {
+                if (segment != active) {
+                    compact(segment);
+                }
+            }
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Number of bytes, across all segments, currently on disk.
+     *
+     * @return bytes on disk.
+     */
+    public synchronized long bytesOnDisk() {
+        return totalBytes;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Number of live responses dropped to keep within `maxBytes`.
+     *
+     * @return number of evictions.
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            writeTombstones();
+        } catch (final IOException e) { // NOPMD
+            // nothing more can be done, the invalidated responses come back on restart
+        }
+        for (final Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    private void load() throws IOException {
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (final Path file : files) {
+                final Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    final long id = Long.parseLong(matcher.group(1));
+                    segments.put(id, new Segment(id, file));
+                }
+            }
+        }
+        for (final Segment segment : segments.values()) {
+            if (segment != segments.lastEntry().getValue()) {
+                segment.seal();
+            }
+            scan(segment);
+            totalBytes += segment.size;
+        }
+        nextSegmentId = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+    }
+
+    /**
+     * Index every record of the passed segment, truncating any partially
+     * written record found at its tail (e.g. after a crash).
+     */
+    private void scan(final Segment segment) throws IOException {
+        final ByteBuffer buffer = segment.map();
+        int position = 0;
+        while (position + RECORD_HEADER_BYTES <= buffer.limit()) {
+            buffer.position(position);
+            final int magic = buffer.getInt();
+            final int length = buffer.getInt();
+            if (magic != MAGIC || length < 0 || position + RECORD_HEADER_BYTES + length > buffer.limit()) {
+                break;
+            }
+            final String key;
+            final byte type;
+            try {
+                key = readString(buffer);
+                type = buffer.get();
+            } catch (final RuntimeException e) {
+                break;
+            }
+            if (key == null) {
+                break;
+            } else if (type == PUT) {
+                index.put(key, new Location(segment.id, position, RECORD_HEADER_BYTES + length));
+            } else {
+                index.remove(key);
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        if (position < segment.size) {
+            segment.truncate(position);
+        }
+    }
+
+    private Location append(final ByteBuffer record) throws IOException {
+        final int length = record.remaining();
+        Segment active = segments.isEmpty() ? roll() : segments.lastEntry().getValue();
+        if (active.size > 0 && active.size + length > maxSegmentBytes) {
+            active = roll();
+        }
+        final long offset = active.append(record);
+        totalBytes += length;
+        return new Location(active.id, offset, length);
+    }
+
+    private Segment roll() throws IOException {
+        if (!segments.isEmpty()) {
+            segments.lastEntry().getValue().seal();
+        }
+        final long id = nextSegmentId;
+        final Segment segment = new Segment(id, directory.resolve("segment-" + id + ".dat"));
+        segments.put(id, segment);
+        nextSegmentId = id + 1;
+        return segment;
+    }
+
+    /**
+     * Write the tombstones of every key invalidated while the disk would not
+     * let us, before any record which could otherwise be mistaken for newer.
+     */
+    private void writeTombstones() throws IOException {
+        final Iterator<String> keys = unwrittenTombstones.iterator();
+        while (keys.hasNext()) {
+            append(encode(keys.next(), null));
+            keys.remove();
+        }
+    }
+
+    /**
+     * Enforce `maxBytes`, leaving the segments on disk as large as they are
+     * should that fail as every response indexed is still where it was.
+     */
+    private void enforceMaxBytesQuietly() {
+        final boolean interrupted = Thread.interrupted();
+        try {
+            enforceMaxBytes();
+        } catch (final IOException e) { // NOPMD
+            // retried by the next write
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void enforceMaxBytes() throws IOException {
+        while (totalBytes > maxBytes && segments.size() > 1) {
+            final Segment oldest = segments.firstEntry().getValue();
+            long liveBytes = 0;
+            for (final Location location : index.values()) {
+                if (location.segmentId == oldest.id) {
+                    liveBytes += location.length;
+                }
+            }
+            if (liveBytes * 2 < oldest.size) {
+                compact(oldest);
+            } else {
+                drop(oldest);
+            }
+        }
+    }
+
+    private void compact(final Segment segment) throws IOException {
+        final List<Map.Entry<String, Location>> live = new ArrayList<>();
+        for (final Map.Entry<String, Location> entry : index.entrySet()) {
+            if (entry.getValue().segmentId == segment.id) {
+                live.add(entry);
+            }
+        }
+        // only point the index at the copies once every one of them made it
+        // to disk, the originals are still where they were otherwise.
+        final List<Location> copies = new ArrayList<>(live.size());
+        for (final Map.Entry<String, Location> entry : live) {
+            final Location location = entry.getValue();
+            copies.add(append(segment.read(location.offset, location.length)));
+        }
+        for (int i = 0; i < live.size(); i++) {
+            index.put(live.get(i).getKey(), copies.get(i));
+        }
+        remove(segment);
+    }
+
+    private void drop(final Segment segment) throws IOException {
+        final Iterator<Location> locations = index.values().iterator();
+        while (locations.hasNext()) {
+            if (locations.next().segmentId == segment.id) {
+                locations.remove();
+                evictions++;
+            }
+        }
+        remove(segment);
+    }
+
+    private void remove(final Segment segment) throws IOException {
+        segments.remove(segment.id);
+        totalBytes -= segment.size;
+        segment.delete();
+        if (segments.isEmpty()) {
+            roll();
+        }
+    }
+
+    private static ByteBuffer encode(final String key, @Nullable final CachedResponse response) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(0); // length, filled in below
+            writeString(out, key);
+            if (response == null) {
+                out.writeByte(TOMBSTONE);
+            } else {
+                out.writeByte(PUT);
+                out.writeLong(response.storedAt());
+                out.writeInt(response.statusCode());
+                writeString(out, response.message());
+                writeString(out, response.contentType());
+                out.writeInt(response.headers().size());
+                for (final Map.Entry<String, String> header : response.headers().entries()) {
+                    writeString(out, header.getKey());
+                    writeString(out, header.getValue());
+                }
+                final byte[] body = response.body();
+                out.writeInt(body.length);
+                out.write(body);
+            }
+        }
+        final ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        record.putInt(4, record.limit() - RECORD_HEADER_BYTES);
+        return record;
+    }
+
+    private static CachedResponse decode(final ByteBuffer record) {
+        if (record.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Corrupt record: bad magic");
+        }
+        record.getInt(); // length
+        readString(record); // key
+        if (record.get() != PUT) {
+            throw new IllegalArgumentException("Corrupt record: not a response");
+        }
+        final long storedAt = record.getLong();
+        final int statusCode = record.getInt();
+        final String message = readString(record);
+        final String contentType = readString(record);
+        final int headerCount = record.getInt();
+        final ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+        for (int i = 0; i < headerCount; i++) {
+            headers.put(readString(record), readString(record));
+        }
+        final byte[] body = new byte[record.getInt()];
+        record.get(body);
+        return CachedResponse.create(statusCode, message, headers.build(), contentType, body, storedAt);
+    }
+
+    private static void writeString(final DataOutputStream out, @Nullable final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = value.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    @Nullable
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static final class Location {
+
+        private final long segmentId;
+        private final long offset;
+        private final int length;
+
+        Location(final long segmentId, final long offset, final int length) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Segment implements Closeable {
+
+        private final long id;
+        private final Path path;
+        private FileChannel channel;
+        private long size;
+        private boolean sealed;
+        private MappedByteBuffer mapped;
+
+        Segment(final long id, final Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+
+        long append(final ByteBuffer record) throws IOException {
+            final long offset = size;
+            long position = offset;
+            while (record.hasRemaining()) {
+                position += channel().write(record, position);
+            }
+            size = position;
+            return offset;
+        }
+
+        /**
+         * Read the passed range through a memory-mapping of this segment,
+         * made once it is full, or straight from its file while it is still
+         * being appended to.
+         */
+        ByteBuffer read(final long offset, final int length) throws IOException {
+            if (sealed && mapped == null) {
+                mapped = channel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            if (mapped != null && offset + length <= mapped.capacity()) {
+                final ByteBuffer view = mapped.duplicate();
+                view.position((int) offset);
+                view.limit((int) offset + length);
+                return view.slice();
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel().read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("Record extends past the end of " + path);
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        /**
+         * Map this segment as a whole, keeping the mapping if it is full.
+         */
+        ByteBuffer map() throws IOException {
+            final MappedByteBuffer all = channel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (sealed) {
+                mapped = all;
+            }
+            return all;
+        }
+
+        /**
+         * Mark this segment as full, no longer being appended to.
+         */
+        void seal() {
+            sealed = true;
+        }
+
+        void truncate(final long newSize) throws IOException {
+            channel().truncate(newSize);
+            size = newSize;
+            mapped = null;
+        }
+
+        void delete() throws IOException {
+            close();
+            Files.deleteIfExists(path);
+        }
+
+        @Override
+        public void close() throws IOException {
+            mapped = null;
+            channel.close();
+        }
+
+        /**
+         * The channel of this segment, reopened if a thread interrupted part
+         * way through I/O on it closed it.
+         */
+        private FileChannel channel() throws IOException {
+            if (!channel.isOpen()) {
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ResponseCache holding, on heap, up to a fixed number of responses and
+ * evicting the least recently used one once full.
+ */
+public class InMemoryResponseCache implements ResponseCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final int maxEntries;
+    private final Map<String, CachedResponse> entries;
+
+    public InMemoryResponseCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public InMemoryResponseCache(final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedResponse> eldest) {
+                return size() > InMemoryResponseCache.this.maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized CachedResponse get(final String key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized void put(final String key, final CachedResponse response) {
+        entries.put(key, response);
+    }
+
+    @Override
+    public synchronized void invalidate(final String key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    @Override
+    public synchronized long size() {
+        return entries.size();
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+}
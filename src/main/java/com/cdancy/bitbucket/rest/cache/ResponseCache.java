@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.cache;
+
+import org.jclouds.javax.annotation.Nullable;
+
+/**
+ * Store of CachedResponse's keyed by request (i.e. caller identity, method,
+ * and full URI). Implementations must be safe for concurrent use.
+ */
+public interface ResponseCache {
+
+    /**
+     * Look up the response cached against the passed key.
+     *
+     * @param key the key to look up.
+     * @return cached response or null if none.
+     */
+    @Nullable
+    CachedResponse get(String key);
+
+    /**
+     * Cache, replacing any existing entry, the passed response.
+     *
+     * @param key the key to cache the response against.
+     * @param response the response to cache.
+     */
+    void put(String key, CachedResponse response);
+
+    /**
+     * Drop the response cached against the passed key, if any.
+     *
+     * @param key the key to drop.
+     */
+    void invalidate(String key);
+
+    /**
+     * Drop every cached response.
+     */
+    void invalidateAll();
+
+    /**
+     * Number of responses currently cached.
+     *
+     * @return number of cached responses.
+     */
+    long size();
+}
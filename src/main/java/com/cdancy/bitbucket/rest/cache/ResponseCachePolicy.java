@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.cache;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Which operations, by their `@Named` name (e.g. `repository:get`), may have
+ * their responses cached and for how long.
+ *
+ * <p>Operations added through {@link Builder#revalidate(String...)} are always
+ * conditionally re-requested, using whatever ETag and/or Last-Modified
+ * validators the server handed back, with the cached response served on a
+ * 304. Operations added through {@link Builder#ttl(long, TimeUnit, String...)}
+ * are served straight from cache, without contacting the server at all, until
+ * their time-to-live lapses after which they too are revalidated, if possible,
+ * or requested anew.
+ */
+public final class ResponseCachePolicy {
+
+    private static final Long REVALIDATE = 0L;
+
+    private final Map<String, Long> ttlMillis;
+
+    private ResponseCachePolicy(final Map<String, Long> ttlMillis) {
+        this.ttlMillis = ImmutableMap.copyOf(ttlMillis);
+    }
+
+    /**
+     * Policy revalidating the read endpoints which tend to hand back
+     * unchanged data on most polls.
+     *
+     * @return default ResponseCachePolicy.
+     */
+    public static ResponseCachePolicy defaults() {
+        return builder()
+                .revalidate("project:get",
+                        "repository:get",
+                        "branch:get-default",
+                        "branch:list-branch-permission",
+                        "hook:list-hooks")
+                .build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Whether or not responses of the passed operation may be cached.
+     *
+     * @param commandName name of the operation.
+     * @return true if cacheable.
+     */
+    public boolean isCacheable(final String commandName) {
+        return ttlMillis.containsKey(commandName);
+    }
+
+    /**
+     * Time, in millis, responses of the passed operation may be served
+     * without contacting the server.
+     *
+     * @param commandName name of the operation.
+     * @return time-to-live in millis or 0 if they must always be revalidated.
+     */
+    public long ttlMillis(final String commandName) {
+        final Long ttl = ttlMillis.get(commandName);
+        return ttl != null ? ttl : REVALIDATE;
+    }
+
+    public static class Builder {
+
+        private final Map<String, Long> ttlMillis = Maps.newHashMap();
+
+        /**
+         * Cache, always revalidating, responses of the passed operations.
+         *
+         * @param commandNames names of the operations.
+         * @return this Builder.
+         */
+        public Builder revalidate(final String... commandNames) {
+            for (final String commandName : commandNames) {
+                ttlMillis.put(commandName, REVALIDATE);
+            }
+            return this;
+        }
+
+        /**
+         * Cache, serving without contacting the server for the passed
+         * duration, responses of the passed operations.
+         *
+         * @param ttl how long responses may be served from cache.
+         * @param unit unit of `ttl`.
+         * @param commandNames names of the operations.
+         * @return this Builder.
+         */
+        public Builder ttl(final long ttl, final TimeUnit unit, final String... commandNames) {
+            if (ttl < 1) {
+                throw new IllegalArgumentException("ttl must be greater than 0: " + ttl);
+            }
+            for (final String commandName : commandNames) {
+                ttlMillis.put(commandName, unit.toMillis(ttl));
+            }
+            return this;
+        }
+
+        public ResponseCachePolicy build() {
+            return new ResponseCachePolicy(ttlMillis);
+        }
+    }
+}
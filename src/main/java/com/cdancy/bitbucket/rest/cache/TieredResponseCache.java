@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.cache;
+
+import java.util.Objects;
+
+/**
+ * ResponseCache layering a fast, typically in-memory, cache in front of a
+ * slower but larger, typically on-disk, one. Responses are written to both
+ * and responses only found in the second tier are promoted to the first.
+ */
+public class TieredResponseCache implements ResponseCache {
+
+    private final ResponseCache first;
+    private final ResponseCache second;
+
+    public TieredResponseCache(final ResponseCache first, final ResponseCache second) {
+        this.first = Objects.requireNonNull(first, "first cannot be null");
+        this.second = Objects.requireNonNull(second, "second cannot be null");
+    }
+
+    @Override
+    public CachedResponse get(final String key) {
+        CachedResponse response = first.get(key);
+        if (response == null) {
+            response = second.get(key);
+            if (response != null) {
+                first.put(key, response);
+            }
+        }
+        return response;
+    }
+
+    @Override
+    public void put(final String key, final CachedResponse response) {
+        first.put(key, response);
+        second.put(key, response);
+    }
+
+    @Override
+    public void invalidate(final String key) {
+        first.invalidate(key);
+        second.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        first.invalidateAll();
+        second.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+        return second.size();
+    }
+}
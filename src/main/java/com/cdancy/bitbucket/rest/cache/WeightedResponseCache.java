@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * ResponseCache bounded by the total number of bytes it holds, rather than by
+ * its number of entries, evicting the least recently used responses once full.
+ * Hit, miss, and eviction counts are recorded and exposed through {@link #stats()}.
+ */
+public class WeightedResponseCache implements ResponseCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final long maxBytes;
+    private final Cache<String, CachedResponse> entries;
+
+    public WeightedResponseCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public WeightedResponseCache(final long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be greater than 0: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.entries = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((final String key, final CachedResponse response) -> key.length() + response.weight())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public CachedResponse get(final String key) {
+        return entries.getIfPresent(key);
+    }
+
+    @Override
+    public void put(final String key, final CachedResponse response) {
+        entries.put(key, response);
+    }
+
+    @Override
+    public void invalidate(final String key) {
+        entries.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+        return entries.size();
+    }
+
+    /**
+     * Snapshot of the hit, miss, and eviction counts recorded thus far.
+     *
+     * @return CacheStats snapshot.
+     */
+    public CacheStats stats() {
+        return entries.stats();
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+}
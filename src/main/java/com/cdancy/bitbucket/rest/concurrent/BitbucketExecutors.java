@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Factory methods for the ExecutorService's used throughout this library.
+ *
+ * <p>Virtual threads are looked up reflectively as this library still targets
+ * Java 8. When running on a JVM without them (i.e. anything before Java 21)
+ * we gracefully degrade to a cached pool of platform daemon threads.
+ */
+public class BitbucketExecutors {
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY_PROTOTYPE = virtualThreadFactory("bitbucket-rest-probe-");
+
+    /**
+     * Whether or not the running JVM supports virtual threads.
+     *
+     * @return true if virtual threads are available.
+     */
+    public static boolean virtualThreadsSupported() {
+        return VIRTUAL_THREAD_FACTORY_PROTOTYPE != null;
+    }
+
+    /**
+     * Create a cached pool of daemon threads.
+     *
+     * @param nameFormat name format, as understood by ThreadFactoryBuilder, for created threads.
+     * @return ExecutorService backed by daemon threads.
+     */
+    public static ExecutorService newDaemonCachedThreadPool(final String nameFormat) {
+        return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat(nameFormat)
+                .build());
+    }
+
+    /**
+     * Create a single daemon thread for running scheduled tasks (e.g. deadlines).
+     *
+     * @param nameFormat name format, as understood by ThreadFactoryBuilder, for the created thread.
+     * @return ScheduledExecutorService backed by a single daemon thread.
+     */
+    public static ScheduledExecutorService newDaemonScheduledExecutor(final String nameFormat) {
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat(nameFormat)
+                .build());
+    }
+
+    /**
+     * Create an ExecutorService which starts a new virtual thread for every
+     * task. Falls back to {@link #newDaemonCachedThreadPool(String)} should
+     * the running JVM not support virtual threads.
+     *
+     * @param namePrefix prefix given to the name of every created thread.
+     * @return ExecutorService backed by virtual threads when supported.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(final String namePrefix) {
+        final ThreadFactory factory = virtualThreadFactory(namePrefix);
+        if (factory != null) {
+            try {
+                final Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory);
+            } catch (final ReflectiveOperationException | RuntimeException e) { // NOPMD
+                // fall through to platform threads below
+            }
+        }
+        return newDaemonCachedThreadPool(namePrefix + "%d");
+    }
+
+    /**
+     * Reflectively build the equivalent of
+     * {@code Thread.ofVirtual().name(namePrefix, 0).factory()}.
+     *
+     * @param namePrefix prefix given to the name of every created thread.
+     * @return ThreadFactory for virtual threads or null if not supported.
+     */
+    private static ThreadFactory virtualThreadFactory(final String namePrefix) {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            final Object namedBuilder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(namedBuilder);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    protected BitbucketExecutors() {
+        throw new UnsupportedOperationException("Purposefully not implemented");
+    }
+}
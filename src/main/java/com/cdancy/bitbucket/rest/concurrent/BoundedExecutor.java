@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.concurrent;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor which hands tasks to a delegate Executor while never allowing
+ * more than `maxInFlight` of them to run at the same time. Tasks submitted
+ * while the limit is reached are queued, without blocking the submitter,
+ * and dispatched in order as running tasks complete.
+ *
+ * <p>Tasks the delegate rejects, e.g. once it has been shutdown, are handed
+ * their rejection if they are a {@link RejectableTask} so whoever waits on
+ * them can be failed. Other tasks rejected while dispatching those queued
+ * behind them are dropped, while a task rejected straight away is rethrown
+ * to its submitter.
+ */
+public final class BoundedExecutor implements Executor {
+
+    private final Executor delegate;
+    private final int maxInFlight;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Task which can be told that it will never run.
+     */
+    public interface RejectableTask extends Runnable {
+
+        /**
+         * Called, in place of {@link #run()}, once the task has been rejected.
+         *
+         * @param e why the task was rejected.
+         */
+        void reject(RejectedExecutionException e);
+    }
+
+    public BoundedExecutor(final Executor delegate, final int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be greater than 0: " + maxInFlight);
+        }
+        this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        Objects.requireNonNull(command, "command cannot be null");
+        queue.add(command);
+        queued.incrementAndGet();
+        drain(command);
+    }
+
+    /**
+     * Number of tasks currently running on the delegate Executor.
+     *
+     * @return number of running tasks.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Number of tasks waiting for a free slot.
+     *
+     * @return number of queued tasks.
+     */
+    public int queued() {
+        return queued.get();
+    }
+
+    /**
+     * Maximum number of tasks allowed to run at the same time.
+     *
+     * @return maximum number of running tasks.
+     */
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Reject every task still waiting for a free slot, e.g. once the delegate
+     * has been shutdown and will never run them.
+     *
+     * @return number of tasks rejected.
+     */
+    public int rejectQueued() {
+        int rejected = 0;
+        for (Runnable next = queue.poll(); next != null; next = queue.poll()) {
+            queued.decrementAndGet();
+            reject(next, new RejectedExecutionException("Task was queued when its BoundedExecutor was closed"));
+            rejected++;
+        }
+        return rejected;
+    }
+
+    private void drain(final Runnable submitted) {
+        for (;;) {
+            final int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+
+            final Runnable next = queue.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+
+                // a task may have been queued after our poll but before we
+                // released the slot in which case we must pick it up.
+                if (queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+
+            queued.decrementAndGet();
+            try {
+                delegate.execute(() -> {
+                    try {
+                        next.run();
+                    } finally {
+                        inFlight.decrementAndGet();
+                        drain(null);
+                    }
+                });
+            } catch (final RuntimeException e) {
+                inFlight.decrementAndGet();
+                if (!(e instanceof RejectedExecutionException) || (next == submitted && !(next instanceof RejectableTask))) {
+                    throw e;
+                }
+                reject(next, (RejectedExecutionException) e);
+            }
+        }
+    }
+
+    private static void reject(final Runnable task, final RejectedExecutionException e) {
+        if (task instanceof RejectableTask) {
+            ((RejectableTask) task).reject(e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Token bucket holding up to `capacity` permits and refilled at a rate of
+ * `permitsPerSecond`. Callers taking a permit from an empty bucket are not
+ * refused but instead wait, in arrival order, for their turn. Both the rate
+ * and capacity can be adjusted at any time, and the bucket paused outright,
+ * such that it can follow limits learned from the server.
+ */
+public final class TokenBucket {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private double permitsPerSecond;
+    private double capacity;
+    private double stored;
+    private long lastRefillNanos;
+
+    public TokenBucket(final double permitsPerSecond, final double capacity) {
+        checkRate(permitsPerSecond);
+        checkCapacity(capacity);
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = capacity;
+        this.stored = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Take a single permit, waiting for one to become available if need be.
+     */
+    public void acquire() {
+        final long waitNanos = reserve();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+
+    /**
+     * Take a single permit without waiting.
+     *
+     * @return true if a permit was available.
+     */
+    public synchronized boolean tryAcquire() {
+        final long now = System.nanoTime();
+        refill(now);
+        if (lastRefillNanos > now || stored < 1) {
+            return false;
+        }
+        stored -= 1;
+        return true;
+    }
+
+    /**
+     * Empty the bucket and stop refilling it for the passed duration.
+     *
+     * @param duration how long to pause for.
+     * @param unit unit of `duration`.
+     */
+    public synchronized void pause(final long duration, final TimeUnit unit) {
+        final long now = System.nanoTime();
+        refill(now);
+        stored = Math.min(stored, 0);
+        lastRefillNanos = Math.max(lastRefillNanos, now + unit.toNanos(duration));
+    }
+
+    /**
+     * Never hold more than the passed number of permits, such as when the
+     * server reports fewer remaining than we believed.
+     *
+     * @param permits most permits the bucket may currently hold.
+     */
+    public synchronized void limitTo(final double permits) {
+        refill(System.nanoTime());
+        stored = Math.min(stored, permits);
+    }
+
+    public synchronized void setPermitsPerSecond(final double permitsPerSecond) {
+        checkRate(permitsPerSecond);
+        refill(System.nanoTime());
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    public synchronized void setCapacity(final double capacity) {
+        checkCapacity(capacity);
+        refill(System.nanoTime());
+        this.capacity = capacity;
+        this.stored = Math.min(stored, capacity);
+    }
+
+    public synchronized double permitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public synchronized double capacity() {
+        return capacity;
+    }
+
+    /**
+     * Number of permits which could currently be taken without waiting.
+     *
+     * @return available permits, or 0 if callers are already queued.
+     */
+    public synchronized int availablePermits() {
+        final long now = System.nanoTime();
+        refill(now);
+        return lastRefillNanos > now ? 0 : (int) Math.max(0, Math.floor(stored));
+    }
+
+    /**
+     * Take a permit, possibly going into debt, and compute how long the
+     * caller must wait before it may be used.
+     */
+    private synchronized long reserve() {
+        final long now = System.nanoTime();
+        refill(now);
+        stored -= 1;
+        final long debtNanos = stored < 0 ? (long) (-stored * NANOS_PER_SECOND / permitsPerSecond) : 0;
+        return Math.max(0, lastRefillNanos - now) + debtNanos;
+    }
+
+    private void refill(final long now) {
+        if (now > lastRefillNanos) {
+            stored = Math.min(capacity, stored + (now - lastRefillNanos) * permitsPerSecond / NANOS_PER_SECOND);
+            lastRefillNanos = now;
+        }
+    }
+
+    private static void checkRate(final double permitsPerSecond) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("permitsPerSecond must be greater than 0: " + permitsPerSecond);
+        }
+    }
+
+    private static void checkCapacity(final double capacity) {
+        if (!(capacity >= 1)) {
+            throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.config;
+
+import java.util.List;
+
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.config.ConfiguresHttpCommandExecutorService;
+import org.jclouds.http.config.JavaUrlHttpCommandExecutorServiceModule;
+import org.jclouds.http.internal.JavaUrlHttpCommandExecutorService;
+
+import com.cdancy.bitbucket.rest.interceptors.HttpCommandInterceptor;
+import com.cdancy.bitbucket.rest.interceptors.InterceptingHttpCommandExecutorService;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
+import com.google.inject.util.Modules;
+
+/**
+ * Configure the transport used to send requests, wrapping it in the
+ * chain of passed {@link HttpCommandInterceptor}'s.
+ */
+@ConfiguresHttpCommandExecutorService
+public class BitbucketHttpCommandExecutorServiceModule extends AbstractModule {
+
+    private final Module transportModule;
+    private final Class<? extends HttpCommandExecutorService> transportType;
+    private final List<HttpCommandInterceptor> interceptors;
+
+    /**
+     * Wrap the default jclouds transport in the passed interceptors.
+     *
+     * @param interceptors interceptors, in the order they should see each command.
+     */
+    public BitbucketHttpCommandExecutorServiceModule(final List<HttpCommandInterceptor> interceptors) {
+        this(new JavaUrlHttpCommandExecutorServiceModule(), JavaUrlHttpCommandExecutorService.class, interceptors);
+    }
+
+    /**
+     * Wrap the passed transport in the passed interceptors.
+     *
+     * @param transportModule module configuring the transport.
+     * @param transportType HttpCommandExecutorService configured by `transportModule`.
+     * @param interceptors interceptors, in the order they should see each command.
+     */
+    public BitbucketHttpCommandExecutorServiceModule(final Module transportModule,
+            final Class<? extends HttpCommandExecutorService> transportType,
+            final List<HttpCommandInterceptor> interceptors) {
+        this.transportModule = transportModule;
+        this.transportType = transportType;
+        this.interceptors = ImmutableList.copyOf(interceptors);
+    }
+
+    @Override
+    protected void configure() {
+        install(Modules.override(transportModule).with(new InterceptorModule(transportType, interceptors)));
+    }
+
+    private static final class InterceptorModule extends AbstractModule {
+
+        private final Class<? extends HttpCommandExecutorService> transportType;
+        private final List<HttpCommandInterceptor> interceptors;
+
+        InterceptorModule(final Class<? extends HttpCommandExecutorService> transportType,
+                final List<HttpCommandInterceptor> interceptors) {
+            this.transportType = transportType;
+            this.interceptors = interceptors;
+        }
+
+        @Override
+        protected void configure() {
+            final Provider<? extends HttpCommandExecutorService> transport = getProvider(transportType);
+            bind(HttpCommandExecutorService.class).toProvider(new Provider<HttpCommandExecutorService>() {
+                @Override
+                public HttpCommandExecutorService get() {
+                    return new InterceptingHttpCommandExecutorService(transport.get(), interceptors);
+                }
+            }).in(Scopes.SINGLETON);
+        }
+    }
+}
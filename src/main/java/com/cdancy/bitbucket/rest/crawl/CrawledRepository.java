@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.crawl;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.domain.branch.Branch;
+import com.cdancy.bitbucket.rest.domain.repository.HookPage;
+import com.cdancy.bitbucket.rest.domain.repository.PermissionsPage;
+import com.cdancy.bitbucket.rest.domain.repository.Repository;
+import com.google.auto.value.AutoValue;
+
+/**
+ * Repository found by a {@link RepositoryCrawler} along with whatever it was
+ * asked to expand it with. Expansions which were not asked for are null.
+ */
+@AutoValue
+public abstract class CrawledRepository {
+
+    public abstract Repository repository();
+
+    @Nullable
+    public abstract Branch defaultBranch();
+
+    @Nullable
+    public abstract HookPage hooks();
+
+    @Nullable
+    public abstract PermissionsPage userPermissions();
+
+    @Nullable
+    public abstract PermissionsPage groupPermissions();
+
+    public static CrawledRepository create(final Repository repository,
+            @Nullable final Branch defaultBranch,
+            @Nullable final HookPage hooks,
+            @Nullable final PermissionsPage userPermissions,
+            @Nullable final PermissionsPage groupPermissions) {
+        return new AutoValue_CrawledRepository(repository, defaultBranch, hooks, userPermissions, groupPermissions);
+    }
+}
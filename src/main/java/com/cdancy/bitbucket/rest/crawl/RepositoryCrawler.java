@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.crawl;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.BitbucketAsyncApi;
+import com.cdancy.bitbucket.rest.domain.branch.Branch;
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.common.ErrorsHolder;
+import com.cdancy.bitbucket.rest.domain.common.Page;
+import com.cdancy.bitbucket.rest.domain.project.Project;
+import com.cdancy.bitbucket.rest.domain.project.ProjectPage;
+import com.cdancy.bitbucket.rest.domain.repository.HookPage;
+import com.cdancy.bitbucket.rest.domain.repository.PermissionsPage;
+import com.cdancy.bitbucket.rest.domain.repository.Repository;
+import com.cdancy.bitbucket.rest.domain.repository.RepositoryPage;
+import com.cdancy.bitbucket.rest.exception.PageFetchException;
+
+/**
+ * Walks every project, and every repository of every project, visible to the
+ * caller, handing over each repository as soon as it has been found and
+ * expanded.
+ *
+ * <p>Listing is pipelined: the next page of projects is requested as soon as
+ * the current one arrives, as are the repositories of every project on it, and
+ * each repository is expanded (e.g. with its default branch) while further
+ * pages are still being listed. No more than `parallelism` requests are ever
+ * in flight at once.
+ *
+ * <p>Should Bitbucket hand back a page of projects or repositories with errors
+ * the crawl is failed with a {@link PageFetchException} and no further
+ * requests are started: requests still queued at that point are dropped
+ * without reaching the server while those already in flight are left to
+ * complete and ignored. Expansions whose endpoint fell back are handed over
+ * carrying their Error's as usual.
+ */
+public class RepositoryCrawler {
+
+    /**
+     * Additional per-repository fetches a crawl can expand each repository with.
+     */
+    public enum Expansion {
+        DEFAULT_BRANCH,
+        HOOKS,
+        USER_PERMISSIONS,
+        GROUP_PERMISSIONS
+    }
+
+    public static final int DEFAULT_PARALLELISM = 16;
+    public static final int DEFAULT_PAGE_LIMIT = 100;
+
+    private final BitbucketApi api;
+    private final int parallelism;
+    private final int pageLimit;
+    private final Set<Expansion> expansions;
+
+    private RepositoryCrawler(final Builder builder) {
+        this.api = builder.api;
+        this.parallelism = builder.parallelism;
+        this.pageLimit = builder.pageLimit;
+        this.expansions = EnumSet.copyOf(builder.expansions);
+    }
+
+    public static Builder builder(final BitbucketApi api) {
+        return new Builder(api);
+    }
+
+    /**
+     * Crawl every repository.
+     *
+     * @param consumer receives each repository once found and expanded. May be
+     *     called concurrently from multiple threads.
+     * @return CompletableFuture completed with the number of repositories
+     *     handed over once the crawl is done.
+     */
+    public CompletableFuture<Long> crawl(final Consumer<CrawledRepository> consumer) {
+        Objects.requireNonNull(consumer, "consumer cannot be null");
+        final Crawl crawl = new Crawl(new BitbucketAsyncApi(api, null, parallelism), consumer);
+        crawl.listProjects(0);
+        return crawl.result;
+    }
+
+    /**
+     * State of a single crawl. Every outstanding request is counted so the crawl
+     * knows it is done once the last of them, and whatever it led to, completes.
+     */
+    private final class Crawl {
+
+        private final BitbucketAsyncApi asyncApi;
+        private final Consumer<CrawledRepository> consumer;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicLong crawled = new AtomicLong();
+
+        Crawl(final BitbucketAsyncApi asyncApi, final Consumer<CrawledRepository> consumer) {
+            this.asyncApi = asyncApi;
+            this.consumer = consumer;
+        }
+
+        void listProjects(final int start) {
+            track(request(bitbucketApi -> bitbucketApi.projectApi().list(null, null, start, pageLimit)), (final ProjectPage page) -> {
+                checkErrors(page, "projects", start);
+                if (hasNextPage(page, start)) {
+                    listProjects(page.nextPageStart());
+                }
+                for (final Project project : page.values()) {
+                    listRepositories(project.key(), 0);
+                }
+            });
+        }
+
+        void listRepositories(final String project, final int start) {
+            track(request(bitbucketApi -> bitbucketApi.repositoryApi().list(project, start, pageLimit)), (final RepositoryPage page) -> {
+                checkErrors(page, "repositories of " + project, start);
+                if (hasNextPage(page, start)) {
+                    listRepositories(project, page.nextPageStart());
+                }
+                for (final Repository repository : page.values()) {
+                    expand(repository);
+                }
+            });
+        }
+
+        void expand(final Repository repository) {
+            if (expansions.isEmpty()) {
+                deliver(CrawledRepository.create(repository, null, null, null, null));
+                return;
+            }
+
+            final String project = repository.project().key();
+            final String repo = repository.slug();
+            final CompletableFuture<Branch> defaultBranch = fetch(Expansion.DEFAULT_BRANCH,
+                    bitbucketApi -> bitbucketApi.branchApi().getDefault(project, repo));
+            final CompletableFuture<HookPage> hooks = fetch(Expansion.HOOKS,
+                    bitbucketApi -> bitbucketApi.hookApi().list(project, repo, 0, pageLimit));
+            final CompletableFuture<PermissionsPage> userPermissions = fetch(Expansion.USER_PERMISSIONS,
+                    bitbucketApi -> bitbucketApi.repositoryApi().listPermissionsByUser(project, repo, 0, pageLimit));
+            final CompletableFuture<PermissionsPage> groupPermissions = fetch(Expansion.GROUP_PERMISSIONS,
+                    bitbucketApi -> bitbucketApi.repositoryApi().listPermissionsByGroup(project, repo, 0, pageLimit));
+
+            track(CompletableFuture.allOf(defaultBranch, hooks, userPermissions, groupPermissions),
+                    ignored -> deliver(CrawledRepository.create(repository,
+                            defaultBranch.join(),
+                            hooks.join(),
+                            userPermissions.join(),
+                            groupPermissions.join())));
+        }
+
+        private <R> CompletableFuture<R> fetch(final Expansion expansion, final Function<BitbucketApi, R> call) {
+            return expansions.contains(expansion)
+                    ? request(call)
+                    : CompletableFuture.completedFuture(null);
+        }
+
+        private <R> CompletableFuture<R> request(final Function<BitbucketApi, R> call) {
+            // requests sit in the queue of the BoundedExecutor until a slot
+            // frees up, by which time the crawl may already have failed.
+            return asyncApi.execute(bitbucketApi -> result.isDone() ? null : call.apply(bitbucketApi));
+        }
+
+        private void deliver(final CrawledRepository repository) {
+            consumer.accept(repository);
+            crawled.incrementAndGet();
+        }
+
+        private <T> void track(final CompletableFuture<T> future, final Consumer<T> then) {
+            pending.incrementAndGet();
+            future.whenComplete((value, error) -> {
+                try {
+                    if (error != null) {
+                        result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause()
+                                : error);
+                    } else if (!result.isDone()) {
+                        then.accept(value);
+                    }
+                } catch (final RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    if (pending.decrementAndGet() == 0) {
+                        result.complete(crawled.get());
+                        asyncApi.close();
+                    }
+                }
+            });
+        }
+    }
+
+    private static boolean hasNextPage(final Page<?> page, final int start) {
+        // guard against a server that never reports the last page but
+        // also never moves the cursor forward.
+        return !page.isLastPage() && page.nextPageStart() > start;
+    }
+
+    private static void checkErrors(final ErrorsHolder page, final String what, final int start) {
+        final List<Error> errors = page.errors();
+        if (!errors.isEmpty()) {
+            throw new PageFetchException("Failed fetching " + what + " starting at " + start, errors);
+        }
+    }
+
+    public static class Builder {
+
+        private final BitbucketApi api;
+        private int parallelism = DEFAULT_PARALLELISM;
+        private int pageLimit = DEFAULT_PAGE_LIMIT;
+        private final EnumSet<Expansion> expansions = EnumSet.noneOf(Expansion.class);
+
+        Builder(final BitbucketApi api) {
+            this.api = Objects.requireNonNull(api, "api cannot be null");
+        }
+
+        /**
+         * Maximum number of requests in flight at once.
+         *
+         * @param parallelism maximum number of concurrent requests.
+         * @return this Builder.
+         */
+        public Builder parallelism(final int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be greater than 0: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Number of values to request per page, for both listing and expanding.
+         *
+         * @param pageLimit number of values per page.
+         * @return this Builder.
+         */
+        public Builder pageLimit(final int pageLimit) {
+            if (pageLimit < 1) {
+                throw new IllegalArgumentException("pageLimit must be greater than 0: " + pageLimit);
+            }
+            this.pageLimit = pageLimit;
+            return this;
+        }
+
+        /**
+         * Expand every repository with the passed per-repository fetches.
+         * Paged expansions (e.g. hooks) only fetch their first page.
+         *
+         * @param expansions the fetches to expand repositories with.
+         * @return this Builder.
+         */
+        public Builder expand(final Expansion... expansions) {
+            for (final Expansion expansion : expansions) {
+                this.expansions.add(expansion);
+            }
+            return this;
+        }
+
+        public RepositoryCrawler build() {
+            return new RepositoryCrawler(this);
+        }
+    }
+}
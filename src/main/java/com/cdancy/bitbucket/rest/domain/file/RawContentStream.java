@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.domain.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.common.ErrorsHolder;
+import com.cdancy.bitbucket.rest.domain.common.Value;
+import com.cdancy.bitbucket.rest.BitbucketUtils;
+import com.google.auto.value.AutoValue;
+
+/**
+ * Raw content of a file left unread on the wire. Callers own the
+ * underlying connection and MUST close this object once done with it.
+ */
+@AutoValue
+public abstract class RawContentStream implements Value<InputStream>, ErrorsHolder, Closeable {
+
+    private static final long TRANSFER_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    public static RawContentStream create(@Nullable final InputStream value,
+            final List<Error> errors) {
+
+        return new AutoValue_RawContentStream(value,
+                BitbucketUtils.nullToEmpty(errors));
+    }
+
+    /**
+     * View the underlying content as a ReadableByteChannel.
+     *
+     * @return channel over the content or null if there is none.
+     */
+    @Nullable
+    public ReadableByteChannel channel() {
+        return value() != null ? Channels.newChannel(value()) : null;
+    }
+
+    /**
+     * Transfer the entirety of the content to the passed file, creating or
+     * truncating it as needed, and close this object afterwards. Bytes are
+     * written as-is with no intermediate decoding.
+     *
+     * @param target file to write content to.
+     * @return number of bytes written.
+     * @throws IOException if the content could not be read or written.
+     */
+    public long transferTo(final Path target) throws IOException {
+        final ReadableByteChannel source = channel();
+        if (source == null) {
+            throw new IllegalStateException("No content to transfer: " + errors());
+        }
+
+        try (final FileChannel file = FileChannel.open(target,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = file.transferFrom(source, position, TRANSFER_CHUNK_SIZE)) > 0) {
+                position += transferred;
+            }
+            return position;
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (value() != null) {
+            value().close();
+        }
+    }
+}
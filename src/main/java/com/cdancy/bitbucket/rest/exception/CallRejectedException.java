@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.exception;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+/**
+ * Thrown when a request is rejected client-side, without ever reaching the
+ * server, to protect the rest of the client from a degraded subsystem.
+ *
+ * <p>The message is formatted like a Bitbucket error body such that the usual
+ * fallbacks hand back an Error whose `exceptionName` is that of the concrete
+ * subclass, making rejections easy to tell apart from server-side failures.
+ */
+public abstract class CallRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String reason;
+
+    protected CallRejectedException(final String reason) {
+        super(null, null);
+        this.reason = reason;
+    }
+
+    /**
+     * Human readable reason for the rejection.
+     *
+     * @return reason for the rejection.
+     */
+    public String reason() {
+        return reason;
+    }
+
+    @Override
+    public String getMessage() {
+        final JsonObject error = new JsonObject();
+        error.add("context", JsonNull.INSTANCE);
+        error.addProperty("message", reason);
+        error.addProperty("exceptionName", getClass().getName());
+        final JsonArray errors = new JsonArray();
+        errors.add(error);
+        final JsonObject body = new JsonObject();
+        body.add("errors", errors);
+        return body.toString();
+    }
+}
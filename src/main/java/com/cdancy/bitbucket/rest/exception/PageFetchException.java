@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.exception;
+
+import java.util.List;
+
+import com.cdancy.bitbucket.rest.BitbucketUtils;
+import com.cdancy.bitbucket.rest.domain.common.Error;
+
+/**
+ * Thrown when lazily walking a paged endpoint and Bitbucket hands
+ * back a page carrying errors instead of values.
+ */
+public class PageFetchException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<Error> errors;
+
+    public PageFetchException(final String arg0, final List<Error> errors) {
+        super(arg0);
+        this.errors = BitbucketUtils.nullToEmpty(errors);
+    }
+
+    /**
+     * Errors found on the offending page.
+     *
+     * @return list of Error's or empty list if none were found.
+     */
+    public List<Error> errors() {
+        return errors;
+    }
+}
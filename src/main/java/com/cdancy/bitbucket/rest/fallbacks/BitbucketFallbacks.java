@@ -44,6 +44,7 @@ import com.cdancy.bitbucket.rest.domain.file.FilesPage;
 import com.cdancy.bitbucket.rest.domain.file.LastModified;
 import com.cdancy.bitbucket.rest.domain.file.LinePage;
 import com.cdancy.bitbucket.rest.domain.file.RawContent;
+import com.cdancy.bitbucket.rest.domain.file.RawContentStream;
 import com.cdancy.bitbucket.rest.domain.insights.AnnotationsResponse;
 import com.cdancy.bitbucket.rest.domain.insights.InsightReport;
 import com.cdancy.bitbucket.rest.domain.insights.InsightReportPage;
@@ -75,6 +76,7 @@ import com.cdancy.bitbucket.rest.domain.sshkey.AccessKey;
 import com.cdancy.bitbucket.rest.domain.sshkey.AccessKeyPage;
 import com.cdancy.bitbucket.rest.domain.tags.Tag;
 import com.cdancy.bitbucket.rest.domain.tags.TagPage;
+import com.cdancy.bitbucket.rest.pagination.StreamingPage;
 import com.google.common.collect.Lists;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -530,6 +532,28 @@ public final class BitbucketFallbacks {
         }
     }
 
+    public static final class RawContentStreamOnError implements Fallback<Object> {
+        @Override
+        public Object createOrPropagate(final Throwable throwable) throws Exception {
+            if (checkNotNull(throwable, "throwable") != null) {
+                final Error error = Error.create(throwable.getMessage(), "Failed retrieving raw content",
+                        throwable.getClass().getName(), false, null);
+                return RawContentStream.create(null, Lists.newArrayList(error));
+            }
+            throw propagate(throwable);
+        }
+    }
+
+    public static final class StreamingPageOnError implements Fallback<Object> {
+        @Override
+        public Object createOrPropagate(final Throwable throwable) throws Exception {
+            if (checkNotNull(throwable, "throwable") != null) {
+                return StreamingPage.fromErrors(getErrors(throwable.getMessage()));
+            }
+            throw propagate(throwable);
+        }
+    }
+
     public static final class RequestStatusOnError implements Fallback<Object> {
         @Override
         public Object createOrPropagate(final Throwable throwable) throws Exception {
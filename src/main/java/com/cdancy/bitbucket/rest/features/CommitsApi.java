@@ -20,11 +20,15 @@ package com.cdancy.bitbucket.rest.features;
 import com.cdancy.bitbucket.rest.annotations.Documentation;
 import com.cdancy.bitbucket.rest.domain.commit.Commit;
 import com.cdancy.bitbucket.rest.domain.commit.CommitPage;
+import com.cdancy.bitbucket.rest.domain.pullrequest.Change;
 import com.cdancy.bitbucket.rest.domain.pullrequest.ChangePage;
 import com.cdancy.bitbucket.rest.fallbacks.BitbucketFallbacks;
 import com.cdancy.bitbucket.rest.filters.BitbucketAuthenticationFilter;
+import com.cdancy.bitbucket.rest.pagination.StreamingPage;
+import com.cdancy.bitbucket.rest.parsers.StreamingPageParser;
 import org.jclouds.rest.annotations.Fallback;
 import org.jclouds.rest.annotations.RequestFilters;
+import org.jclouds.rest.annotations.ResponseParser;
 
 import javax.inject.Named;
 import javax.ws.rs.Consumes;
@@ -65,6 +69,19 @@ public interface CommitsApi {
                            @PathParam("commitId") String commitId,
                            @Nullable @QueryParam("limit") Integer limit,
                            @Nullable @QueryParam("start") Integer start);
+
+    @Named("commits:stream-changes")
+    @Documentation({"https://developer.atlassian.com/static/rest/bitbucket-server/latest/bitbucket-rest.html#idm46478324982720"})
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("/{project}/repos/{repo}/commits/{commitId}/changes")
+    @Fallback(BitbucketFallbacks.StreamingPageOnError.class)
+    @ResponseParser(StreamingPageParser.class)
+    @GET
+    StreamingPage<Change> streamChanges(@PathParam("project") String project,
+                           @PathParam("repo") String repo,
+                           @PathParam("commitId") String commitId,
+                           @Nullable @QueryParam("limit") Integer limit,
+                           @Nullable @QueryParam("start") Integer start);
     
     @Named("commits:list")
     @Documentation({"https://developer.atlassian.com/static/rest/bitbucket-server/latest/bitbucket-rest.html#idm140236729804608"})
@@ -83,4 +100,23 @@ public interface CommitsApi {
                     @Nullable @QueryParam("until") String until,
                     @Nullable @QueryParam("limit") Integer limit,
                     @Nullable @QueryParam("start") Integer start);
+
+    @Named("commits:stream")
+    @Documentation({"https://developer.atlassian.com/static/rest/bitbucket-server/latest/bitbucket-rest.html#idm140236729804608"})
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("/{project}/repos/{repo}/commits")
+    @Fallback(BitbucketFallbacks.StreamingPageOnError.class)
+    @ResponseParser(StreamingPageParser.class)
+    @GET
+    StreamingPage<Commit> stream(@PathParam("project") String project,
+                    @PathParam("repo") String repo,
+                    @Nullable @QueryParam("withCounts") Boolean withCounts,
+                    @Nullable @QueryParam("followRenames") Boolean followRenames,
+                    @Nullable @QueryParam("ignoreMissing") Boolean ignoreMissing,
+                    @Nullable @QueryParam("merges") String merges,
+                    @Nullable @QueryParam("path") String path,
+                    @Nullable @QueryParam("since") String since,
+                    @Nullable @QueryParam("until") String until,
+                    @Nullable @QueryParam("limit") Integer limit,
+                    @Nullable @QueryParam("start") Integer start);
 }
@@ -21,12 +21,17 @@ import com.cdancy.bitbucket.rest.annotations.Documentation;
 import com.cdancy.bitbucket.rest.domain.commit.Commit;
 import com.cdancy.bitbucket.rest.domain.file.FilesPage;
 import com.cdancy.bitbucket.rest.domain.file.LastModified;
+import com.cdancy.bitbucket.rest.domain.file.Line;
 import com.cdancy.bitbucket.rest.domain.file.LinePage;
 import com.cdancy.bitbucket.rest.domain.file.RawContent;
+import com.cdancy.bitbucket.rest.domain.file.RawContentStream;
 import com.cdancy.bitbucket.rest.fallbacks.BitbucketFallbacks;
 import com.cdancy.bitbucket.rest.filters.BitbucketAuthenticationFilter;
 import com.cdancy.bitbucket.rest.filters.ScrubNullFromPathFilter;
+import com.cdancy.bitbucket.rest.pagination.StreamingPage;
 import com.cdancy.bitbucket.rest.parsers.RawContentParser;
+import com.cdancy.bitbucket.rest.parsers.RawContentStreamParser;
+import com.cdancy.bitbucket.rest.parsers.StreamingPageParser;
 import org.jclouds.javax.annotation.Nullable;
 import org.jclouds.rest.annotations.Fallback;
 import org.jclouds.rest.annotations.PartParam;
@@ -61,6 +66,23 @@ public interface FileApi {
                 @PathParam("filePath") String filePath,
                 @Nullable @QueryParam("at") String branchOrTag);
 
+    /**
+     * Stream the raw content of a file without buffering it in memory. The
+     * returned object holds open the underlying connection and MUST be closed.
+     */
+    @Named("file:raw-content-stream")
+    @Documentation({"https://jira.atlassian.com/browse/BSERV-4036"})
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.TEXT_PLAIN)
+    @Path("/projects/{project}/repos/{repo}/raw/{filePath}")
+    @Fallback(BitbucketFallbacks.RawContentStreamOnError.class)
+    @ResponseParser(RawContentStreamParser.class)
+    @GET
+    RawContentStream rawStream(@PathParam("project") String project,
+                @PathParam("repo") String repo,
+                @PathParam("filePath") String filePath,
+                @Nullable @QueryParam("at") String branchOrTag);
+
     @Named("file:list-lines")
     @Documentation({"https://developer.atlassian.com/static/rest/bitbucket-server/5.1.0/bitbucket-rest.html#idm45588158357840"})
     @Produces(MediaType.APPLICATION_JSON)
@@ -78,6 +100,21 @@ public interface FileApi {
                            @Nullable @QueryParam("start") Integer start,
                            @Nullable @QueryParam("limit") Integer limit);
 
+    @Named("file:stream-lines")
+    @Documentation({"https://developer.atlassian.com/static/rest/bitbucket-server/5.1.0/bitbucket-rest.html#idm45588158357840"})
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("/rest/api/{jclouds.api-version}/projects/{project}/repos/{repo}/browse/{filePath}")
+    @Fallback(BitbucketFallbacks.StreamingPageOnError.class)
+    @ResponseParser(StreamingPageParser.class)
+    @GET
+    StreamingPage<Line> streamLines(@PathParam("project") String project,
+                           @PathParam("repo") String repo,
+                           @PathParam("filePath") String filePath,
+                           @Nullable @QueryParam("at") String branchOrTag,
+                           @Nullable @QueryParam("start") Integer start,
+                           @Nullable @QueryParam("limit") Integer limit);
+
     @Named("file:update-content")
     @Documentation({"https://docs.atlassian.com/bitbucket-server/rest/6.0.0/bitbucket-rest.html#idp185"})
     @Consumes(MediaType.APPLICATION_JSON)
@@ -18,6 +18,7 @@
 package com.cdancy.bitbucket.rest.features;
 
 import com.cdancy.bitbucket.rest.annotations.Documentation;
+import com.cdancy.bitbucket.rest.binders.BindAnnotationsToPayload;
 import com.cdancy.bitbucket.rest.domain.common.RequestStatus;
 import com.cdancy.bitbucket.rest.domain.insights.Annotation;
 import com.cdancy.bitbucket.rest.domain.insights.AnnotationsResponse;
@@ -138,7 +139,7 @@ public interface InsightsApi {
                                     @PathParam("repo") String repo,
                                     @PathParam("commitId") String commitId,
                                     @PathParam("key") String key,
-                                    @BinderParam(BindToJsonPayload.class) CreateAnnotations createAnnotations);
+                                    @BinderParam(BindAnnotationsToPayload.class) CreateAnnotations createAnnotations);
 
     @Named("insights:get-annotations")
     @Documentation( {"https://docs.atlassian.com/bitbucket-server/rest/6.4.0/bitbucket-code-insights-rest.html#idp13"})
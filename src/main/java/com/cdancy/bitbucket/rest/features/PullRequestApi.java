@@ -31,6 +31,7 @@ import javax.ws.rs.core.MediaType;
 
 import com.cdancy.bitbucket.rest.domain.participants.Participants;
 import com.cdancy.bitbucket.rest.domain.participants.ParticipantsPage;
+import com.cdancy.bitbucket.rest.domain.activities.Activities;
 import com.cdancy.bitbucket.rest.domain.activities.ActivitiesPage;
 import com.cdancy.bitbucket.rest.domain.pullrequest.ChangePage;
 import com.cdancy.bitbucket.rest.domain.pullrequest.MergeStatus;
@@ -57,9 +58,12 @@ import com.cdancy.bitbucket.rest.fallbacks.BitbucketFallbacks.ParticipantsOnErro
 import com.cdancy.bitbucket.rest.fallbacks.BitbucketFallbacks.ParticipantsPageOnError;
 import com.cdancy.bitbucket.rest.fallbacks.BitbucketFallbacks.PullRequestOnError;
 import com.cdancy.bitbucket.rest.fallbacks.BitbucketFallbacks.PullRequestPageOnError;
+import com.cdancy.bitbucket.rest.fallbacks.BitbucketFallbacks.StreamingPageOnError;
 import com.cdancy.bitbucket.rest.filters.BitbucketAuthenticationFilter;
 import com.cdancy.bitbucket.rest.options.CreatePullRequest;
+import com.cdancy.bitbucket.rest.pagination.StreamingPage;
 import com.cdancy.bitbucket.rest.parsers.RequestStatusParser;
+import com.cdancy.bitbucket.rest.parsers.StreamingPageParser;
 import org.jclouds.rest.annotations.ResponseParser;
 
 @Produces(MediaType.APPLICATION_JSON)
@@ -199,6 +203,19 @@ public interface PullRequestApi {
                               @Nullable @QueryParam("limit") Integer limit,
                               @Nullable @QueryParam("start") Integer start);
 
+    @Named("pull-request:stream-activities")
+    @Documentation({"https://developer.atlassian.com/static/rest/bitbucket-server/latest/bitbucket-rest.html#idm45888278197104"})
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("/{project}/repos/{repo}/pull-requests/{pullRequestId}/activities")
+    @Fallback(StreamingPageOnError.class)
+    @ResponseParser(StreamingPageParser.class)
+    @GET
+    StreamingPage<Activities> streamActivities(@PathParam("project") String project,
+                              @PathParam("repo") String repo,
+                              @PathParam("pullRequestId") long pullRequestId,
+                              @Nullable @QueryParam("limit") Integer limit,
+                              @Nullable @QueryParam("start") Integer start);
+
     @Named("pull-request:list-participants")
     @Documentation({"https://developer.atlassian.com/static/rest/bitbucket-server/latest/bitbucket-rest.html#idm45627978405632"})
     @Consumes(MediaType.APPLICATION_JSON)
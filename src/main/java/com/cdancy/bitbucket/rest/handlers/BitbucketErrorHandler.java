@@ -36,6 +36,7 @@ import org.jclouds.util.Strings2;
 import com.cdancy.bitbucket.rest.exception.ForbiddenException;
 import com.cdancy.bitbucket.rest.exception.MethodNotAllowedException;
 import com.cdancy.bitbucket.rest.exception.UnsupportedMediaTypeException;
+import com.cdancy.bitbucket.rest.interceptors.CompressionInterceptor;
 import com.google.common.base.Throwables;
 
 /**
@@ -87,7 +88,9 @@ public class BitbucketErrorHandler implements HttpErrorHandler {
     private String parseMessage(final HttpCommand command, final HttpResponse response) {
         if (response.getPayload() != null) {
             try {
-                return Strings2.toStringAndClose(response.getPayload().openStream());
+                // the response may have been compressed at our request (see CompressionInterceptor)
+                return Strings2.toStringAndClose(CompressionInterceptor.decode(response.getPayload().openStream(),
+                        CompressionInterceptor.contentEncoding(response)));
             } catch (IOException e) {
                 throw Throwables.propagate(e);
             }
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.io.MutableContentMetadata;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.net.HttpHeaders;
+
+/**
+ * Advertises, through `Accept-Encoding`, that gzip and deflate compressed
+ * responses are understood and transparently decompresses those handed
+ * back. Decompression is streamed such that parsers consume the decoded
+ * bytes as they come off the wire.
+ *
+ * <p>Both the number of compressed bytes read off the wire and the number
+ * of bytes they decoded to are counted as the payload is consumed.
+ */
+public class CompressionInterceptor implements HttpCommandInterceptor {
+
+    public static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+
+    private final AtomicLong compressedResponses = new AtomicLong();
+    private final AtomicLong wireBytes = new AtomicLong();
+    private final AtomicLong decodedBytes = new AtomicLong();
+
+    @Override
+    public HttpResponse intercept(final HttpCommand command, final HttpCommandExecutorService next) {
+        final HttpRequest request = command.getCurrentRequest();
+        if (request.getFirstHeaderOrNull(HttpHeaders.ACCEPT_ENCODING) == null) {
+            command.setCurrentRequest(request.toBuilder()
+                    .replaceHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPTED_ENCODINGS)
+                    .build());
+        }
+
+        final HttpResponse response = next.invoke(command);
+        final Payload payload = response.getPayload();
+        final String contentEncoding = contentEncoding(response);
+        if (payload == null || !isSupported(contentEncoding)) {
+            return response;
+        }
+
+        compressedResponses.incrementAndGet();
+        final InputStream decoded;
+        try {
+            final InputStream wire = new CountingInputStream(payload.openStream(), wireBytes);
+            decoded = new CountingInputStream(decode(wire, contentEncoding), decodedBytes);
+        } catch (final IOException e) {
+            payload.release();
+            throw Throwables.propagate(e);
+        }
+
+        final Payload decodedPayload = Payloads.newInputStreamPayload(decoded);
+        final MutableContentMetadata metadata = payload.getContentMetadata();
+        decodedPayload.getContentMetadata().setContentType(metadata.getContentType());
+        decodedPayload.getContentMetadata().setContentDisposition(metadata.getContentDisposition());
+        decodedPayload.getContentMetadata().setContentLanguage(metadata.getContentLanguage());
+        return response.toBuilder()
+                .headers(withoutEncodingHeaders(response.getHeaders()))
+                .payload(decodedPayload)
+                .build();
+    }
+
+    /**
+     * Number of responses which were handed back compressed.
+     *
+     * @return number of compressed responses.
+     */
+    public long compressedResponses() {
+        return compressedResponses.get();
+    }
+
+    /**
+     * Number of compressed bytes read off the wire.
+     *
+     * @return number of compressed bytes.
+     */
+    public long wireBytes() {
+        return wireBytes.get();
+    }
+
+    /**
+     * Number of bytes the compressed bytes read off the wire decoded to.
+     *
+     * @return number of decoded bytes.
+     */
+    public long decodedBytes() {
+        return decodedBytes.get();
+    }
+
+    /**
+     * Encoding, if any, the payload of the passed response was compressed with.
+     *
+     * @param response the response to inspect.
+     * @return content encoding or null if none.
+     */
+    @Nullable
+    public static String contentEncoding(final HttpResponse response) {
+        if (response.getPayload() != null && response.getPayload().getContentMetadata().getContentEncoding() != null) {
+            return response.getPayload().getContentMetadata().getContentEncoding();
+        }
+        return response.getFirstHeaderOrNull(HttpHeaders.CONTENT_ENCODING);
+    }
+
+    /**
+     * Whether or not the passed content encoding can be decoded.
+     *
+     * @param contentEncoding content encoding of some payload.
+     * @return true if gzip or deflate.
+     */
+    public static boolean isSupported(@Nullable final String contentEncoding) {
+        return contentEncoding != null
+                && ("gzip".equalsIgnoreCase(contentEncoding.trim()) || "deflate".equalsIgnoreCase(contentEncoding.trim()));
+    }
+
+    /**
+     * Wrap the passed stream such that reading from it decodes the passed content encoding.
+     *
+     * @param stream the compressed stream.
+     * @param contentEncoding encoding the stream was compressed with.
+     * @return decoding stream, or the passed stream if the encoding is not supported.
+     * @throws IOException if the stream could not be decoded.
+     */
+    public static InputStream decode(final InputStream stream, @Nullable final String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return stream;
+        } else if ("gzip".equalsIgnoreCase(contentEncoding.trim())) {
+            return new GZIPInputStream(stream);
+        } else if ("deflate".equalsIgnoreCase(contentEncoding.trim())) {
+            return new InflaterInputStream(stream);
+        }
+        return stream;
+    }
+
+    private static Multimap<String, String> withoutEncodingHeaders(final Multimap<String, String> headers) {
+        final Multimap<String, String> filtered = LinkedHashMultimap.create();
+        for (final Map.Entry<String, String> entry : headers.entries()) {
+            if (!HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(entry.getKey())
+                    && !HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(entry.getKey())) {
+                filtered.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return filtered;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong counter;
+
+        CountingInputStream(final InputStream in, final AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = super.read();
+            if (read != -1) {
+                counter.incrementAndGet();
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                counter.addAndGet(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long count) throws IOException {
+            final long skipped = super.skip(count);
+            counter.addAndGet(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpResponse;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Caps the number of requests concurrently in flight against any single
+ * endpoint (i.e. scheme, host, and port). Callers beyond the cap wait, in
+ * arrival order, for a permit to free up. Cheap to block on when running
+ * on virtual threads.
+ */
+public class ConnectionLimitInterceptor implements HttpCommandInterceptor {
+
+    private final int maxConnectionsPerEndpoint;
+    private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    public ConnectionLimitInterceptor(final int maxConnectionsPerEndpoint) {
+        if (maxConnectionsPerEndpoint < 1) {
+            throw new IllegalArgumentException("maxConnectionsPerEndpoint must be greater than 0: " + maxConnectionsPerEndpoint);
+        }
+        this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+    }
+
+    @Override
+    public HttpResponse intercept(final HttpCommand command, final HttpCommandExecutorService next) {
+        final Semaphore semaphore = permits.computeIfAbsent(endpointKey(command.getCurrentRequest().getEndpoint()),
+                key -> new Semaphore(maxConnectionsPerEndpoint, true));
+        try {
+            semaphore.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        }
+        try {
+            return next.invoke(command);
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * Number of requests which could currently be sent to the passed
+     * endpoint without waiting.
+     *
+     * @param endpoint any URI pointing at the endpoint in question.
+     * @return number of available permits.
+     */
+    public int availablePermits(final URI endpoint) {
+        final Semaphore semaphore = permits.get(endpointKey(endpoint));
+        return semaphore != null ? semaphore.availablePermits() : maxConnectionsPerEndpoint;
+    }
+
+    public int maxConnectionsPerEndpoint() {
+        return maxConnectionsPerEndpoint;
+    }
+
+    private static String endpointKey(final URI endpoint) {
+        return endpoint.getScheme() + "://" + endpoint.getHost() + ":" + endpoint.getPort();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpResponse;
+
+/**
+ * Hook wrapped around every HttpCommand a BitbucketClient sends. Interceptors
+ * are chained, in the order they were added, in front of the underlying
+ * transport. Each one decides whether, when, and how often to hand the
+ * command on to `next`, and may inspect or replace the response it gets back.
+ *
+ * <p>Request filters (e.g. authentication) have NOT yet been applied to the
+ * HttpRequest an interceptor sees as those are applied by the transport itself.
+ */
+public interface HttpCommandInterceptor {
+
+    /**
+     * Intercept the passed command.
+     *
+     * @param command the command about to be sent.
+     * @param next the remainder of the chain, ending with the transport.
+     * @return the response to hand back to the caller.
+     */
+    HttpResponse intercept(HttpCommand command, HttpCommandExecutorService next);
+}
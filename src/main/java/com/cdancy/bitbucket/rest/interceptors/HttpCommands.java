@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.rest.AuthorizationException;
+import org.jclouds.rest.ResourceAlreadyExistsException;
+import org.jclouds.rest.ResourceNotFoundException;
+import org.jclouds.rest.internal.GeneratedHttpRequest;
+
+import com.cdancy.bitbucket.rest.exception.ForbiddenException;
+import com.cdancy.bitbucket.rest.exception.MethodNotAllowedException;
+import com.cdancy.bitbucket.rest.exception.UnsupportedMediaTypeException;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimap;
+import com.google.common.net.HttpHeaders;
+
+/**
+ * Static helpers for inspecting the HttpCommand's seen by interceptors.
+ */
+public class HttpCommands {
+
+    /**
+     * Name of the operation, as given by its {@link Named} annotation
+     * (e.g. `repository:get`), which generated the passed command.
+     *
+     * @param command the command to inspect.
+     * @return name of the operation or null if not known.
+     */
+    @Nullable
+    public static String commandName(final HttpCommand command) {
+        final HttpRequest request = command.getCurrentRequest();
+        if (request instanceof GeneratedHttpRequest) {
+            final Named named = GeneratedHttpRequest.class.cast(request)
+                    .getInvocation()
+                    .getInvokable()
+                    .getAnnotation(Named.class);
+            return named != null ? named.value() : null;
+        }
+        return null;
+    }
+
+    /**
+     * Feature API (e.g. SearchApi) whose method generated the passed command.
+     *
+     * @param command the command to inspect.
+     * @return the API interface or null if not known.
+     */
+    @Nullable
+    public static Class<?> apiType(final HttpCommand command) {
+        final HttpRequest request = command.getCurrentRequest();
+        if (request instanceof GeneratedHttpRequest) {
+            return GeneratedHttpRequest.class.cast(request)
+                    .getInvocation()
+                    .getInvokable()
+                    .getDeclaringClass();
+        }
+        return null;
+    }
+
+    /**
+     * Status code of the response which caused the passed exception, as
+     * recovered from the exception BitbucketErrorHandler mapped it to.
+     *
+     * @param exception exception thrown while invoking a command.
+     * @return status code or 0 if not known (e.g. an IOException).
+     */
+    public static int statusCode(final Throwable exception) {
+        if (exception instanceof HttpResponseException) {
+            final HttpResponse response = ((HttpResponseException) exception).getResponse();
+            return response != null ? response.getStatusCode() : 0;
+        } else if (exception instanceof IllegalArgumentException) {
+            return 400;
+        } else if (exception instanceof AuthorizationException) {
+            return 401;
+        } else if (exception instanceof ForbiddenException) {
+            return 403;
+        } else if (exception instanceof ResourceNotFoundException) {
+            return 404;
+        } else if (exception instanceof MethodNotAllowedException) {
+            return 405;
+        } else if (exception instanceof ResourceAlreadyExistsException) {
+            return 409;
+        } else if (exception instanceof UnsupportedMediaTypeException) {
+            return 415;
+        }
+        return 0;
+    }
+
+    /**
+     * How long, as asked by its `Retry-After` header, to wait before
+     * sending another request after the passed response.
+     *
+     * @param response the response to inspect.
+     * @return millis to wait or -1 if the server did not say.
+     */
+    public static long retryAfterMillis(final HttpResponse response) {
+        final String retryAfter = firstHeader(response.getHeaders(), HttpHeaders.RETRY_AFTER);
+        if (retryAfter != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+            } catch (final NumberFormatException e) {
+                try {
+                    final Instant at = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                    return Math.max(0, at.toEpochMilli() - System.currentTimeMillis());
+                } catch (final DateTimeParseException ignored) {
+                    // not something we understand
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * First value of the passed header, ignoring the case of its name.
+     *
+     * @param headers headers to search.
+     * @param name name of the header.
+     * @return header value or null if not present.
+     */
+    @Nullable
+    public static String firstHeader(final Multimap<String, String> headers, final String name) {
+        for (final String key : headers.keySet()) {
+            if (key.equalsIgnoreCase(name)) {
+                return Iterables.getFirst(headers.get(key), null);
+            }
+        }
+        return null;
+    }
+
+    protected HttpCommands() {
+        throw new UnsupportedOperationException("Purposefully not implemented");
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+
+import com.cdancy.bitbucket.rest.cache.CachedResponse;
+import com.cdancy.bitbucket.rest.cache.ResponseCache;
+import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Caches, indefinitely, the responses of GET's pinned to a full commit SHA
+ * (e.g. a commit looked up by its id or a file read `at` a given commit).
+ * Such responses can never change and so are served from cache without
+ * ever contacting the server again. Requests pinned to a branch, tag, or
+ * abbreviated SHA are passed through untouched.
+ *
+ * <p>Pair with a size-bounded ResponseCache, such as a WeightedResponseCache,
+ * as nothing is ever expired.
+ */
+public class ImmutableResponseInterceptor implements HttpCommandInterceptor {
+
+    public static final Set<String> DEFAULT_COMMAND_NAMES = ImmutableSet.of("commits:get",
+            "commits:list-changes",
+            "file:raw-content",
+            "file:list-lines");
+
+    private static final String COMMITS_PREFIX = "commits:";
+    private static final Pattern FULL_SHA = Pattern.compile("[0-9a-fA-F]{40}|[0-9a-fA-F]{64}");
+    private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings();
+    private static final Splitter QUERY_SPLITTER = Splitter.on('&').omitEmptyStrings();
+
+    private final ResponseCache cache;
+    private final String identity;
+    private final Set<String> commandNames;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ImmutableResponseInterceptor(final ResponseCache cache, final String identity) {
+        this(cache, identity, DEFAULT_COMMAND_NAMES);
+    }
+
+    /**
+     * Create an ImmutableResponseInterceptor.
+     *
+     * @param cache where responses are stored.
+     * @param identity opaque string identifying the caller (e.g. a hash of its credentials).
+     * @param commandNames operations, by their `@Named` name, whose SHA-pinned responses may be cached.
+     */
+    public ImmutableResponseInterceptor(final ResponseCache cache, final String identity, final Set<String> commandNames) {
+        this.cache = Objects.requireNonNull(cache, "cache cannot be null");
+        this.identity = Objects.requireNonNull(identity, "identity cannot be null");
+        this.commandNames = ImmutableSet.copyOf(commandNames);
+    }
+
+    @Override
+    public HttpResponse intercept(final HttpCommand command, final HttpCommandExecutorService next) {
+        final HttpRequest request = command.getCurrentRequest();
+        final String commandName = HttpCommands.commandName(command);
+        if (!"GET".equals(request.getMethod())
+                || !commandNames.contains(commandName)
+                || !isShaPinned(commandName, request.getEndpoint())) {
+            return next.invoke(command);
+        }
+
+        final String key = identity + " " + request.getMethod() + " " + request.getEndpoint();
+        final CachedResponse cached = cache.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.toHttpResponse();
+        }
+
+        misses.incrementAndGet();
+        final HttpResponse response = next.invoke(command);
+        if (response.getStatusCode() != 200) {
+            return response;
+        }
+
+        final CachedResponse fresh;
+        try {
+            fresh = CachedResponse.from(response, System.currentTimeMillis());
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        }
+        try {
+            cache.put(key, fresh);
+        } catch (final RuntimeException e) { // NOPMD
+            // the server answered, a cache failing to keep up must not fail the call
+        }
+        return fresh.toHttpResponse();
+    }
+
+    /**
+     * Number of requests served from cache.
+     *
+     * @return number of cache hits.
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of SHA-pinned requests which had to be sent to the server.
+     *
+     * @return number of cache misses.
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Whether or not the passed request of the passed operation is pinned to
+     * a full commit SHA. Commit operations (i.e. `commits:*`) are pinned by
+     * the commit id following `/commits/` in their path, every other
+     * operation only by its `at` query parameter: other path segments, such
+     * as those of a file path, may well look like a SHA without pinning anything.
+     *
+     * @param commandName the `@Named` name of the operation.
+     * @param endpoint the URI to check.
+     * @return true if pinned to a full commit SHA.
+     */
+    static boolean isShaPinned(final String commandName, final URI endpoint) {
+        if (commandName.startsWith(COMMITS_PREFIX)) {
+            if (endpoint.getRawPath() == null) {
+                return false;
+            }
+            // .../projects/{project}/repos/{repo}/commits/{commitId}
+            final List<String> segments = PATH_SPLITTER.splitToList(endpoint.getRawPath());
+            final int projects = segments.indexOf("projects");
+            return projects >= 0
+                    && segments.size() > projects + 5
+                    && "commits".equals(segments.get(projects + 4))
+                    && FULL_SHA.matcher(segments.get(projects + 5)).matches();
+        }
+        if (endpoint.getRawQuery() != null) {
+            for (final String param : QUERY_SPLITTER.split(endpoint.getRawQuery())) {
+                if (param.startsWith("at=") && FULL_SHA.matcher(param.substring(3)).matches()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import java.util.List;
+import java.util.Objects;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpResponse;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * HttpCommandExecutorService which runs every command through a chain of
+ * {@link HttpCommandInterceptor}'s before handing it to the real transport.
+ */
+public class InterceptingHttpCommandExecutorService implements HttpCommandExecutorService {
+
+    private final HttpCommandExecutorService chain;
+
+    public InterceptingHttpCommandExecutorService(final HttpCommandExecutorService transport,
+            final List<HttpCommandInterceptor> interceptors) {
+        Objects.requireNonNull(transport, "transport cannot be null");
+
+        // build the chain back to front so the first interceptor added is
+        // the first one to see each command.
+        HttpCommandExecutorService next = transport;
+        for (final HttpCommandInterceptor interceptor : ImmutableList.copyOf(interceptors).reverse()) {
+            next = new Link(interceptor, next);
+        }
+        this.chain = next;
+    }
+
+    @Override
+    public HttpResponse invoke(final HttpCommand command) {
+        return chain.invoke(command);
+    }
+
+    private static final class Link implements HttpCommandExecutorService {
+
+        private final HttpCommandInterceptor interceptor;
+        private final HttpCommandExecutorService next;
+
+        Link(final HttpCommandInterceptor interceptor, final HttpCommandExecutorService next) {
+            this.interceptor = interceptor;
+            this.next = next;
+        }
+
+        @Override
+        public HttpResponse invoke(final HttpCommand command) {
+            return interceptor.intercept(command, next);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import java.util.Map;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.exception.BulkheadFullException;
+import com.cdancy.bitbucket.rest.exception.CircuitOpenException;
+import com.cdancy.bitbucket.rest.resilience.Bulkhead;
+import com.cdancy.bitbucket.rest.resilience.CircuitBreaker;
+import com.cdancy.bitbucket.rest.resilience.Isolation;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Isolates calls made to each configured feature API (e.g. SearchApi) from
+ * those made to every other API through a Bulkhead and a CircuitBreaker of
+ * its own. Calls rejected by either fail fast, without reaching the server,
+ * with a CircuitOpenException or BulkheadFullException.
+ *
+ * <p>Only server-side trouble, i.e. no response at all, a 429, or a 5xx,
+ * counts as a failure towards opening the circuit.
+ */
+public class IsolationInterceptor implements HttpCommandInterceptor {
+
+    private final Map<Class<?>, Compartment> compartments;
+
+    /**
+     * Create an IsolationInterceptor.
+     *
+     * @param isolations Isolation to apply, keyed by feature API (e.g. SearchApi.class).
+     */
+    public IsolationInterceptor(final Map<Class<?>, Isolation> isolations) {
+        final ImmutableMap.Builder<Class<?>, Compartment> builder = ImmutableMap.builder();
+        for (final Map.Entry<Class<?>, Isolation> entry : isolations.entrySet()) {
+            builder.put(entry.getKey(), new Compartment(entry.getValue()));
+        }
+        this.compartments = builder.build();
+    }
+
+    @Override
+    public HttpResponse intercept(final HttpCommand command, final HttpCommandExecutorService next) {
+        final Class<?> apiType = HttpCommands.apiType(command);
+        final Compartment compartment = apiType != null ? compartments.get(apiType) : null;
+        if (compartment == null) {
+            return next.invoke(command);
+        }
+
+        final long permit = compartment.circuitBreaker.tryAcquire();
+        if (permit == CircuitBreaker.NO_PERMIT) {
+            throw new CircuitOpenException("Circuit open for " + apiType.getSimpleName() + ": too many recent calls failed or were slow");
+        }
+        boolean admitted = false;
+        try {
+            admitted = compartment.bulkhead.tryAcquire();
+        } finally {
+            if (!admitted) {
+                compartment.circuitBreaker.release(permit);
+            }
+        }
+        if (!admitted) {
+            throw new BulkheadFullException("Bulkhead full for " + apiType.getSimpleName() + ": too many calls in flight");
+        }
+
+        final long start = System.nanoTime();
+        boolean failure = true;
+        try {
+            final HttpResponse response = next.invoke(command);
+            failure = response.getStatusCode() >= 500;
+            return response;
+        } catch (final RuntimeException e) {
+            final int statusCode = HttpCommands.statusCode(e);
+            failure = statusCode == 0 || statusCode == 429 || statusCode >= 500;
+            throw e;
+        } finally {
+            compartment.bulkhead.release();
+            compartment.circuitBreaker.onResult(permit, failure, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * State of the circuit guarding the passed API.
+     *
+     * @param apiType feature API (e.g. SearchApi.class).
+     * @return state of the circuit or null if the API is not isolated.
+     */
+    @Nullable
+    public CircuitBreaker.State circuitState(final Class<?> apiType) {
+        final Compartment compartment = compartments.get(apiType);
+        return compartment != null ? compartment.circuitBreaker.state() : null;
+    }
+
+    /**
+     * Number of further calls the passed API's bulkhead would currently let through.
+     *
+     * @param apiType feature API (e.g. SearchApi.class).
+     * @return number of available permits or -1 if the API is not isolated.
+     */
+    public int availableCalls(final Class<?> apiType) {
+        final Compartment compartment = compartments.get(apiType);
+        return compartment != null ? compartment.bulkhead.availablePermits() : -1;
+    }
+
+    private static final class Compartment {
+
+        private final Bulkhead bulkhead;
+        private final CircuitBreaker circuitBreaker;
+
+        Compartment(final Isolation isolation) {
+            this.bulkhead = new Bulkhead(isolation);
+            this.circuitBreaker = new CircuitBreaker(isolation);
+        }
+    }
+}
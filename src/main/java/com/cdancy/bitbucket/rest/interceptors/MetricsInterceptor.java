@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import java.util.Objects;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.io.Payload;
+
+import com.cdancy.bitbucket.rest.metrics.MetricsSink;
+import com.google.common.net.HttpHeaders;
+
+/**
+ * Times every request and hands, along with its status code and payload
+ * sizes, the result to a MetricsSink keyed by the `@Named` name of the
+ * operation which generated it.
+ */
+public class MetricsInterceptor implements HttpCommandInterceptor {
+
+    public static final String UNKNOWN_OPERATION = "unknown";
+
+    private final MetricsSink sink;
+
+    public MetricsInterceptor(final MetricsSink sink) {
+        this.sink = Objects.requireNonNull(sink, "sink cannot be null");
+    }
+
+    @Override
+    public HttpResponse intercept(final HttpCommand command, final HttpCommandExecutorService next) {
+        final String commandName = HttpCommands.commandName(command);
+        final String operation = commandName != null ? commandName : UNKNOWN_OPERATION;
+        final long bytesOut = bytesOut(command.getCurrentRequest());
+
+        final long start = System.nanoTime();
+        final HttpResponse response;
+        try {
+            response = next.invoke(command);
+        } catch (final RuntimeException e) {
+            sink.record(operation, HttpCommands.statusCode(e), true, System.nanoTime() - start, bytesOut, 0);
+            throw e;
+        }
+
+        final int statusCode = response.getStatusCode();
+        sink.record(operation, statusCode, statusCode >= 400, System.nanoTime() - start, bytesOut, bytesIn(response));
+        return response;
+    }
+
+    private static long bytesOut(final HttpRequest request) {
+        return length(request.getPayload());
+    }
+
+    private static long bytesIn(final HttpResponse response) {
+        final long length = length(response.getPayload());
+        if (length > 0) {
+            return length;
+        }
+        final String header = response.getFirstHeaderOrNull(HttpHeaders.CONTENT_LENGTH);
+        if (header != null) {
+            try {
+                return Long.parseLong(header.trim());
+            } catch (final NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static long length(final Payload payload) {
+        if (payload != null && payload.getContentMetadata().getContentLength() != null) {
+            return payload.getContentMetadata().getContentLength();
+        }
+        return 0;
+    }
+}
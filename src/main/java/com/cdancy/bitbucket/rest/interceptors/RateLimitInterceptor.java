@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import java.net.URI;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.concurrent.TokenBucket;
+import com.google.common.collect.Multimap;
+
+/**
+ * Paces requests, per caller identity and endpoint (i.e. scheme, host, and
+ * port), through a TokenBucket such that callers queue up client-side rather
+ * than being turned away by the server.
+ *
+ * <p>The bucket adapts to what the server tells us. Limits advertised through
+ * the `X-RateLimit-*` headers Bitbucket hands back are adopted as-is. Failing
+ * that a `429 Too Many Requests` halves the rate, which then creeps back up
+ * towards the configured rate with each successful response. Either way a
+ * 429 pauses the bucket for as long as its `Retry-After` header asks before
+ * the request is sent again.
+ */
+public class RateLimitInterceptor implements HttpCommandInterceptor {
+
+    public static final String RATE_LIMIT_LIMIT = "X-RateLimit-Limit";
+    public static final String RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+    public static final String RATE_LIMIT_FILL_RATE = "X-RateLimit-FillRate";
+    public static final String RATE_LIMIT_INTERVAL_SECONDS = "X-RateLimit-Interval-Seconds";
+
+    public static final int DEFAULT_MAX_RETRIES = 5;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+    private static final double RECOVERY_STEPS = 20;
+
+    private final String identity;
+    private final double permitsPerSecond;
+    private final double burst;
+    private final double minPermitsPerSecond;
+    private final int maxRetries;
+    private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<>();
+
+    private final AtomicLong throttled = new AtomicLong();
+
+    public RateLimitInterceptor(final String identity, final double permitsPerSecond, final int burst) {
+        this(identity, permitsPerSecond, burst, DEFAULT_MAX_RETRIES);
+    }
+
+    /**
+     * Create a RateLimitInterceptor.
+     *
+     * @param identity opaque string identifying the caller (e.g. a hash of its credentials).
+     * @param permitsPerSecond rate at which requests may be sent until the server says otherwise.
+     * @param burst number of requests which may be sent back-to-back.
+     * @param maxRetries number of times a request answered with a 429 is sent again before giving up.
+     */
+    public RateLimitInterceptor(final String identity, final double permitsPerSecond, final int burst, final int maxRetries) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("permitsPerSecond must be greater than 0: " + permitsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be greater than 0: " + burst);
+        }
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries cannot be negative: " + maxRetries);
+        }
+        this.identity = Objects.requireNonNull(identity, "identity cannot be null");
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.minPermitsPerSecond = permitsPerSecond / (1 << 6);
+        this.maxRetries = maxRetries;
+    }
+
+    @Override
+    public HttpResponse intercept(final HttpCommand command, final HttpCommandExecutorService next) {
+        final Limit limit = limits.computeIfAbsent(key(command.getCurrentRequest().getEndpoint()),
+                key -> new Limit(new TokenBucket(permitsPerSecond, burst), permitsPerSecond));
+        for (int attempt = 0;; attempt++) {
+            limit.bucket.acquire();
+
+            final HttpResponse response;
+            try {
+                response = next.invoke(command);
+            } catch (final HttpResponseException e) {
+                final HttpResponse failed = e.getResponse();
+                if (failed == null || failed.getStatusCode() != TOO_MANY_REQUESTS) {
+                    throw e;
+                }
+                throttled.incrementAndGet();
+                onTooManyRequests(limit, failed);
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+                command.setException(null);
+                continue;
+            }
+
+            onResponse(limit, response);
+            return response;
+        }
+    }
+
+    /**
+     * Number of requests which could currently be sent to the passed
+     * endpoint without waiting.
+     *
+     * @param endpoint any URI pointing at the endpoint in question.
+     * @return number of available permits.
+     */
+    public int availablePermits(final URI endpoint) {
+        final Limit limit = limits.get(key(endpoint));
+        return limit != null ? limit.bucket.availablePermits() : (int) burst;
+    }
+
+    /**
+     * Rate, as currently learned, at which requests are sent to the passed endpoint.
+     *
+     * @param endpoint any URI pointing at the endpoint in question.
+     * @return permits per second.
+     */
+    public double permitsPerSecond(final URI endpoint) {
+        final Limit limit = limits.get(key(endpoint));
+        return limit != null ? limit.bucket.permitsPerSecond() : permitsPerSecond;
+    }
+
+    /**
+     * Number of requests the server answered with a 429.
+     *
+     * @return number of throttled requests.
+     */
+    public long throttled() {
+        return throttled.get();
+    }
+
+    private void onResponse(final Limit limit, final HttpResponse response) {
+        if (!learn(limit, response.getHeaders())) {
+            final double current = limit.bucket.permitsPerSecond();
+            if (current < limit.ceiling) {
+                limit.bucket.setPermitsPerSecond(Math.min(limit.ceiling, current + limit.ceiling / RECOVERY_STEPS));
+            }
+        }
+    }
+
+    private void onTooManyRequests(final Limit limit, final HttpResponse response) {
+        if (!learn(limit, response.getHeaders())) {
+            limit.bucket.setPermitsPerSecond(Math.max(minPermitsPerSecond, limit.bucket.permitsPerSecond() / 2));
+        }
+        final long retryAfterMillis = HttpCommands.retryAfterMillis(response);
+        limit.bucket.pause(retryAfterMillis >= 0 ? retryAfterMillis : DEFAULT_RETRY_AFTER_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adopt whatever limits the server advertised.
+     *
+     * @return true if the server advertised its refill rate.
+     */
+    private static boolean learn(final Limit limit, final Multimap<String, String> headers) {
+        final Double capacity = number(headers, RATE_LIMIT_LIMIT);
+        if (capacity != null && capacity >= 1) {
+            limit.bucket.setCapacity(capacity);
+        }
+        final Double remaining = number(headers, RATE_LIMIT_REMAINING);
+        if (remaining != null) {
+            limit.bucket.limitTo(remaining);
+        }
+        final Double fillRate = number(headers, RATE_LIMIT_FILL_RATE);
+        if (fillRate != null && fillRate > 0) {
+            final Double interval = number(headers, RATE_LIMIT_INTERVAL_SECONDS);
+            final double rate = interval != null && interval > 0 ? fillRate / interval : fillRate;
+            limit.ceiling = rate;
+            limit.bucket.setPermitsPerSecond(rate);
+            return true;
+        }
+        return false;
+    }
+
+    @Nullable
+    private static Double number(final Multimap<String, String> headers, final String name) {
+        final String value = HttpCommands.firstHeader(headers, name);
+        if (value != null) {
+            try {
+                return Double.valueOf(value.trim());
+            } catch (final NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private String key(final URI endpoint) {
+        return identity + " " + endpoint.getScheme() + "://" + endpoint.getHost() + ":" + endpoint.getPort();
+    }
+
+    private static final class Limit {
+
+        private final TokenBucket bucket;
+        private volatile double ceiling;
+
+        Limit(final TokenBucket bucket, final double ceiling) {
+            this.bucket = bucket;
+            this.ceiling = ceiling;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+
+import com.cdancy.bitbucket.rest.cache.CachedResponse;
+import com.cdancy.bitbucket.rest.cache.ResponseCache;
+import com.cdancy.bitbucket.rest.cache.ResponseCachePolicy;
+import com.google.common.base.Throwables;
+import com.google.common.net.HttpHeaders;
+
+/**
+ * Serves GET's, of those operations allowed by a ResponseCachePolicy, from a
+ * ResponseCache. Cached responses are revalidated with `If-None-Match` and/or
+ * `If-Modified-Since` and served again should the server answer with a 304.
+ *
+ * <p>Responses are keyed by caller identity, method, and full URI such that a
+ * single ResponseCache can safely be shared amongst clients.
+ */
+public class ResponseCacheInterceptor implements HttpCommandInterceptor {
+
+    private static final int NOT_MODIFIED = 304;
+
+    private final ResponseCache cache;
+    private final ResponseCachePolicy policy;
+    private final String identity;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a ResponseCacheInterceptor.
+     *
+     * @param cache where responses are stored.
+     * @param policy which operations may be cached and for how long.
+     * @param identity opaque string identifying the caller (e.g. a hash of its credentials).
+     */
+    public ResponseCacheInterceptor(final ResponseCache cache, final ResponseCachePolicy policy, final String identity) {
+        this.cache = Objects.requireNonNull(cache, "cache cannot be null");
+        this.policy = Objects.requireNonNull(policy, "policy cannot be null");
+        this.identity = Objects.requireNonNull(identity, "identity cannot be null");
+    }
+
+    @Override
+    public HttpResponse intercept(final HttpCommand command, final HttpCommandExecutorService next) {
+        final HttpRequest request = command.getCurrentRequest();
+        final String commandName = HttpCommands.commandName(command);
+        if (!"GET".equals(request.getMethod()) || commandName == null || !policy.isCacheable(commandName)) {
+            return next.invoke(command);
+        }
+
+        final String key = identity + " " + request.getMethod() + " " + request.getEndpoint();
+        final long ttlMillis = policy.ttlMillis(commandName);
+        final CachedResponse cached = cache.get(key);
+        if (cached != null) {
+            if (ttlMillis > 0 && System.currentTimeMillis() - cached.storedAt() < ttlMillis) {
+                hits.incrementAndGet();
+                return cached.toHttpResponse();
+            } else if (cached.hasValidators()) {
+                command.setCurrentRequest(withValidators(request, cached));
+            }
+        }
+
+        final HttpResponse response;
+        try {
+            response = next.invoke(command);
+        } catch (final HttpResponseException e) {
+            if (cached != null && e.getResponse() != null && e.getResponse().getStatusCode() == NOT_MODIFIED) {
+                command.setException(null);
+                return notModified(key, cached);
+            }
+            throw e;
+        }
+
+        if (cached != null && response.getStatusCode() == NOT_MODIFIED) {
+            return notModified(key, cached);
+        }
+
+        misses.incrementAndGet();
+        if (response.getStatusCode() == 200
+                && (ttlMillis > 0 || CachedResponse.hasValidators(response.getHeaders()))) {
+            final CachedResponse fresh = store(response);
+            storeQuietly(key, fresh);
+            return fresh.toHttpResponse();
+        } else if (cached != null) {
+            try {
+                cache.invalidate(key);
+            } catch (final RuntimeException e) { // NOPMD
+                // the server answered, a cache failing to keep up must not fail the call
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Number of requests served from cache without contacting the server.
+     *
+     * @return number of cache hits.
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of requests served from cache after the server confirmed the
+     * cached response was still current.
+     *
+     * @return number of successful revalidations.
+     */
+    public long notModified() {
+        return notModified.get();
+    }
+
+    /**
+     * Number of cacheable requests for which the server handed back a new response.
+     *
+     * @return number of cache misses.
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    private HttpResponse notModified(final String key, final CachedResponse cached) {
+        notModified.incrementAndGet();
+        storeQuietly(key, cached.revalidated(System.currentTimeMillis()));
+        return cached.toHttpResponse();
+    }
+
+    private static CachedResponse store(final HttpResponse response) {
+        try {
+            return CachedResponse.from(response, System.currentTimeMillis());
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private static HttpRequest withValidators(final HttpRequest request, final CachedResponse cached) {
+        final HttpRequest.Builder<?> builder = request.toBuilder();
+        if (cached.etag() != null) {
+            builder.replaceHeader(HttpHeaders.IF_NONE_MATCH, cached.etag());
+        }
+        if (cached.lastModified() != null) {
+            builder.replaceHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified());
+        }
+        return builder.build();
+    }
+
+    private void storeQuietly(final String key, final CachedResponse response) {
+        try {
+            cache.put(key, response);
+        } catch (final RuntimeException e) { // NOPMD
+            // the server answered, a cache failing to keep up must not fail the call
+        }
+    }
+}
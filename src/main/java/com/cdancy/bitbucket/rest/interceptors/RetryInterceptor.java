@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+
+import com.cdancy.bitbucket.rest.retry.RetryPolicy;
+import com.cdancy.bitbucket.rest.retry.RetryableFailure;
+import com.google.common.base.Throwables;
+
+/**
+ * Sends failed requests again, as allowed by a RetryPolicy, backing off
+ * between attempts. Should the server ask, through `Retry-After`, for a
+ * longer wait than the policy's backoff that is honoured instead.
+ *
+ * <p>When paired with a RateLimitInterceptor, which already holds back and
+ * re-sends throttled requests, 429's are left to the rate limiter alone
+ * such that a throttled request isn't retried by both.
+ */
+public class RetryInterceptor implements HttpCommandInterceptor {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final RetryPolicy policy;
+    private final boolean retryTooManyRequests;
+    private final AtomicLong retries = new AtomicLong();
+
+    public RetryInterceptor(final RetryPolicy policy) {
+        this(policy, true);
+    }
+
+    /**
+     * Create a RetryInterceptor.
+     *
+     * @param policy when, how often, and how long to wait before retrying.
+     * @param retryTooManyRequests whether or not to retry 429's the policy
+     *     deems transient, false if a RateLimitInterceptor handles them.
+     */
+    public RetryInterceptor(final RetryPolicy policy, final boolean retryTooManyRequests) {
+        this.policy = Objects.requireNonNull(policy, "policy cannot be null");
+        this.retryTooManyRequests = retryTooManyRequests;
+    }
+
+    @Override
+    public HttpResponse intercept(final HttpCommand command, final HttpCommandExecutorService next) {
+        final String commandName = HttpCommands.commandName(command);
+        final RetryPolicy operationPolicy = policy.forOperation(commandName);
+        if (!operationPolicy.isRetryable(command.getCurrentRequest().getMethod(), commandName)) {
+            return next.invoke(command);
+        }
+
+        final long start = System.nanoTime();
+        for (int attempt = 1;; attempt++) {
+            try {
+                return next.invoke(command);
+            } catch (final RuntimeException e) {
+                final RetryableFailure failure = RetryableFailure.from(e);
+                if (attempt >= operationPolicy.maxAttempts()
+                        || (!retryTooManyRequests && failure.statusCode() == TOO_MANY_REQUESTS)
+                        || !operationPolicy.isTransient(failure)) {
+                    throw e;
+                }
+
+                final long delayMillis = Math.max(operationPolicy.backoffMillis(attempt + 1), retryAfterMillis(e));
+                final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (operationPolicy.deadlineMillis() > 0 && elapsedMillis + delayMillis > operationPolicy.deadlineMillis()) {
+                    throw e;
+                }
+
+                retries.incrementAndGet();
+                sleep(delayMillis);
+                command.setException(null);
+            }
+        }
+    }
+
+    /**
+     * Number of times a failed request was sent again.
+     *
+     * @return number of retries.
+     */
+    public long retries() {
+        return retries.get();
+    }
+
+    private static long retryAfterMillis(final RuntimeException exception) {
+        if (exception instanceof HttpResponseException && ((HttpResponseException) exception).getResponse() != null) {
+            return HttpCommands.retryAfterMillis(((HttpResponseException) exception).getResponse());
+        }
+        return -1;
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+
+import com.cdancy.bitbucket.rest.cache.CachedResponse;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Coalesces identical GET's (i.e. same caller identity, method, and full URI)
+ * made concurrently such that only the first is sent while the others wait
+ * for, and are handed a copy of, its response. Should the request fail every
+ * waiting caller sees the same exception.
+ *
+ * <p>Responses are buffered in order to be shared, which is why operations
+ * streaming their response are excluded by default.
+ */
+public class SingleFlightInterceptor implements HttpCommandInterceptor {
+
+    public static final Set<String> DEFAULT_EXCLUDED_COMMAND_NAMES = ImmutableSet.of("file:raw-content-stream",
+            "file:stream-lines",
+            "commits:stream",
+            "commits:stream-changes",
+            "pull-request:stream-activities");
+
+    private final String identity;
+    private final Set<String> excludedCommandNames;
+    private final ConcurrentMap<String, CompletableFuture<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public SingleFlightInterceptor(final String identity) {
+        this(identity, DEFAULT_EXCLUDED_COMMAND_NAMES);
+    }
+
+    /**
+     * Create a SingleFlightInterceptor.
+     *
+     * @param identity opaque string identifying the caller (e.g. a hash of its credentials).
+     * @param excludedCommandNames operations, by their `@Named` name, never to coalesce.
+     */
+    public SingleFlightInterceptor(final String identity, final Set<String> excludedCommandNames) {
+        this.identity = Objects.requireNonNull(identity, "identity cannot be null");
+        this.excludedCommandNames = ImmutableSet.copyOf(excludedCommandNames);
+    }
+
+    @Override
+    public HttpResponse intercept(final HttpCommand command, final HttpCommandExecutorService next) {
+        final HttpRequest request = command.getCurrentRequest();
+        final String commandName = HttpCommands.commandName(command);
+        if (!"GET".equals(request.getMethod()) || (commandName != null && excludedCommandNames.contains(commandName))) {
+            return next.invoke(command);
+        }
+
+        final String key = identity + " " + request.getMethod() + " " + request.getEndpoint();
+        final CompletableFuture<CachedResponse> call = new CompletableFuture<>();
+        final CompletableFuture<CachedResponse> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing).toHttpResponse();
+        }
+
+        try {
+            final CachedResponse response = CachedResponse.from(next.invoke(command), System.currentTimeMillis());
+            call.complete(response);
+            return response.toHttpResponse();
+        } catch (final IOException e) {
+            call.completeExceptionally(e);
+            throw Throwables.propagate(e);
+        } catch (final RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            if (!call.isDone()) {
+                call.completeExceptionally(new IllegalStateException("Coalesced request did not complete: " + key));
+            }
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Number of requests which, rather than being sent, shared the response
+     * of an identical request already in flight.
+     *
+     * @return number of coalesced requests.
+     */
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    private static CachedResponse await(final CompletableFuture<CachedResponse> call) {
+        try {
+            return call.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        } catch (final ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+}
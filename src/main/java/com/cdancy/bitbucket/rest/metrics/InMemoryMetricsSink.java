@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.metrics;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.Lists;
+
+/**
+ * MetricsSink keeping, per operation and status code, counters and a
+ * LatencyHistogram in memory. Once an operation and status code has been
+ * seen recording further requests for it does not allocate. Use
+ * {@link #snapshot()} to see where time and bytes are being spent.
+ */
+public class InMemoryMetricsSink implements MetricsSink {
+
+    // status codes run from 100 to 599 with 0 reserved for requests which got no response
+    private static final int STATUS_CODES = 600;
+
+    private final ConcurrentMap<String, AtomicReferenceArray<Counters>> operations = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(final String operation, final int statusCode, final boolean error,
+            final long latencyNanos, final long bytesOut, final long bytesIn) {
+        AtomicReferenceArray<Counters> byStatus = operations.get(operation);
+        if (byStatus == null) {
+            byStatus = operations.computeIfAbsent(operation, key -> new AtomicReferenceArray<>(STATUS_CODES));
+        }
+        final int slot = statusCode > 0 && statusCode < STATUS_CODES ? statusCode : 0;
+        Counters counters = byStatus.get(slot);
+        if (counters == null) {
+            byStatus.compareAndSet(slot, null, new Counters());
+            counters = byStatus.get(slot);
+        }
+
+        counters.count.increment();
+        if (error) {
+            counters.errors.increment();
+        }
+        counters.bytesOut.add(bytesOut);
+        counters.bytesIn.add(bytesIn);
+        counters.latency.record(latencyNanos);
+    }
+
+    /**
+     * Snapshot of everything recorded thus far, ordered by total time spent
+     * with the most expensive operation first.
+     *
+     * @return List of OperationMetrics.
+     */
+    public List<OperationMetrics> snapshot() {
+        final List<OperationMetrics> snapshot = Lists.newArrayList();
+        for (final Map.Entry<String, AtomicReferenceArray<Counters>> entry : operations.entrySet()) {
+            final AtomicReferenceArray<Counters> byStatus = entry.getValue();
+            for (int statusCode = 0; statusCode < STATUS_CODES; statusCode++) {
+                final Counters counters = byStatus.get(statusCode);
+                if (counters != null) {
+                    snapshot.add(counters.snapshot(entry.getKey(), statusCode));
+                }
+            }
+        }
+        snapshot.sort(Comparator.comparingDouble(OperationMetrics::totalLatency).reversed());
+        return snapshot;
+    }
+
+    /**
+     * Forget everything recorded thus far.
+     */
+    public void reset() {
+        operations.clear();
+    }
+
+    private static final class Counters {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        OperationMetrics snapshot(final String operation, final int statusCode) {
+            return OperationMetrics.create(operation,
+                    statusCode,
+                    count.sum(),
+                    errors.sum(),
+                    bytesOut.sum(),
+                    bytesIn.sum(),
+                    latency.mean(),
+                    latency.percentile(50),
+                    latency.percentile(90),
+                    latency.percentile(99),
+                    latency.max());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.metrics;
+
+/**
+ * Receives a measurement for every request sent to the server. Called on
+ * the requesting thread, after the response has been handed back, so
+ * implementations should be thread-safe and cheap.
+ */
+public interface MetricsSink {
+
+    /**
+     * Record a single request.
+     *
+     * @param operation name of the operation, as given by its `@Named` annotation (e.g. `pull-request:merge`).
+     * @param statusCode status code handed back by the server, or 0 if no response was received.
+     * @param error whether or not the request failed.
+     * @param latencyNanos time taken to send the request and receive its response.
+     * @param bytesOut size of the request payload, or 0 if unknown.
+     * @param bytesIn size of the response payload, or 0 if unknown.
+     */
+    void record(String operation, int statusCode, boolean error, long latencyNanos, long bytesOut, long bytesIn);
+}
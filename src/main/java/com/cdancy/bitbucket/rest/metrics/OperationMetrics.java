@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.metrics;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Point-in-time snapshot of everything recorded for a single operation and
+ * status code. Latencies are in nanoseconds.
+ */
+@AutoValue
+public abstract class OperationMetrics {
+
+    public abstract String operation();
+
+    public abstract int statusCode();
+
+    public abstract long count();
+
+    public abstract long errors();
+
+    public abstract long bytesOut();
+
+    public abstract long bytesIn();
+
+    public abstract double meanLatency();
+
+    public abstract long p50Latency();
+
+    public abstract long p90Latency();
+
+    public abstract long p99Latency();
+
+    public abstract long maxLatency();
+
+    /**
+     * Total time spent on this operation and status code.
+     *
+     * @return total latency in nanoseconds.
+     */
+    public double totalLatency() {
+        return meanLatency() * count();
+    }
+
+    public static OperationMetrics create(final String operation,
+            final int statusCode,
+            final long count,
+            final long errors,
+            final long bytesOut,
+            final long bytesIn,
+            final double meanLatency,
+            final long p50Latency,
+            final long p90Latency,
+            final long p99Latency,
+            final long maxLatency) {
+        return new AutoValue_OperationMetrics(operation, statusCode, count, errors, bytesOut, bytesIn,
+                meanLatency, p50Latency, p90Latency, p99Latency, maxLatency);
+    }
+}
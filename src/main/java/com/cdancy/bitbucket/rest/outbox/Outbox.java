@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.outbox;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.concurrent.BitbucketExecutors;
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.retry.RetryPolicy;
+import com.cdancy.bitbucket.rest.retry.RetryableFailure;
+
+/**
+ * Records mutating calls (build statuses, pull request comments, task
+ * updates, and insight reports) to an {@link OutboxJournal} and delivers
+ * them in the background, such that callers can move on as soon as a call
+ * is durably recorded rather than once Bitbucket answered it.
+ *
+ * <p>Entries are spread over a number of senders by their target, such that
+ * operations on the same commit, pull request, or task are delivered in the
+ * order they were submitted, and retried according to a {@link RetryPolicy}.
+ * Entries Bitbucket refused outright (i.e. 4xx answers), or still failing
+ * once the policy gives up, are acknowledged and handed to the failure
+ * handler. Entries not yet delivered when the Outbox is closed,
+ * or the process goes away, are delivered once it is opened again.
+ *
+ * <p>Delivery is at least once: an entry delivered just before a crash, but
+ * not yet acknowledged, is delivered again. Build statuses, task updates,
+ * and insight reports are idempotent whereas comments are not. Events
+ * replayed by callers are deduplicated by passing a dedupe key.
+ */
+public class Outbox implements Closeable {
+
+    public static final int DEFAULT_SENDERS = 4;
+
+    private static final long POLL_MILLIS = 100;
+    private static final String BITBUCKET_EXCEPTION_PREFIX = "com.atlassian.";
+
+    /**
+     * Policy making up to 10 attempts, backing off from 1 second up to 1 minute.
+     */
+    public static final RetryPolicy DEFAULT_RETRY_POLICY = RetryPolicy.builder()
+            .maxAttempts(10)
+            .backoff(1, 60, TimeUnit.SECONDS)
+            .build();
+
+    private final BitbucketApi api;
+    private final OutboxJournal journal;
+    private final RetryPolicy retryPolicy;
+    private final BiConsumer<OutboxEntry, List<Error>> onFailure;
+    private final List<BlockingQueue<OutboxEntry>> queues = new ArrayList<>();
+    private final ExecutorService senders;
+    private final Object drained = new Object();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final CountDownLatch closing = new CountDownLatch(1);
+    private volatile boolean closed;
+
+    private Outbox(final Builder builder) {
+        this.api = builder.api;
+        this.retryPolicy = builder.retryPolicy;
+        this.onFailure = builder.onFailure;
+        this.journal = OutboxJournal.open(builder.file, builder.dedupeWindow, builder.compactThreshold);
+        this.senders = BitbucketExecutors.newDaemonCachedThreadPool("bitbucket-rest-outbox-%d");
+        for (int i = 0; i < builder.senders; i++) {
+            final BlockingQueue<OutboxEntry> queue = new LinkedBlockingQueue<>();
+            queues.add(queue);
+            senders.execute(() -> send(queue));
+        }
+        for (final OutboxEntry entry : journal.pending()) {
+            route(entry);
+        }
+    }
+
+    /**
+     * Create a Builder for an Outbox journaling to the passed file.
+     *
+     * @param api the api to deliver operations through.
+     * @param file where the journal is kept.
+     * @return Builder for an Outbox.
+     */
+    public static Builder builder(final BitbucketApi api, final Path file) {
+        return new Builder(api, file);
+    }
+
+    public boolean submit(final OutboxOperation operation) {
+        return submit(null, operation);
+    }
+
+    /**
+     * Durably record the passed operation for delivery.
+     *
+     * @param dedupeKey key identifying the event the operation is for (e.g.
+     *     the id of an upstream message) or null to never deduplicate.
+     * @param operation the operation to deliver.
+     * @return true if recorded or false if an operation with the same
+     *     dedupe key is pending or was recently delivered.
+     * @throws IllegalStateException if this Outbox was closed.
+     */
+    public boolean submit(@Nullable final String dedupeKey, final OutboxOperation operation) {
+        if (closed) {
+            throw new IllegalStateException("Outbox is closed");
+        }
+        final OutboxEntry entry = journal.append(dedupeKey, operation);
+        if (entry == null) {
+            return false;
+        }
+        route(entry);
+        return true;
+    }
+
+    /**
+     * Wait for every recorded operation to be delivered, or given up on.
+     *
+     * @param timeout how long to wait.
+     * @param unit unit of `timeout`.
+     * @return true if nothing is pending or false if the timeout lapsed first.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean flush(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (drained) {
+            while (journal.size() > 0) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(drained, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Number of recorded operations not yet delivered.
+     *
+     * @return number of pending operations.
+     */
+    public int pending() {
+        return journal.size();
+    }
+
+    public long delivered() {
+        return delivered.get();
+    }
+
+    /**
+     * Number of operations given up on after exhausting every attempt.
+     *
+     * @return number of failed operations.
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Stop accepting and delivering operations, waiting for deliveries under
+     * way to finish. Whatever is still pending stays in the journal and is
+     * delivered once it is opened again.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closing.countDown();
+        senders.shutdown();
+        try {
+            senders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    private void route(final OutboxEntry entry) {
+        queues.get(Math.floorMod(entry.operation().target().hashCode(), queues.size())).add(entry);
+    }
+
+    private void send(final BlockingQueue<OutboxEntry> queue) {
+        while (!closed) {
+            final OutboxEntry entry;
+            try {
+                entry = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (entry == null) {
+                continue;
+            }
+            try {
+                final List<Error> errors = deliver(entry);
+                if (errors == null) {
+                    return;
+                }
+                journal.acknowledge(entry.id());
+                if (errors.isEmpty()) {
+                    delivered.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                    onFailure.accept(entry, errors);
+                }
+            } catch (final RuntimeException e) { // NOPMD
+                // neither a failing acknowledgement nor failure handler may take
+                // the sender, and with it every target of its queue, down
+            } finally {
+                synchronized (drained) {
+                    drained.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deliver the passed entry, retrying for as long as the policy allows
+     * and the failure is worth retrying.
+     *
+     * @return Error's of the last attempt, empty if delivered, or null if
+     *     closed while backing off.
+     */
+    @Nullable
+    private List<Error> deliver(final OutboxEntry entry) {
+        for (int attempt = 1; ; attempt++) {
+            List<Error> errors;
+            try {
+                errors = entry.operation().deliver(api);
+            } catch (final RuntimeException e) {
+                errors = Collections.singletonList(Error.create(null, e.getMessage(), e.getClass().getName(), false, null));
+            }
+            if (errors.isEmpty() || attempt >= retryPolicy.maxAttempts() || refused(errors)) {
+                return errors;
+            }
+            try {
+                if (closing.await(retryPolicy.backoffMillis(attempt + 1), TimeUnit.MILLISECONDS)) {
+                    return null;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Whether the passed Error's are Bitbucket's own explanation of why it
+     * refused an operation. BitbucketErrorHandler only hands over the body
+     * of 4xx answers (e.g. a comment on a deleted pull request) which fail
+     * the same way however often they are sent. Server errors, throttling,
+     * and I/O failures instead surface as client side exceptions and are
+     * worth retrying, as are errors the policy deems transient.
+     */
+    private boolean refused(final List<Error> errors) {
+        for (final Error error : errors) {
+            final String exceptionName = error.exceptionName();
+            if (exceptionName != null
+                    && (!exceptionName.startsWith(BITBUCKET_EXCEPTION_PREFIX)
+                        || retryPolicy.isTransient(RetryableFailure.create(0, exceptionName, error.conflicted())))) {
+                return false;
+            }
+        }
+        return !errors.isEmpty();
+    }
+
+    public static class Builder {
+
+        private final BitbucketApi api;
+        private final Path file;
+        private int senders = DEFAULT_SENDERS;
+        private RetryPolicy retryPolicy = DEFAULT_RETRY_POLICY;
+        private int dedupeWindow = OutboxJournal.DEFAULT_DEDUPE_WINDOW;
+        private int compactThreshold = OutboxJournal.DEFAULT_COMPACT_THRESHOLD;
+        private BiConsumer<OutboxEntry, List<Error>> onFailure = (entry, errors) -> { };
+
+        Builder(final BitbucketApi api, final Path file) {
+            this.api = Objects.requireNonNull(api, "api cannot be null");
+            this.file = Objects.requireNonNull(file, "file cannot be null");
+        }
+
+        /**
+         * Number of operations delivered concurrently.
+         *
+         * @param senders number of concurrent senders.
+         * @return this Builder.
+         */
+        public Builder senders(final int senders) {
+            if (senders < 1) {
+                throw new IllegalArgumentException("senders must be greater than 0: " + senders);
+            }
+            this.senders = senders;
+            return this;
+        }
+
+        /**
+         * How many times, and how far apart, a failed delivery is attempted.
+         * Only `maxAttempts`, the backoff, and the retryable exception names
+         * of the policy are used.
+         *
+         * @param retryPolicy the policy to retry failed deliveries with.
+         * @return this Builder.
+         */
+        public Builder retryPolicy(final RetryPolicy retryPolicy) {
+            this.retryPolicy = Objects.requireNonNull(retryPolicy, "retryPolicy cannot be null");
+            return this;
+        }
+
+        /**
+         * Number of dedupe keys of delivered operations to remember.
+         *
+         * @param dedupeWindow number of dedupe keys to remember.
+         * @return this Builder.
+         */
+        public Builder dedupeWindow(final int dedupeWindow) {
+            if (dedupeWindow < 0) {
+                throw new IllegalArgumentException("dedupeWindow must be greater than or equal to 0: " + dedupeWindow);
+            }
+            this.dedupeWindow = dedupeWindow;
+            return this;
+        }
+
+        /**
+         * Number of delivered operations after which the journal is compacted.
+         *
+         * @param compactThreshold number of delivered operations.
+         * @return this Builder.
+         */
+        public Builder compactThreshold(final int compactThreshold) {
+            if (compactThreshold < 1) {
+                throw new IllegalArgumentException("compactThreshold must be greater than 0: " + compactThreshold);
+            }
+            this.compactThreshold = compactThreshold;
+            return this;
+        }
+
+        /**
+         * Handler receiving each operation given up on along with the Error's of its last attempt.
+         *
+         * @param onFailure the failure handler.
+         * @return this Builder.
+         */
+        public Builder onFailure(final BiConsumer<OutboxEntry, List<Error>> onFailure) {
+            this.onFailure = Objects.requireNonNull(onFailure, "onFailure cannot be null");
+            return this;
+        }
+
+        public Outbox build() {
+            return new Outbox(this);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.outbox;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * OutboxOperation as recorded in an {@link OutboxJournal}.
+ */
+@AutoValue
+public abstract class OutboxEntry {
+
+    /**
+     * Position of this entry in the journal, increasing with every append.
+     *
+     * @return id of this entry.
+     */
+    public abstract long id();
+
+    /**
+     * Caller supplied key identifying the event this entry was submitted for.
+     * No two entries with the same key are ever accepted.
+     *
+     * @return dedupe key or null if none.
+     */
+    @Nullable
+    public abstract String dedupeKey();
+
+    public abstract OutboxOperation operation();
+
+    public static OutboxEntry create(final long id, @Nullable final String dedupeKey, final OutboxOperation operation) {
+        return new AutoValue_OutboxEntry(id, dedupeKey, operation);
+    }
+}
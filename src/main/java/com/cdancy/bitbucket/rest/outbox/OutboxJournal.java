@@ -0,0 +1,502 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.outbox;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.BitbucketUtils;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+/**
+ * Append-only file of OutboxEntry's along with which of them were delivered.
+ *
+ * <p>Every record is a single line: appended entries are forced to disk
+ * before {@link #append(String, OutboxOperation)} returns, whereas
+ * acknowledgements are not (losing one only means delivering its entry
+ * again). Appends racing each other share a single force: whichever append
+ * finds no force in progress forces everything written so far on behalf of
+ * all of them.
+ *
+ * <p>Once enough entries were acknowledged, and on every open, the journal
+ * is compacted by writing only the still pending entries, along with the
+ * dedupe keys of the most recently delivered ones, to a temporary sibling
+ * which is then moved over the original. Records torn by a crash part way
+ * through an append are dropped along the way.
+ *
+ * <p>Interrupting a thread part way through I/O on a FileChannel closes the
+ * channel for every thread. Callers' interrupts are therefore held back for
+ * the duration of each operation, and a channel closed regardless (i.e. by
+ * an interrupt arriving part way through) is reopened on next use.
+ */
+public final class OutboxJournal implements Closeable {
+
+    public static final int DEFAULT_DEDUPE_WINDOW = 10000;
+    public static final int DEFAULT_COMPACT_THRESHOLD = 1000;
+
+    private static final String APPENDED = "A";
+    private static final String DELIVERED = "D";
+    private static final String KEY = "K";
+
+    /**
+     * Forces the journal's writes to disk. Only ever replaced by tests
+     * simulating a failing disk.
+     */
+    interface Forcer {
+        void force(FileChannel channel) throws IOException;
+    }
+
+    static final Forcer FORCE_DATA = channel -> channel.force(false);
+
+    private final Path file;
+    private final int dedupeWindow;
+    private final int compactThreshold;
+    private final Forcer forcer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition forced = lock.newCondition();
+    private final Map<Long, OutboxEntry> pending = Maps.newLinkedHashMap();
+    private final Map<String, Long> pendingKeys = Maps.newHashMap();
+    private final Set<String> deliveredKeys = new LinkedHashSet<>();
+    private FileChannel channel;
+    private long nextId = 1;
+    private int acknowledgedSinceCompaction;
+    private long writes;
+    private long forcedWrites;
+    private boolean forcing;
+    private boolean closed;
+
+    private OutboxJournal(final Path file, final int dedupeWindow, final int compactThreshold, final Forcer forcer) {
+        this.file = file;
+        this.dedupeWindow = dedupeWindow;
+        this.compactThreshold = compactThreshold;
+        this.forcer = forcer;
+    }
+
+    public static OutboxJournal open(final Path file) {
+        return open(file, DEFAULT_DEDUPE_WINDOW, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * Open, creating if need be, the journal at the passed file recovering
+     * whatever entries it has pending.
+     *
+     * @param file where the journal is kept.
+     * @param dedupeWindow number of dedupe keys of delivered entries to remember.
+     * @param compactThreshold number of acknowledgements after which to compact.
+     * @return the opened OutboxJournal.
+     */
+    public static OutboxJournal open(final Path file, final int dedupeWindow, final int compactThreshold) {
+        return open(file, dedupeWindow, compactThreshold, FORCE_DATA);
+    }
+
+    static OutboxJournal open(final Path file, final int dedupeWindow, final int compactThreshold, final Forcer forcer) {
+        Objects.requireNonNull(file, "file cannot be null");
+        if (dedupeWindow < 0) {
+            throw new IllegalArgumentException("dedupeWindow must be greater than or equal to 0: " + dedupeWindow);
+        }
+        if (compactThreshold < 1) {
+            throw new IllegalArgumentException("compactThreshold must be greater than 0: " + compactThreshold);
+        }
+        final OutboxJournal journal = new OutboxJournal(file, dedupeWindow, compactThreshold, forcer);
+        journal.lock.lock();
+        try {
+            journal.recover();
+            journal.compact();
+        } finally {
+            journal.lock.unlock();
+        }
+        return journal;
+    }
+
+    /**
+     * Durably record the passed operation. Should it fail to be written, or
+     * forced, to disk the operation is not recorded at all: it is not handed
+     * back as pending nor does it hold on to its dedupe key.
+     *
+     * @param dedupeKey key identifying the event the operation is for, may be null.
+     * @param operation the operation to record.
+     * @return the recorded entry or null if an entry with the same dedupe key
+     *     is pending or was recently delivered.
+     */
+    @Nullable
+    public OutboxEntry append(@Nullable final String dedupeKey, final OutboxOperation operation) {
+        Objects.requireNonNull(operation, "operation cannot be null");
+        lock.lock();
+        try {
+            checkOpen();
+            if (dedupeKey != null && (pendingKeys.containsKey(dedupeKey) || deliveredKeys.contains(dedupeKey))) {
+                return null;
+            }
+            final OutboxEntry entry = OutboxEntry.create(nextId++, dedupeKey, operation);
+            try {
+                write(appended(entry));
+                pending.put(entry.id(), entry);
+                if (dedupeKey != null) {
+                    pendingKeys.put(dedupeKey, entry.id());
+                }
+                awaitForced(++writes);
+            } catch (final RuntimeException e) {
+                forget(entry);
+                throw e;
+            }
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record the passed entry as delivered, or given up on, such that it is
+     * not handed back again.
+     *
+     * @param id id of the entry.
+     */
+    public void acknowledge(final long id) {
+        lock.lock();
+        try {
+            checkOpen();
+            final OutboxEntry entry = pending.remove(id);
+            if (entry == null) {
+                return;
+            }
+            if (entry.dedupeKey() != null) {
+                pendingKeys.remove(entry.dedupeKey());
+                remember(entry.dedupeKey());
+            }
+            final JsonArray record = new JsonArray();
+            record.add(DELIVERED);
+            record.add(id);
+            write(record);
+            writes++;
+
+            acknowledgedSinceCompaction++;
+            if (acknowledgedSinceCompaction >= compactThreshold && acknowledgedSinceCompaction >= pending.size()) {
+                compact();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Entries not yet acknowledged, in the order they were appended.
+     *
+     * @return pending entries.
+     */
+    public List<OutboxEntry> pending() {
+        lock.lock();
+        try {
+            return ImmutableList.copyOf(pending.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Rewrite the journal with only its pending entries and remembered dedupe keys.
+     */
+    public void compact() {
+        lock.lock();
+        final boolean interrupted = Thread.interrupted();
+        try {
+            checkOpen();
+            while (forcing) {
+                forced.awaitUninterruptibly();
+            }
+            final Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (final FileChannel compacted = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (final String key : deliveredKeys) {
+                    final JsonArray record = new JsonArray();
+                    record.add(KEY);
+                    record.add(key);
+                    write(compacted, record);
+                }
+                for (final OutboxEntry entry : pending.values()) {
+                    write(compacted, appended(entry));
+                }
+                compacted.force(true);
+            }
+            if (channel != null) {
+                channel.close();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            forcedWrites = writes;
+            acknowledgedSinceCompaction = 0;
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        final boolean interrupted = Thread.interrupted();
+        try {
+            if (closed) {
+                return;
+            }
+            while (forcing) {
+                forced.awaitUninterruptibly();
+            }
+            if (!channel.isOpen()) {
+                reopen();
+            }
+            forcer.force(channel);
+            channel.close();
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            closed = true;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            lock.unlock();
+        }
+    }
+
+    private void recover() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (final BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    replay(BitbucketUtils.JSON_PARSER.parse(line).getAsJsonArray());
+                } catch (final RuntimeException e) { // NOPMD
+                    // a record torn by a crash part way through an append
+                }
+            }
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private void replay(final JsonArray record) {
+        final String kind = record.get(0).getAsString();
+        if (APPENDED.equals(kind)) {
+            final JsonElement dedupeKey = record.get(2);
+            final OutboxEntry entry = OutboxEntry.create(record.get(1).getAsLong(),
+                    dedupeKey.isJsonNull() ? null : dedupeKey.getAsString(),
+                    OutboxOperation.create(OutboxOperation.Type.valueOf(record.get(3).getAsString()),
+                            record.get(4).getAsString(),
+                            record.get(5).getAsString()));
+            pending.put(entry.id(), entry);
+            if (entry.dedupeKey() != null) {
+                pendingKeys.put(entry.dedupeKey(), entry.id());
+            }
+            nextId = Math.max(nextId, entry.id() + 1);
+        } else if (DELIVERED.equals(kind)) {
+            final OutboxEntry entry = pending.remove(record.get(1).getAsLong());
+            if (entry != null && entry.dedupeKey() != null) {
+                pendingKeys.remove(entry.dedupeKey());
+                remember(entry.dedupeKey());
+            }
+        } else if (KEY.equals(kind)) {
+            remember(record.get(1).getAsString());
+        }
+    }
+
+    /**
+     * Undo the append of the passed entry, which may or may not have made it
+     * to disk, recording it as delivered such that it is not recovered.
+     */
+    private void forget(final OutboxEntry entry) {
+        pending.remove(entry.id());
+        if (entry.dedupeKey() != null) {
+            pendingKeys.remove(entry.dedupeKey());
+        }
+        final JsonArray record = new JsonArray();
+        record.add(DELIVERED);
+        record.add(entry.id());
+        try {
+            write(record);
+            writes++;
+        } catch (final RuntimeException e) { // NOPMD
+            // should the entry have made it to disk it is delivered after a restart
+        }
+    }
+
+    private void remember(final String dedupeKey) {
+        deliveredKeys.remove(dedupeKey);
+        deliveredKeys.add(dedupeKey);
+        final Iterator<String> oldest = deliveredKeys.iterator();
+        while (deliveredKeys.size() > dedupeWindow) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Wait, while holding the lock, for the passed write to be forced to disk
+     * forcing it, and whatever else was written, if no one else is.
+     */
+    private void awaitForced(final long write) {
+        while (forcedWrites < write) {
+            if (forcing) {
+                forced.awaitUninterruptibly();
+                continue;
+            }
+            forcing = true;
+            final long upTo = writes;
+            final FileChannel current = channel;
+            final boolean interrupted = Thread.interrupted();
+            boolean done = false;
+            lock.unlock();
+            try {
+                forcer.force(current);
+                done = true;
+            } catch (final ClosedChannelException e) { // NOPMD
+                // forced again, through the reopened channel, below
+            } catch (final IOException e) {
+                throw Throwables.propagate(e);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                lock.lock();
+                forcing = false;
+                forced.signalAll();
+            }
+            if (done) {
+                forcedWrites = Math.max(forcedWrites, upTo);
+            } else if (channel == current) {
+                try {
+                    reopen();
+                } catch (final IOException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        }
+    }
+
+    private void write(final JsonArray record) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            try {
+                write(channel, record);
+            } catch (final ClosedChannelException e) {
+                interrupted |= Thread.interrupted();
+                reopen();
+                write(channel, record);
+            }
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Reopen the channel after it was closed by an interrupt, ending whatever
+     * record the interrupt tore such that the next one starts on a line of
+     * its own. Forcing the reopened channel also forces whatever was written
+     * through the closed one.
+     */
+    private void reopen() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        final long size = channel.size();
+        if (size > 0) {
+            final ByteBuffer last = ByteBuffer.allocate(1);
+            try (final FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+                reader.read(last, size - 1);
+            }
+            if (last.get(0) != '\n') {
+                final ByteBuffer newline = ByteBuffer.wrap(new byte[] {'\n'});
+                while (newline.hasRemaining()) {
+                    channel.write(newline);
+                }
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("OutboxJournal is closed");
+        }
+    }
+
+    private static void write(final FileChannel channel, final JsonArray record) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap((record.toString() + "\n").getBytes(UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static JsonArray appended(final OutboxEntry entry) {
+        final JsonArray record = new JsonArray();
+        record.add(APPENDED);
+        record.add(entry.id());
+        record.add(entry.dedupeKey());
+        record.add(entry.operation().type().name());
+        record.add(entry.operation().target());
+        record.add(entry.operation().arguments());
+        return record;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.outbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.BitbucketUtils;
+import com.cdancy.bitbucket.rest.domain.comment.Anchor;
+import com.cdancy.bitbucket.rest.domain.comment.Parent;
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.common.RequestStatus;
+import com.cdancy.bitbucket.rest.domain.insights.InsightReportData;
+import com.cdancy.bitbucket.rest.domain.insights.InsightReportDataLink;
+import com.cdancy.bitbucket.rest.options.CreateBuildStatus;
+import com.cdancy.bitbucket.rest.options.CreateComment;
+import com.cdancy.bitbucket.rest.options.CreateInsightReport;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * A mutating call an {@link Outbox} can journal and later deliver.
+ *
+ * <p>Arguments are kept as JSON, written and read field by field, such that
+ * an operation read back from the journal makes the very same call the
+ * original would have (e.g. a PERCENTAGE stays an integer).
+ */
+@AutoValue
+public abstract class OutboxOperation {
+
+    /**
+     * The calls an OutboxOperation can make.
+     */
+    public enum Type {
+        BUILD_STATUS,
+        COMMENT,
+        TASK_STATE,
+        INSIGHT_REPORT
+    }
+
+    public abstract Type type();
+
+    /**
+     * What the operation writes to (e.g. a commit or pull request). Operations
+     * with the same target are delivered in the order they were submitted.
+     *
+     * @return target of this operation.
+     */
+    public abstract String target();
+
+    /**
+     * Arguments of the call as JSON.
+     *
+     * @return JSON arguments.
+     */
+    public abstract String arguments();
+
+    public static OutboxOperation create(final Type type, final String target, final String arguments) {
+        return new AutoValue_OutboxOperation(type, target, arguments);
+    }
+
+    /**
+     * Post a build status, see {@link com.cdancy.bitbucket.rest.features.BuildStatusApi#add(String, CreateBuildStatus)}.
+     *
+     * @param commitId the commit the status is for.
+     * @param status the status to post.
+     * @return OutboxOperation posting the status.
+     */
+    public static OutboxOperation buildStatus(final String commitId, final CreateBuildStatus status) {
+        Objects.requireNonNull(commitId, "commitId cannot be null");
+        final JsonObject arguments = new JsonObject();
+        arguments.addProperty("commitId", commitId);
+        arguments.addProperty("state", status.state());
+        arguments.addProperty("key", status.key());
+        arguments.addProperty("name", status.name());
+        arguments.addProperty("url", status.url());
+        arguments.addProperty("description", status.description());
+        return create(Type.BUILD_STATUS, "commit/" + commitId, arguments.toString());
+    }
+
+    /**
+     * Comment on a pull request, see {@link com.cdancy.bitbucket.rest.features.CommentsApi#create(String, String, int, CreateComment)}.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param pullRequestId the pull request id.
+     * @param comment the comment to create.
+     * @return OutboxOperation creating the comment.
+     */
+    public static OutboxOperation comment(final String project, final String repo, final int pullRequestId, final CreateComment comment) {
+        final JsonObject arguments = new JsonObject();
+        arguments.addProperty("project", project);
+        arguments.addProperty("repo", repo);
+        arguments.addProperty("pullRequestId", pullRequestId);
+        arguments.addProperty("text", comment.text());
+        if (comment.parent() != null) {
+            arguments.addProperty("parent", comment.parent().id());
+        }
+        final Anchor anchor = comment.anchor();
+        if (anchor != null) {
+            final JsonObject anchorObject = new JsonObject();
+            anchorObject.addProperty("line", anchor.line());
+            anchorObject.addProperty("lineType", anchor.lineType());
+            anchorObject.addProperty("fileType", anchor.fileType());
+            anchorObject.addProperty("path", anchor.path());
+            anchorObject.addProperty("srcPath", anchor.srcPath());
+            arguments.add("anchor", anchorObject);
+        }
+        return create(Type.COMMENT, "pull-request/" + project + "/" + repo + "/" + pullRequestId, arguments.toString());
+    }
+
+    /**
+     * Update the state of a task, see {@link com.cdancy.bitbucket.rest.features.TasksApi#update(int, String)}.
+     *
+     * @param taskId the task id.
+     * @param state the state to update the task to.
+     * @return OutboxOperation updating the task.
+     */
+    public static OutboxOperation taskState(final int taskId, final String state) {
+        final JsonObject arguments = new JsonObject();
+        arguments.addProperty("taskId", taskId);
+        arguments.addProperty("state", Objects.requireNonNull(state, "state cannot be null"));
+        return create(Type.TASK_STATE, "task/" + taskId, arguments.toString());
+    }
+
+    /**
+     * Create or replace a Code Insights report, see
+     * {@link com.cdancy.bitbucket.rest.features.InsightsApi#createReport(String, String, String, String, CreateInsightReport)}.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param commitId the commit the report belongs to.
+     * @param key the report key.
+     * @param report the report.
+     * @return OutboxOperation creating the report.
+     */
+    public static OutboxOperation insightReport(final String project,
+            final String repo,
+            final String commitId,
+            final String key,
+            final CreateInsightReport report) {
+        final JsonObject arguments = new JsonObject();
+        arguments.addProperty("project", project);
+        arguments.addProperty("repo", repo);
+        arguments.addProperty("commitId", commitId);
+        arguments.addProperty("key", key);
+        arguments.addProperty("details", report.details());
+        arguments.addProperty("link", report.link());
+        arguments.addProperty("logoUrl", report.logoUrl());
+        arguments.addProperty("result", report.result() != null ? report.result().name() : null);
+        arguments.addProperty("title", report.title());
+        arguments.addProperty("reporter", report.reporter());
+        final JsonArray data = new JsonArray();
+        for (final InsightReportData value : report.data()) {
+            final JsonObject dataObject = new JsonObject();
+            dataObject.addProperty("title", value.title());
+            dataObject.addProperty("type", value.type().name());
+            if (value.value() instanceof InsightReportDataLink) {
+                final InsightReportDataLink link = (InsightReportDataLink) value.value();
+                final JsonObject linkObject = new JsonObject();
+                linkObject.addProperty("linktext", link.linkText());
+                linkObject.addProperty("href", link.href());
+                dataObject.add("value", linkObject);
+            } else if (value.value() instanceof Number) {
+                dataObject.addProperty("value", (Number) value.value());
+            } else if (value.value() instanceof Boolean) {
+                dataObject.addProperty("value", (Boolean) value.value());
+            } else {
+                dataObject.addProperty("value", String.valueOf(value.value()));
+            }
+            data.add(dataObject);
+        }
+        arguments.add("data", data);
+        return create(Type.INSIGHT_REPORT, "commit/" + commitId + "/report/" + key, arguments.toString());
+    }
+
+    /**
+     * Make the call this operation stands for.
+     *
+     * @param api the api to make the call through.
+     * @return Error's the call failed with, empty if it succeeded.
+     */
+    List<Error> deliver(final BitbucketApi api) {
+        final JsonObject arguments = BitbucketUtils.JSON_PARSER.parse(arguments()).getAsJsonObject();
+        switch (type()) {
+            case BUILD_STATUS:
+                return deliverBuildStatus(api, arguments);
+            case COMMENT:
+                return deliverComment(api, arguments);
+            case TASK_STATE:
+                return api.tasksApi().update(arguments.get("taskId").getAsInt(), string(arguments, "state")).errors();
+            case INSIGHT_REPORT:
+                return deliverInsightReport(api, arguments);
+            default:
+                throw new IllegalStateException("Unknown operation type: " + type());
+        }
+    }
+
+    private static List<Error> deliverBuildStatus(final BitbucketApi api, final JsonObject arguments) {
+        final RequestStatus status = api.buildStatusApi().add(string(arguments, "commitId"),
+                CreateBuildStatus.create(CreateBuildStatus.STATE.valueOf(string(arguments, "state")),
+                        string(arguments, "key"),
+                        string(arguments, "name"),
+                        string(arguments, "url"),
+                        string(arguments, "description")));
+        if (status.value() != null && status.value()) {
+            return ImmutableList.of();
+        }
+        return status.errors().isEmpty()
+                ? ImmutableList.of(Error.create(null, "Build status was not accepted", null, false, null))
+                : status.errors();
+    }
+
+    private static List<Error> deliverComment(final BitbucketApi api, final JsonObject arguments) {
+        final JsonElement anchor = arguments.get("anchor");
+        return api.commentsApi().create(string(arguments, "project"),
+                string(arguments, "repo"),
+                arguments.get("pullRequestId").getAsInt(),
+                CreateComment.create(string(arguments, "text"),
+                        arguments.has("parent") ? Parent.create(arguments.get("parent").getAsInt()) : null,
+                        anchor != null && anchor.isJsonObject() ? anchor(anchor.getAsJsonObject()) : null)).errors();
+    }
+
+    private static List<Error> deliverInsightReport(final BitbucketApi api, final JsonObject arguments) {
+        final String result = string(arguments, "result");
+        final List<InsightReportData> data = new ArrayList<>();
+        for (final JsonElement element : arguments.getAsJsonArray("data")) {
+            data.add(data(element.getAsJsonObject()));
+        }
+        return api.insightsApi().createReport(string(arguments, "project"),
+                string(arguments, "repo"),
+                string(arguments, "commitId"),
+                string(arguments, "key"),
+                CreateInsightReport.create(string(arguments, "details"),
+                        string(arguments, "link"),
+                        string(arguments, "logoUrl"),
+                        result != null ? CreateInsightReport.RESULT.valueOf(result) : null,
+                        string(arguments, "title"),
+                        string(arguments, "reporter"),
+                        data)).errors();
+    }
+
+    private static Anchor anchor(final JsonObject anchor) {
+        final JsonElement line = anchor.get("line");
+        return Anchor.create(line != null && !line.isJsonNull() ? line.getAsInt() : null,
+                string(anchor, "lineType"),
+                string(anchor, "fileType"),
+                string(anchor, "path"),
+                string(anchor, "srcPath"));
+    }
+
+    private static InsightReportData data(final JsonObject data) {
+        final String title = string(data, "title");
+        final JsonElement value = data.get("value");
+        switch (InsightReportData.DataType.valueOf(string(data, "type"))) {
+            case BOOLEAN:
+                return InsightReportData.createBoolean(title, value.getAsBoolean());
+            case DATE:
+                return InsightReportData.createDate(title, value.getAsLong());
+            case DURATION:
+                return InsightReportData.createDuration(title, value.getAsLong());
+            case LINK:
+                final JsonObject link = value.getAsJsonObject();
+                return InsightReportData.createLink(title, string(link, "href"), string(link, "linktext"));
+            case NUMBER:
+                return InsightReportData.createNumber(title, value.getAsLong());
+            case PERCENTAGE:
+                return InsightReportData.createPercentage(title, value.getAsByte());
+            default:
+                return InsightReportData.createText(title, value.getAsString());
+        }
+    }
+
+    @Nullable
+    private static String string(final JsonObject object, final String name) {
+        final JsonElement element = object.get(name);
+        return element != null && !element.isJsonNull() ? element.getAsString() : null;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.pagination;
+
+import com.cdancy.bitbucket.rest.domain.common.Page;
+
+/**
+ * Fetch a single Page starting at the given offset. Typically a lambda
+ * wrapping one of the paged endpoints, for example:
+ *
+ * <p>{@code start -> api.repositoryApi().list("PRJ", start, 100)}
+ *
+ * @param <T> the type of values held by the Page.
+ */
+@FunctionalInterface
+public interface PageFetcher<T> {
+
+    /**
+     * Fetch the Page beginning at `start`.
+     *
+     * @param start the offset to request, as handed back by a previous
+     *     Page's `nextPageStart`.
+     * @return the fetched Page.
+     */
+    Page<T> fetch(int start);
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.pagination;
+
+import java.util.List;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.BitbucketUtils;
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.common.ErrorsHolder;
+import com.google.auto.value.AutoValue;
+
+/**
+ * Everything a Page carries save for its values, as handed back once
+ * a StreamingPage has been fully consumed.
+ */
+@AutoValue
+public abstract class PageSummary implements ErrorsHolder {
+
+    public abstract int start();
+
+    public abstract int limit();
+
+    public abstract int size();
+
+    public abstract int nextPageStart();
+
+    public abstract boolean isLastPage();
+
+    public static PageSummary create(final int start, final int limit,
+            final int size, final int nextPageStart, final boolean isLastPage,
+            @Nullable final List<Error> errors) {
+        return new AutoValue_PageSummary(BitbucketUtils.nullToEmpty(errors),
+                start, limit, size, nextPageStart, isLastPage);
+    }
+}
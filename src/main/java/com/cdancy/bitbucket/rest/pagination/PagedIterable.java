@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.pagination;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.concurrent.BitbucketExecutors;
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.common.ErrorsHolder;
+import com.cdancy.bitbucket.rest.domain.common.Page;
+import com.cdancy.bitbucket.rest.exception.PageFetchException;
+import com.google.common.base.Throwables;
+
+/**
+ * Lazily walk every value of a paged endpoint by following `nextPageStart`
+ * until Bitbucket reports `isLastPage`. Only the page currently being consumed,
+ * and at most one prefetched page, are ever held in memory.
+ *
+ * <p>When a prefetch Executor is in use the next page is requested in the
+ * background as soon as the current one arrives. Nothing beyond that single
+ * page is ever requested so a consumer that stops early (e.g. through
+ * {@code stream().findFirst()}) stops all further fetching.
+ *
+ * <p>Should Bitbucket hand back a page with errors a {@link PageFetchException}
+ * is thrown from the iterator.
+ *
+ * @param <T> the type of values held by each Page.
+ */
+public final class PagedIterable<T> implements Iterable<T> {
+
+    private static final Executor DEFAULT_PREFETCH_EXECUTOR = BitbucketExecutors
+            .newDaemonCachedThreadPool("bitbucket-rest-prefetch-%d");
+
+    private final PageFetcher<T> fetcher;
+    private final int start;
+    private final Executor prefetchExecutor;
+
+    private PagedIterable(final PageFetcher<T> fetcher,
+            final int start,
+            @Nullable final Executor prefetchExecutor) {
+        this.fetcher = Objects.requireNonNull(fetcher, "fetcher cannot be null");
+        this.start = start;
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    /**
+     * Walk all pages, from the very first, prefetching the next page on a
+     * shared pool of daemon threads.
+     *
+     * @param <T> the type of values held by each Page.
+     * @param fetcher function used to request a single Page.
+     * @return PagedIterable over all values.
+     */
+    public static <T> PagedIterable<T> of(final PageFetcher<T> fetcher) {
+        return new PagedIterable<>(fetcher, 0, DEFAULT_PREFETCH_EXECUTOR);
+    }
+
+    /**
+     * Walk all pages beginning at `start`, prefetching the next page on the
+     * passed Executor.
+     *
+     * @param <T> the type of values held by each Page.
+     * @param fetcher function used to request a single Page.
+     * @param start the offset of the first page to request.
+     * @param prefetchExecutor Executor used to prefetch pages or null to
+     *     fetch each page only once it is needed.
+     * @return PagedIterable over all values.
+     */
+    public static <T> PagedIterable<T> of(final PageFetcher<T> fetcher,
+            final int start,
+            @Nullable final Executor prefetchExecutor) {
+        return new PagedIterable<>(fetcher, start, prefetchExecutor);
+    }
+
+    /**
+     * Walk all pages, from the very first, on the calling thread only.
+     *
+     * @param <T> the type of values held by each Page.
+     * @param fetcher function used to request a single Page.
+     * @return PagedIterable over all values.
+     */
+    public static <T> PagedIterable<T> sequential(final PageFetcher<T> fetcher) {
+        return new PagedIterable<>(fetcher, 0, null);
+    }
+
+    @Override
+    public PagedIterator<T> iterator() {
+        return new PagedIterator<>(fetcher, start, prefetchExecutor);
+    }
+
+    /**
+     * Sequential Stream over all values. Closing the Stream discards any
+     * page still being prefetched.
+     *
+     * @return Stream over all values.
+     */
+    public Stream<T> stream() {
+        final PagedIterator<T> iterator = iterator();
+        final Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
+
+    /**
+     * Iterator handed out by {@link PagedIterable}. Not thread-safe.
+     *
+     * @param <T> the type of values held by each Page.
+     */
+    public static final class PagedIterator<T> implements Iterator<T>, Closeable {
+
+        private final PageFetcher<T> fetcher;
+        private final Executor prefetchExecutor;
+
+        private Iterator<T> current = Collections.emptyIterator();
+        private CompletableFuture<Page<T>> pending;
+        private int nextStart;
+        private boolean exhausted;
+
+        PagedIterator(final PageFetcher<T> fetcher,
+                final int start,
+                @Nullable final Executor prefetchExecutor) {
+            this.fetcher = fetcher;
+            this.nextStart = start;
+            this.prefetchExecutor = prefetchExecutor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (exhausted) {
+                    return false;
+                }
+                advance();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        /**
+         * Stop walking pages and discard any page still being prefetched.
+         */
+        @Override
+        public void close() {
+            exhausted = true;
+            current = Collections.emptyIterator();
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+        }
+
+        private void advance() {
+            final int requestedStart = nextStart;
+            final Page<T> page = pending != null
+                    ? await(pending)
+                    : fetcher.fetch(requestedStart);
+            pending = null;
+
+            if (page instanceof ErrorsHolder) {
+                final List<Error> errors = ((ErrorsHolder) page).errors();
+                if (!errors.isEmpty()) {
+                    exhausted = true;
+                    throw new PageFetchException("Failed fetching page starting at " + requestedStart, errors);
+                }
+            }
+
+            current = page.values().iterator();
+
+            // guard against a server that never reports the last page but
+            // also never moves the cursor forward.
+            exhausted = page.isLastPage() || page.nextPageStart() <= requestedStart;
+            if (!exhausted) {
+                nextStart = page.nextPageStart();
+                if (prefetchExecutor != null) {
+                    final int prefetchStart = nextStart;
+                    pending = CompletableFuture.supplyAsync(() -> fetcher.fetch(prefetchStart), prefetchExecutor);
+                }
+            }
+        }
+
+        private Page<T> await(final CompletableFuture<Page<T>> future) {
+            try {
+                return future.join();
+            } catch (final CompletionException e) {
+                exhausted = true;
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.pagination;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.BitbucketUtils;
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.common.ErrorsHolder;
+import com.google.common.base.Throwables;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * A single Page whose values are decoded, one at a time, straight off of
+ * the response stream. At no point is the whole body, or the whole list of
+ * values, held in memory which makes this a good fit for pages requested
+ * with a large `limit`.
+ *
+ * <p>A StreamingPage can only be consumed once and holds open the underlying
+ * connection until it is. Callers who decide not to consume it MUST close it.
+ *
+ * @param <T> type of values held by this page.
+ */
+public final class StreamingPage<T> implements ErrorsHolder, Closeable {
+
+    private static final Type ERRORS_TYPE = new TypeToken<List<Error>>() { }.getType();
+
+    @Nullable
+    private final InputStream stream;
+    @Nullable
+    private final Gson gson;
+    @Nullable
+    private final Type valueType;
+    private final List<Error> errors;
+    private final AtomicBoolean consumed = new AtomicBoolean();
+
+    private StreamingPage(@Nullable final InputStream stream,
+            @Nullable final Gson gson,
+            @Nullable final Type valueType,
+            @Nullable final List<Error> errors) {
+        this.stream = stream;
+        this.gson = gson;
+        this.valueType = valueType;
+        this.errors = BitbucketUtils.nullToEmpty(errors);
+    }
+
+    /**
+     * Create a StreamingPage reading from the passed stream.
+     *
+     * @param <T> type of values held by this page.
+     * @param stream the, as of yet unread, response body.
+     * @param gson Gson instance used to decode each value.
+     * @param valueType type of values held by this page.
+     * @return StreamingPage over the passed stream.
+     */
+    public static <T> StreamingPage<T> create(final InputStream stream, final Gson gson, final Type valueType) {
+        return new StreamingPage<>(Objects.requireNonNull(stream, "stream cannot be null"),
+                Objects.requireNonNull(gson, "gson cannot be null"),
+                Objects.requireNonNull(valueType, "valueType cannot be null"),
+                null);
+    }
+
+    /**
+     * Create an empty StreamingPage holding only the passed errors.
+     *
+     * @param <T> type of values held by this page.
+     * @param errors errors encountered requesting this page.
+     * @return StreamingPage without any values.
+     */
+    public static <T> StreamingPage<T> fromErrors(final List<Error> errors) {
+        return new StreamingPage<>(null, null, null, errors);
+    }
+
+    @Override
+    public List<Error> errors() {
+        return errors;
+    }
+
+    /**
+     * Decode each value of this page, handing them to the passed consumer
+     * in the order they appear, and close this page once done.
+     *
+     * @param consumer receives each value as soon as it has been decoded.
+     * @return summary of this page (i.e. everything but its values).
+     */
+    public PageSummary forEach(final Consumer<? super T> consumer) {
+        Objects.requireNonNull(consumer, "consumer cannot be null");
+        if (stream == null) {
+            return PageSummary.create(0, 0, 0, 0, true, errors);
+        } else if (!consumed.compareAndSet(false, true)) {
+            throw new IllegalStateException("StreamingPage has already been consumed");
+        }
+
+        int start = 0;
+        int limit = 0;
+        int size = 0;
+        int nextPageStart = 0;
+        boolean isLastPage = true;
+        List<Error> pageErrors = null;
+        try (final JsonReader reader = new JsonReader(new InputStreamReader(stream, UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "start":
+                        start = reader.nextInt();
+                        break;
+                    case "limit":
+                        limit = reader.nextInt();
+                        break;
+                    case "size":
+                        size = reader.nextInt();
+                        break;
+                    case "nextPageStart":
+                        nextPageStart = reader.nextInt();
+                        break;
+                    case "isLastPage":
+                        isLastPage = reader.nextBoolean();
+                        break;
+                    case "values":
+                    case "lines": // the browse endpoint names its values differently
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            final T value = gson.fromJson(reader, valueType);
+                            consumer.accept(value);
+                        }
+                        reader.endArray();
+                        break;
+                    case "errors":
+                        pageErrors = gson.fromJson(reader, ERRORS_TYPE);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return PageSummary.create(start, limit, size, nextPageStart, isLastPage, pageErrors);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (stream != null && consumed.compareAndSet(false, true)) {
+            stream.close();
+        }
+    }
+}
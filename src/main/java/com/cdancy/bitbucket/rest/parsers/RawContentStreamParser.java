@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.parsers;
+
+import com.cdancy.bitbucket.rest.domain.file.RawContentStream;
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import javax.inject.Singleton;
+import org.jclouds.http.HttpResponse;
+
+/**
+ * Hand back the still open body of response as RawContentStream.
+ */
+@Singleton
+public class RawContentStreamParser implements Function<HttpResponse, RawContentStream> {
+
+    @Override
+    public RawContentStream apply(final HttpResponse input) {
+        if (input.getPayload() == null) {
+            return RawContentStream.create(new ByteArrayInputStream(new byte[0]), null);
+        }
+        try {
+            return RawContentStream.create(input.getPayload().openStream(), null);
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.parsers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.cdancy.bitbucket.rest.pagination.StreamingPage;
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import javax.inject.Inject;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.rest.InvocationContext;
+import org.jclouds.rest.internal.GeneratedHttpRequest;
+
+/**
+ * Hand back the still open body of response as a StreamingPage whose value
+ * type is taken from the return type of the invoked method
+ * (e.g. {@code StreamingPage<Activities>}).
+ */
+public class StreamingPageParser implements Function<HttpResponse, StreamingPage<?>>, InvocationContext<StreamingPageParser> {
+
+    private final Gson gson;
+    private Type valueType;
+
+    @Inject
+    public StreamingPageParser(final Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public StreamingPage<?> apply(final HttpResponse input) {
+        if (input.getPayload() == null) {
+            return StreamingPage.create(new ByteArrayInputStream("{}".getBytes(UTF_8)), gson, valueType);
+        }
+        try {
+            return StreamingPage.create(input.getPayload().openStream(), gson, valueType);
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public StreamingPageParser setContext(final HttpRequest request) {
+        checkArgument(request instanceof GeneratedHttpRequest, "Expected GeneratedHttpRequest but found: %s", request);
+        final Type returnType = GeneratedHttpRequest.class.cast(request).getInvocation().getInvokable().getReturnType().getType();
+        checkArgument(returnType instanceof ParameterizedType, "Expected parameterized StreamingPage but found: %s", returnType);
+        this.valueType = ParameterizedType.class.cast(returnType).getActualTypeArguments()[0];
+        return this;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import java.util.List;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Outcome of an {@link AnnotationUploader} upload. Chunks which could not be
+ * uploaded are listed, in order, in {@link #failures()}.
+ */
+@AutoValue
+public abstract class AnnotationUpload {
+
+    /**
+     * Number of annotations read from the passed annotations.
+     *
+     * @return number of annotations.
+     */
+    public abstract int annotations();
+
+    public abstract int chunks();
+
+    public abstract List<FailedAnnotationChunk> failures();
+
+    /**
+     * Whether every chunk was uploaded.
+     *
+     * @return true if no chunk failed.
+     */
+    public boolean succeeded() {
+        return failures().isEmpty();
+    }
+
+    public static AnnotationUpload create(final int annotations, final int chunks, final List<FailedAnnotationChunk> failures) {
+        return new AutoValue_AnnotationUpload(annotations, chunks, ImmutableList.copyOf(failures));
+    }
+}
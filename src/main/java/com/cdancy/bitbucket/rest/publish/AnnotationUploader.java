@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.BitbucketAsyncApi;
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.common.RequestStatus;
+import com.cdancy.bitbucket.rest.domain.insights.Annotation;
+import com.cdancy.bitbucket.rest.options.CreateAnnotations;
+
+/**
+ * Uploads any number of Code Insights annotations to a report by splitting
+ * them into chunks no larger than Bitbucket accepts per request and uploading
+ * those chunks concurrently.
+ *
+ * <p>Annotations are read lazily: no more than `parallelism` chunks are ever
+ * held in memory, and in flight, at once. A chunk which fails to upload does
+ * not stop the others; it is handed back, along with its Error's, in the
+ * resulting {@link AnnotationUpload} such that it can be retried.
+ */
+public class AnnotationUploader {
+
+    /**
+     * Maximum number of annotations Bitbucket accepts per request.
+     */
+    public static final int MAX_CHUNK_SIZE = 1000;
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private final BitbucketApi api;
+    private final int chunkSize;
+    private final int parallelism;
+
+    private AnnotationUploader(final Builder builder) {
+        this.api = builder.api;
+        this.chunkSize = builder.chunkSize;
+        this.parallelism = builder.parallelism;
+    }
+
+    public static Builder builder(final BitbucketApi api) {
+        return new Builder(api);
+    }
+
+    /**
+     * Upload the passed annotations to the passed report.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param commitId the commit the report belongs to.
+     * @param key the report key.
+     * @param annotations the annotations to upload, e.g. {@code stream::iterator}.
+     * @return outcome of the upload.
+     * @throws InterruptedException if interrupted while waiting for chunks to upload.
+     */
+    public AnnotationUpload upload(final String project,
+            final String repo,
+            final String commitId,
+            final String key,
+            final Iterable<? extends Annotation> annotations) throws InterruptedException {
+        Objects.requireNonNull(annotations, "annotations cannot be null");
+        return upload(project, repo, commitId, key, annotations.iterator());
+    }
+
+    /**
+     * Upload the passed annotations to the passed report.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param commitId the commit the report belongs to.
+     * @param key the report key.
+     * @param annotations the annotations to upload.
+     * @return outcome of the upload.
+     * @throws InterruptedException if interrupted while waiting for chunks to upload.
+     */
+    public AnnotationUpload upload(final String project,
+            final String repo,
+            final String commitId,
+            final String key,
+            final Iterator<? extends Annotation> annotations) throws InterruptedException {
+        Objects.requireNonNull(annotations, "annotations cannot be null");
+
+        final Semaphore slots = new Semaphore(parallelism);
+        final List<FailedAnnotationChunk> failures = Collections.synchronizedList(new ArrayList<>());
+        int chunks = 0;
+        int read = 0;
+        try (final BitbucketAsyncApi asyncApi = new BitbucketAsyncApi(api, null, parallelism)) {
+            while (annotations.hasNext()) {
+                // only read the next chunk once there is room to upload it
+                slots.acquire();
+                final List<Annotation> chunk = new ArrayList<>(chunkSize);
+                while (chunk.size() < chunkSize && annotations.hasNext()) {
+                    chunk.add(annotations.next());
+                }
+                final int index = chunks++;
+                final int offset = read;
+                read += chunk.size();
+
+                asyncApi.insightsApi(insightsApi -> insightsApi.createAnnotations(project, repo, commitId, key,
+                        CreateAnnotations.create(chunk))).whenComplete((status, error) -> {
+                            try {
+                                final List<Error> errors = errors(status, error);
+                                if (errors != null) {
+                                    failures.add(FailedAnnotationChunk.create(index, offset, chunk, errors));
+                                }
+                            } finally {
+                                slots.release();
+                            }
+                        });
+            }
+
+            // every slot being free means every chunk has completed
+            slots.acquire(parallelism);
+        }
+
+        final List<FailedAnnotationChunk> ordered = new ArrayList<>(failures);
+        ordered.sort(Comparator.comparingInt(FailedAnnotationChunk::index));
+        return AnnotationUpload.create(read, chunks, ordered);
+    }
+
+    /**
+     * Error's a chunk failed with or null if it was uploaded.
+     */
+    private static List<Error> errors(final RequestStatus status, final Throwable error) {
+        if (error != null) {
+            final Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            return Collections.singletonList(Error.create(null, cause.getMessage(), cause.getClass().getName(), false, null));
+        }
+        if (status.value() != null && status.value()) {
+            return null;
+        }
+        return status.errors();
+    }
+
+    public static class Builder {
+
+        private final BitbucketApi api;
+        private int chunkSize = MAX_CHUNK_SIZE;
+        private int parallelism = DEFAULT_PARALLELISM;
+
+        Builder(final BitbucketApi api) {
+            this.api = Objects.requireNonNull(api, "api cannot be null");
+        }
+
+        /**
+         * Number of annotations to upload per request.
+         *
+         * @param chunkSize number of annotations per request, at most {@value AnnotationUploader#MAX_CHUNK_SIZE}.
+         * @return this Builder.
+         */
+        public Builder chunkSize(final int chunkSize) {
+            if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new IllegalArgumentException("chunkSize must be between 1 and " + MAX_CHUNK_SIZE + ": " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Maximum number of chunks uploaded at once.
+         *
+         * @param parallelism maximum number of concurrent requests.
+         * @return this Builder.
+         */
+        public Builder parallelism(final int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be greater than 0: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public AnnotationUploader build() {
+            return new AnnotationUploader(this);
+        }
+    }
+}
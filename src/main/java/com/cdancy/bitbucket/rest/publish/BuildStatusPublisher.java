@@ -0,0 +1,433 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.cdancy.bitbucket.rest.concurrent.BitbucketExecutors;
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.common.RequestStatus;
+import com.cdancy.bitbucket.rest.features.BuildStatusApi;
+import com.cdancy.bitbucket.rest.options.CreateBuildStatus;
+import com.cdancy.bitbucket.rest.retry.RetryPolicy;
+import com.cdancy.bitbucket.rest.retry.RetryableFailure;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Posts build statuses in the background, decoupling callers from Bitbucket
+ * latency.
+ *
+ * <p>Statuses are accepted into a bounded queue keyed by commit and build key.
+ * A status published while an earlier one for the same commit and key is
+ * still queued replaces it (e.g. a SUCCESSFUL superseding an INPROGRESS) so
+ * only the latest state is ever sent. A configurable number of senders drain
+ * the queue, never sending two statuses for the same commit and key at once,
+ * and retry failed posts according to a {@link RetryPolicy}. A retry is
+ * abandoned should a newer status for the same commit and key show up, as
+ * is a post Bitbucket refused outright (e.g. a 400 for a malformed status).
+ */
+public class BuildStatusPublisher implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_SENDERS = 4;
+
+    private static final String BITBUCKET_EXCEPTION_PREFIX = "com.atlassian.";
+
+    private final BuildStatusApi api;
+    private final int capacity;
+    private final RetryPolicy retryPolicy;
+    private final ExecutorService senders;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+
+    // insertion ordered such that the oldest status is sent first
+    private final Map<String, PendingStatus> queue = Maps.newLinkedHashMap();
+    private final Set<String> inFlight = Sets.newHashSet();
+    private boolean closed;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private BuildStatusPublisher(final Builder builder) {
+        this.api = builder.api;
+        this.capacity = builder.capacity;
+        this.retryPolicy = builder.retryPolicy;
+        this.senders = BitbucketExecutors.newDaemonCachedThreadPool("bitbucket-rest-build-status-%d");
+        for (int i = 0; i < builder.senders; i++) {
+            senders.execute(this::send);
+        }
+    }
+
+    public static Builder builder(final BuildStatusApi api) {
+        return new Builder(api);
+    }
+
+    /**
+     * Queue the passed status, blocking while the queue is full.
+     *
+     * @param commitId the commit the status is for.
+     * @param status the status to post.
+     * @throws InterruptedException if interrupted while waiting for room.
+     * @throws IllegalStateException if this publisher was closed.
+     */
+    public void publish(final String commitId, final CreateBuildStatus status) throws InterruptedException {
+        final String key = key(commitId, status);
+        lock.lockInterruptibly();
+        try {
+            while (!closed && queue.size() >= capacity && !queue.containsKey(key)) {
+                notFull.await();
+            }
+            enqueue(key, commitId, status);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue the passed status should there be room.
+     *
+     * @param commitId the commit the status is for.
+     * @param status the status to post.
+     * @return true if queued or false if the queue is full.
+     * @throws IllegalStateException if this publisher was closed.
+     */
+    public boolean tryPublish(final String commitId, final CreateBuildStatus status) {
+        final String key = key(commitId, status);
+        lock.lock();
+        try {
+            if (queue.size() >= capacity && !queue.containsKey(key)) {
+                return false;
+            }
+            enqueue(key, commitId, status);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for every queued status to be sent, or given up on.
+     *
+     * @param timeout how long to wait.
+     * @param unit unit of `timeout`.
+     * @return true if drained or false if the timeout lapsed first.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean flush(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!queue.isEmpty() || !inFlight.isEmpty()) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = drained.awaitNanos(remainingNanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of statuses accepted, coalesced ones included.
+     *
+     * @return number of published statuses.
+     */
+    public long published() {
+        return published.get();
+    }
+
+    /**
+     * Number of statuses which replaced a queued, and never sent, one.
+     *
+     * @return number of coalesced statuses.
+     */
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    public long sent() {
+        return sent.get();
+    }
+
+    /**
+     * Number of statuses given up on after exhausting every attempt.
+     *
+     * @return number of failed statuses.
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Number of statuses waiting to be sent.
+     *
+     * @return number of queued statuses.
+     */
+    public int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting statuses, send whatever is still queued, then stop the senders.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        senders.shutdown();
+        try {
+            senders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(final String key, final String commitId, final CreateBuildStatus status) {
+        if (closed) {
+            throw new IllegalStateException("BuildStatusPublisher is closed");
+        }
+        if (queue.put(key, new PendingStatus(commitId, status)) != null) {
+            coalesced.incrementAndGet();
+        }
+        published.incrementAndGet();
+        notEmpty.signal();
+    }
+
+    /**
+     * Loop run by every sender: take the oldest queued status whose commit and
+     * key are not already being sent, send it, and repeat until closed and drained.
+     */
+    private void send() {
+        while (true) {
+            final String key;
+            final PendingStatus pending;
+            lock.lock();
+            try {
+                Map.Entry<String, PendingStatus> next = nextSendable();
+                while (next == null) {
+                    if (closed && queue.isEmpty()) {
+                        return;
+                    }
+                    notEmpty.awaitUninterruptibly();
+                    next = nextSendable();
+                }
+                key = next.getKey();
+                pending = next.getValue();
+                queue.remove(key);
+                inFlight.add(key);
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                if (sendWithRetries(key, pending)) {
+                    sent.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+            } finally {
+                lock.lock();
+                try {
+                    inFlight.remove(key);
+                    if (queue.containsKey(key)) {
+                        // a newer status for this key was held back while we were busy
+                        notEmpty.signal();
+                    }
+                    if (queue.isEmpty() && inFlight.isEmpty()) {
+                        drained.signalAll();
+                        notEmpty.signalAll();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private Map.Entry<String, PendingStatus> nextSendable() {
+        final Iterator<Map.Entry<String, PendingStatus>> iterator = queue.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, PendingStatus> entry = iterator.next();
+            if (!inFlight.contains(entry.getKey())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private boolean sendWithRetries(final String key, final PendingStatus pending) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                final RequestStatus status = api.add(pending.commitId, pending.status);
+                if (status.value() != null && status.value()) {
+                    return true;
+                }
+                if (refused(status.errors())) {
+                    return false;
+                }
+            } catch (final RuntimeException e) {
+                // otherwise treated the same as a failed post
+                final RetryableFailure failure = RetryableFailure.from(e);
+                if (failure.statusCode() != 0 && !retryPolicy.isTransient(failure)) {
+                    return false;
+                }
+            }
+            if (attempt >= retryPolicy.maxAttempts() || superseded(key)) {
+                return false;
+            }
+            try {
+                Thread.sleep(retryPolicy.backoffMillis(attempt + 1));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Whether the passed Error's are Bitbucket's own explanation of why it
+     * refused a post, which fails the same way however often it is sent.
+     * Server errors and I/O failures instead surface as client side
+     * exceptions and are worth retrying, as are errors the policy deems
+     * transient.
+     */
+    private boolean refused(final List<Error> errors) {
+        for (final Error error : errors) {
+            final String exceptionName = error.exceptionName();
+            if (exceptionName != null
+                    && (!exceptionName.startsWith(BITBUCKET_EXCEPTION_PREFIX)
+                        || retryPolicy.isTransient(RetryableFailure.create(0, exceptionName, error.conflicted())))) {
+                return false;
+            }
+        }
+        return !errors.isEmpty();
+    }
+
+    private boolean superseded(final String key) {
+        lock.lock();
+        try {
+            return queue.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String key(final String commitId, final CreateBuildStatus status) {
+        Objects.requireNonNull(commitId, "commitId cannot be null");
+        Objects.requireNonNull(status, "status cannot be null");
+        return commitId + " " + status.key();
+    }
+
+    private static final class PendingStatus {
+
+        private final String commitId;
+        private final CreateBuildStatus status;
+
+        PendingStatus(final String commitId, final CreateBuildStatus status) {
+            this.commitId = commitId;
+            this.status = status;
+        }
+    }
+
+    public static class Builder {
+
+        private final BuildStatusApi api;
+        private int capacity = DEFAULT_CAPACITY;
+        private int senders = DEFAULT_SENDERS;
+        private RetryPolicy retryPolicy = RetryPolicy.defaults();
+
+        Builder(final BuildStatusApi api) {
+            this.api = Objects.requireNonNull(api, "api cannot be null");
+        }
+
+        /**
+         * Maximum number of distinct commit and key pairs queued at once.
+         *
+         * @param capacity maximum number of queued statuses.
+         * @return this Builder.
+         */
+        public Builder capacity(final int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("capacity must be greater than 0: " + capacity);
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Number of statuses sent concurrently.
+         *
+         * @param senders number of concurrent senders.
+         * @return this Builder.
+         */
+        public Builder senders(final int senders) {
+            if (senders < 1) {
+                throw new IllegalArgumentException("senders must be greater than 0: " + senders);
+            }
+            this.senders = senders;
+            return this;
+        }
+
+        /**
+         * How many times, and how far apart, a failed post is attempted.
+         * Only `maxAttempts`, the backoff, and the exception names and status
+         * codes deemed transient of the policy are used.
+         *
+         * @param retryPolicy the policy to retry failed posts with.
+         * @return this Builder.
+         */
+        public Builder retryPolicy(final RetryPolicy retryPolicy) {
+            this.retryPolicy = Objects.requireNonNull(retryPolicy, "retryPolicy cannot be null");
+            return this;
+        }
+
+        public BuildStatusPublisher build() {
+            return new BuildStatusPublisher(this);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import java.util.List;
+
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.insights.Annotation;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Chunk of annotations an {@link AnnotationUploader} failed to upload along
+ * with the Error's Bitbucket, or the client, handed back for it.
+ */
+@AutoValue
+public abstract class FailedAnnotationChunk {
+
+    /**
+     * Position of this chunk amongst all chunks of the upload.
+     *
+     * @return zero based index of this chunk.
+     */
+    public abstract int index();
+
+    /**
+     * Position of the first annotation of this chunk amongst all annotations of the upload.
+     *
+     * @return zero based offset of this chunk.
+     */
+    public abstract int offset();
+
+    /**
+     * Annotations of this chunk such that they can be uploaded again.
+     *
+     * @return annotations which were not uploaded.
+     */
+    public abstract List<Annotation> annotations();
+
+    public abstract List<Error> errors();
+
+    public static FailedAnnotationChunk create(final int index,
+            final int offset,
+            final List<Annotation> annotations,
+            final List<Error> errors) {
+        return new AutoValue_FailedAnnotationChunk(index, offset, ImmutableList.copyOf(annotations), ImmutableList.copyOf(errors));
+    }
+}
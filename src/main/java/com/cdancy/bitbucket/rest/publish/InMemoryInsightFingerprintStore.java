@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Maps;
+
+/**
+ * InsightFingerprintStore holding fingerprints in memory only.
+ */
+public class InMemoryInsightFingerprintStore implements InsightFingerprintStore {
+
+    private final ConcurrentMap<String, InsightFingerprint> fingerprints = Maps.newConcurrentMap();
+
+    @Override
+    public InsightFingerprint load(final String project, final String repo, final String commitId, final String key) {
+        return fingerprints.get(key(project, repo, commitId, key));
+    }
+
+    @Override
+    public void save(final String project, final String repo, final String commitId, final String key, final InsightFingerprint fingerprint) {
+        fingerprints.put(key(project, repo, commitId, key), fingerprint);
+    }
+
+    private static String key(final String project, final String repo, final String commitId, final String key) {
+        return project + "/" + repo + "/" + commitId + "/" + key;
+    }
+}
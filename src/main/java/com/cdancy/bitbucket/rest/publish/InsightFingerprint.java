@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.domain.insights.Annotation;
+import com.cdancy.bitbucket.rest.domain.insights.InsightReport;
+import com.cdancy.bitbucket.rest.domain.insights.InsightReportData;
+import com.cdancy.bitbucket.rest.domain.insights.InsightReportDataLink;
+import com.cdancy.bitbucket.rest.options.CreateInsightReport;
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Stable hashes of the content of a Code Insights report and of its set of
+ * annotations, as compared by an {@link InsightReportUpserter}.
+ *
+ * <p>Hashes only cover what a caller can set: server assigned values (e.g.
+ * `createdDate`) are left out, null and empty Strings are treated alike,
+ * numbers are compared by value (Bitbucket hands them back as decimals), and
+ * annotations are hashed regardless of their order. A fingerprint of what
+ * is to be sent can thus be compared with a fingerprint of what Bitbucket
+ * hands back.
+ */
+@AutoValue
+public abstract class InsightFingerprint {
+
+    public abstract String report();
+
+    public abstract String annotations();
+
+    public static InsightFingerprint create(final String report, final String annotations) {
+        return new AutoValue_InsightFingerprint(report, annotations);
+    }
+
+    public static InsightFingerprint of(final CreateInsightReport report, final Iterable<? extends Annotation> annotations) {
+        return create(hash(report), hash(annotations));
+    }
+
+    public static String hash(final CreateInsightReport report) {
+        return hashReport(report.details(),
+                report.link(),
+                report.logoUrl(),
+                report.result() != null ? report.result().name() : null,
+                report.title(),
+                report.reporter(),
+                report.data());
+    }
+
+    public static String hash(final InsightReport report) {
+        return hashReport(report.details(),
+                report.link(),
+                report.logoUrl(),
+                report.result() != null ? report.result().name() : null,
+                report.title(),
+                report.reporter(),
+                report.data());
+    }
+
+    public static String hash(final Iterable<? extends Annotation> annotations) {
+        final List<String> hashes = new ArrayList<>();
+        for (final Annotation annotation : annotations) {
+            final Hasher hasher = Hashing.sha256().newHasher();
+            // the report key is implied by the report an annotation is sent to
+            put(hasher, annotation.externalId());
+            hasher.putInt(annotation.line());
+            put(hasher, annotation.link());
+            put(hasher, annotation.message());
+            put(hasher, annotation.path());
+            put(hasher, annotation.severity() != null ? annotation.severity().name() : null);
+            put(hasher, annotation.type() != null ? annotation.type().name() : null);
+            hashes.add(hasher.hash().toString());
+        }
+        Collections.sort(hashes);
+
+        final Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putInt(hashes.size());
+        for (final String hash : hashes) {
+            hasher.putString(hash, UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+
+    private static String hashReport(@Nullable final String details,
+            @Nullable final String link,
+            @Nullable final String logoUrl,
+            @Nullable final String result,
+            @Nullable final String title,
+            @Nullable final String reporter,
+            @Nullable final List<InsightReportData> data) {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        put(hasher, details);
+        put(hasher, link);
+        put(hasher, logoUrl);
+        put(hasher, result);
+        put(hasher, title);
+        put(hasher, reporter);
+        final List<InsightReportData> values = data != null ? data : Collections.emptyList();
+        hasher.putInt(values.size());
+        for (final InsightReportData value : values) {
+            put(hasher, value.title());
+            put(hasher, value.type() != null ? value.type().name() : null);
+            put(hasher, canonical(value.value()));
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void put(final Hasher hasher, @Nullable final String value) {
+        final String nonNull = Strings.nullToEmpty(value);
+        hasher.putInt(nonNull.length()).putString(nonNull, UTF_8);
+    }
+
+    /**
+     * Render a data value the same whether built locally or handed back by
+     * Bitbucket (e.g. 3 and 3.0, or an InsightReportDataLink and a Map).
+     */
+    private static String canonical(@Nullable final Object value) {
+        if (value == null) {
+            return "";
+        } else if (value instanceof Number) {
+            return new BigDecimal(value.toString()).stripTrailingZeros().toPlainString();
+        } else if (value instanceof InsightReportDataLink) {
+            final InsightReportDataLink link = (InsightReportDataLink) value;
+            final Map<String, String> map = new TreeMap<>();
+            map.put("href", link.href());
+            map.put("linktext", link.linkText());
+            return map.toString();
+        } else if (value instanceof Map) {
+            final Map<String, String> map = new TreeMap<>();
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                map.put(String.valueOf(entry.getKey()), canonical(entry.getValue()));
+            }
+            return map.toString();
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import org.jclouds.javax.annotation.Nullable;
+
+/**
+ * Store of InsightFingerprint's keyed by project, repository, commit, and
+ * report key. Implementations must be safe for concurrent use.
+ */
+public interface InsightFingerprintStore {
+
+    /**
+     * Look up the fingerprint of what was last upserted to the passed report.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param commitId the commit the report belongs to.
+     * @param key the report key.
+     * @return saved fingerprint or null if none.
+     */
+    @Nullable
+    InsightFingerprint load(String project, String repo, String commitId, String key);
+
+    /**
+     * Save, replacing any existing entry, the fingerprint of the passed report.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param commitId the commit the report belongs to.
+     * @param key the report key.
+     * @param fingerprint the fingerprint to save.
+     */
+    void save(String project, String repo, String commitId, String key, InsightFingerprint fingerprint);
+}
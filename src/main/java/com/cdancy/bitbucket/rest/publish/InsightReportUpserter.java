@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.domain.common.RequestStatus;
+import com.cdancy.bitbucket.rest.domain.insights.Annotation;
+import com.cdancy.bitbucket.rest.domain.insights.AnnotationsResponse;
+import com.cdancy.bitbucket.rest.domain.insights.InsightReport;
+import com.cdancy.bitbucket.rest.features.InsightsApi;
+import com.cdancy.bitbucket.rest.options.CreateInsightReport;
+
+/**
+ * Creates or replaces a Code Insights report, and its annotations, sending
+ * only what actually changed.
+ *
+ * <p>What is to be sent is fingerprinted (see {@link InsightFingerprint}) and
+ * compared with the fingerprint saved by the previous upsert of the same
+ * report or, if none was saved, with what Bitbucket currently has. Should
+ * nothing differ nothing is sent. Should only the annotations differ the
+ * report is left untouched and its annotations are replaced. Should the
+ * report differ both are sent, as replacing a report may drop its
+ * annotations. A fingerprint is only saved once everything was sent.
+ */
+public class InsightReportUpserter {
+
+    private final BitbucketApi api;
+    private final InsightFingerprintStore store;
+    private final AnnotationUploader uploader;
+
+    private InsightReportUpserter(final Builder builder) {
+        this.api = builder.api;
+        this.store = builder.store;
+        this.uploader = builder.uploader != null ? builder.uploader : AnnotationUploader.builder(builder.api).build();
+    }
+
+    public static Builder builder(final BitbucketApi api) {
+        return new Builder(api);
+    }
+
+    /**
+     * Create or replace the passed report, and its annotations, if either differs from what Bitbucket has.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param commitId the commit the report belongs to.
+     * @param key the report key.
+     * @param report the report.
+     * @param annotations every annotation of the report.
+     * @return outcome of the upsert.
+     * @throws InterruptedException if interrupted while uploading annotations.
+     */
+    public ReportUpsert upsert(final String project,
+            final String repo,
+            final String commitId,
+            final String key,
+            final CreateInsightReport report,
+            final List<Annotation> annotations) throws InterruptedException {
+        Objects.requireNonNull(report, "report cannot be null");
+        Objects.requireNonNull(annotations, "annotations cannot be null");
+
+        final InsightFingerprint wanted = InsightFingerprint.of(report, annotations);
+        final InsightsApi insightsApi = api.insightsApi();
+
+        final boolean reportChanged;
+        final boolean annotationsChanged;
+        final InsightFingerprint saved = store.load(project, repo, commitId, key);
+        if (saved != null) {
+            reportChanged = !wanted.report().equals(saved.report());
+            annotationsChanged = reportChanged || !wanted.annotations().equals(saved.annotations());
+        } else {
+            final InsightReport current = insightsApi.getReport(project, repo, commitId, key);
+            reportChanged = !current.errors().isEmpty() || !wanted.report().equals(InsightFingerprint.hash(current));
+            annotationsChanged = reportChanged || annotationsChanged(insightsApi, project, repo, commitId, key, wanted);
+        }
+
+        if (reportChanged) {
+            final InsightReport created = insightsApi.createReport(project, repo, commitId, key, report);
+            if (!created.errors().isEmpty()) {
+                return ReportUpsert.create(true, false, null, created.errors());
+            }
+        }
+
+        AnnotationUpload upload = null;
+        if (annotationsChanged) {
+            final RequestStatus deleted = insightsApi.deleteAnnotation(project, repo, commitId, key, null);
+            if (!deleted.errors().isEmpty()) {
+                return ReportUpsert.create(reportChanged, true, null, deleted.errors());
+            }
+            if (!annotations.isEmpty()) {
+                upload = uploader.upload(project, repo, commitId, key, annotations);
+                if (!upload.succeeded()) {
+                    return ReportUpsert.create(reportChanged, true, upload, null);
+                }
+            }
+        }
+
+        store.save(project, repo, commitId, key, wanted);
+        return ReportUpsert.create(reportChanged, annotationsChanged, upload, null);
+    }
+
+    private static boolean annotationsChanged(final InsightsApi insightsApi,
+            final String project,
+            final String repo,
+            final String commitId,
+            final String key,
+            final InsightFingerprint wanted) {
+        final AnnotationsResponse current = insightsApi.getAnnotationsByReport(project, repo, commitId, key);
+        if (!current.errors().isEmpty()) {
+            return true;
+        }
+        final List<Annotation> annotations = current.annotations() != null ? current.annotations() : Collections.<Annotation>emptyList();
+        return current.totalCount() != annotations.size() || !wanted.annotations().equals(InsightFingerprint.hash(annotations));
+    }
+
+    public static class Builder {
+
+        private final BitbucketApi api;
+        private InsightFingerprintStore store = new InMemoryInsightFingerprintStore();
+        private AnnotationUploader uploader;
+
+        Builder(final BitbucketApi api) {
+            this.api = Objects.requireNonNull(api, "api cannot be null");
+        }
+
+        /**
+         * Where fingerprints of upserted reports are saved to and compared with.
+         * Defaults to an {@link InMemoryInsightFingerprintStore}.
+         *
+         * @param store the store to save fingerprints to.
+         * @return this Builder.
+         */
+        public Builder store(final InsightFingerprintStore store) {
+            this.store = Objects.requireNonNull(store, "store cannot be null");
+            return this;
+        }
+
+        /**
+         * Uploader to send annotations with. Defaults to an uploader with default settings.
+         *
+         * @param uploader the uploader to send annotations with.
+         * @return this Builder.
+         */
+        public Builder uploader(final AnnotationUploader uploader) {
+            this.uploader = Objects.requireNonNull(uploader, "uploader cannot be null");
+            return this;
+        }
+
+        public InsightReportUpserter build() {
+            return new InsightReportUpserter(this);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import java.util.List;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.BitbucketUtils;
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.common.ErrorsHolder;
+import com.google.auto.value.AutoValue;
+
+/**
+ * Outcome of an {@link InsightReportUpserter} upsert: what, if anything, had
+ * to be sent and the Error's sending it ran into.
+ */
+@AutoValue
+public abstract class ReportUpsert implements ErrorsHolder {
+
+    /**
+     * Whether the report differed from what Bitbucket had and was sent.
+     *
+     * @return true if the report was sent.
+     */
+    public abstract boolean reportSent();
+
+    /**
+     * Whether the annotations differed from what Bitbucket had and were sent.
+     *
+     * @return true if the annotations were sent.
+     */
+    public abstract boolean annotationsSent();
+
+    /**
+     * Outcome of uploading the annotations.
+     *
+     * @return outcome of the upload or null if no annotations were uploaded.
+     */
+    @Nullable
+    public abstract AnnotationUpload annotationUpload();
+
+    /**
+     * Whether Bitbucket now has the upserted report and annotations.
+     *
+     * @return true if nothing failed.
+     */
+    public boolean succeeded() {
+        return errors().isEmpty() && (annotationUpload() == null || annotationUpload().succeeded());
+    }
+
+    public static ReportUpsert create(final boolean reportSent,
+            final boolean annotationsSent,
+            @Nullable final AnnotationUpload annotationUpload,
+            @Nullable final List<Error> errors) {
+        return new AutoValue_ReportUpsert(BitbucketUtils.nullToEmpty(errors),
+                reportSent,
+                annotationsSent,
+                annotationUpload);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Caps the number of calls in flight at once, waiting at most a bounded
+ * amount of time for room before giving up.
+ */
+public final class Bulkhead {
+
+    private final Semaphore permits;
+    private final long maxWaitMillis;
+
+    public Bulkhead(final Isolation isolation) {
+        this.permits = new Semaphore(isolation.maxConcurrentCalls(), true);
+        this.maxWaitMillis = isolation.maxWaitMillis();
+    }
+
+    /**
+     * Ask for room to make a call. Every call permitted must be followed
+     * by a call to {@link #release()}.
+     *
+     * @return true if the call may proceed.
+     */
+    public boolean tryAcquire() {
+        try {
+            return maxWaitMillis > 0
+                    ? permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)
+                    : permits.tryAcquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Number of further calls which could currently be made.
+     *
+     * @return number of available permits.
+     */
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+}
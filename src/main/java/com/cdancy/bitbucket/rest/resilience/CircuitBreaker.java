@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Count based circuit breaker. While CLOSED every call is let through and
+ * its outcome recorded over a sliding window of the most recent calls.
+ * Once enough of those failed, or were slow, the circuit goes OPEN and
+ * rejects every call until its open duration lapses. It then goes
+ * HALF_OPEN letting a few trial calls through: should they all succeed
+ * the circuit closes again, otherwise it re-opens.
+ *
+ * <p>Every change of state starts a new generation and each permit handed
+ * out is tagged with the generation it was acquired in. Outcomes of calls
+ * permitted in an earlier generation, e.g. a slow call let through while
+ * CLOSED which only completes once the circuit is HALF_OPEN, are ignored.
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Returned by {@link #tryAcquire()} when the call may not proceed.
+     */
+    public static final long NO_PERMIT = -1;
+
+    private final Isolation isolation;
+    private final boolean[] failed;
+    private final boolean[] slow;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private long openedAtNanos;
+    private int halfOpenInFlight;
+    private int halfOpenSucceeded;
+
+    public CircuitBreaker(final Isolation isolation) {
+        this.isolation = isolation;
+        this.failed = new boolean[isolation.slidingWindowSize()];
+        this.slow = new boolean[isolation.slidingWindowSize()];
+    }
+
+    /**
+     * Ask for permission to make a call. Every call permitted must have its
+     * outcome reported through {@link #onResult(long, boolean, long)}, or
+     * its permit handed back through {@link #release(long)}.
+     *
+     * @return permit for the call or {@link #NO_PERMIT} if it may not proceed.
+     */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < TimeUnit.MILLISECONDS.toNanos(isolation.openDurationMillis())) {
+                return NO_PERMIT;
+            }
+            state = State.HALF_OPEN;
+            generation++;
+            halfOpenInFlight = 0;
+            halfOpenSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight + halfOpenSucceeded >= isolation.halfOpenCalls()) {
+                return NO_PERMIT;
+            }
+            halfOpenInFlight++;
+        }
+        return generation;
+    }
+
+    /**
+     * Report the outcome of a permitted call.
+     *
+     * @param permit permit the call was made with.
+     * @param failure whether or not the call failed.
+     * @param latencyNanos how long the call took.
+     */
+    public synchronized void onResult(final long permit, final boolean failure, final long latencyNanos) {
+        if (permit != generation) {
+            // permitted before the circuit last changed state
+            return;
+        }
+        final boolean wasSlow = isolation.slowCallThresholdMillis() > 0
+                && latencyNanos >= TimeUnit.MILLISECONDS.toNanos(isolation.slowCallThresholdMillis());
+        switch (state) {
+            case HALF_OPEN:
+                halfOpenInFlight--;
+                if (failure || wasSlow) {
+                    open();
+                } else if (++halfOpenSucceeded >= isolation.halfOpenCalls()) {
+                    close();
+                }
+                break;
+            case CLOSED:
+                record(failure, wasSlow);
+                if (recorded >= isolation.minimumCalls()
+                        && (failures >= isolation.failureRateThreshold() * recorded
+                        || slowCalls >= isolation.slowCallRateThreshold() * recorded)) {
+                    open();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Hand back a permission acquired through {@link #tryAcquire()} for a
+     * call which was never made, recording nothing against the circuit.
+     *
+     * @param permit the permit to hand back.
+     */
+    public synchronized void release(final long permit) {
+        if (permit == generation && state == State.HALF_OPEN) {
+            halfOpenInFlight--;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Fraction of the calls in the sliding window which failed.
+     *
+     * @return failure rate or 0 if no calls were recorded.
+     */
+    public synchronized double failureRate() {
+        return recorded > 0 ? (double) failures / recorded : 0;
+    }
+
+    private void record(final boolean failure, final boolean wasSlow) {
+        if (recorded == failed.length) {
+            failures -= failed[next] ? 1 : 0;
+            slowCalls -= slow[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[next] = failure;
+        slow[next] = wasSlow;
+        failures += failure ? 1 : 0;
+        slowCalls += wasSlow ? 1 : 0;
+        next = (next + 1) % failed.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        generation++;
+        openedAtNanos = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        generation++;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
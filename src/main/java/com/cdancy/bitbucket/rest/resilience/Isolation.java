@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How calls to a single API (e.g. SearchApi) are isolated from those made
+ * to every other API: through a bulkhead capping how many may be in flight
+ * at once and a circuit breaker which, once too many recent calls failed or
+ * were slow, rejects calls outright for a while.
+ */
+public final class Isolation {
+
+    private final int maxConcurrentCalls;
+    private final long maxWaitMillis;
+    private final double failureRateThreshold;
+    private final long slowCallThresholdMillis;
+    private final double slowCallRateThreshold;
+    private final int slidingWindowSize;
+    private final int minimumCalls;
+    private final long openDurationMillis;
+    private final int halfOpenCalls;
+
+    private Isolation(final Builder builder) {
+        this.maxConcurrentCalls = builder.maxConcurrentCalls;
+        this.maxWaitMillis = builder.maxWaitMillis;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallThresholdMillis = builder.slowCallThresholdMillis;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.slidingWindowSize = builder.slidingWindowSize;
+        this.minimumCalls = builder.minimumCalls;
+        this.openDurationMillis = builder.openDurationMillis;
+        this.halfOpenCalls = builder.halfOpenCalls;
+    }
+
+    /**
+     * At most 16 concurrent calls, failing fast once full, with the circuit
+     * opening for 30 seconds once half of the last 20 calls failed.
+     *
+     * @return default Isolation.
+     */
+    public static Isolation defaults() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int maxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public long maxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public double failureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public long slowCallThresholdMillis() {
+        return slowCallThresholdMillis;
+    }
+
+    public double slowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public int slidingWindowSize() {
+        return slidingWindowSize;
+    }
+
+    public int minimumCalls() {
+        return minimumCalls;
+    }
+
+    public long openDurationMillis() {
+        return openDurationMillis;
+    }
+
+    public int halfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    public static class Builder {
+
+        private int maxConcurrentCalls = 16;
+        private long maxWaitMillis;
+        private double failureRateThreshold = 0.5;
+        private long slowCallThresholdMillis;
+        private double slowCallRateThreshold = 1;
+        private int slidingWindowSize = 20;
+        private int minimumCalls = 10;
+        private long openDurationMillis = TimeUnit.SECONDS.toMillis(30);
+        private int halfOpenCalls = 3;
+
+        /**
+         * Maximum number of calls allowed in flight at once.
+         *
+         * @param maxConcurrentCalls maximum number of concurrent calls.
+         * @return this Builder.
+         */
+        public Builder maxConcurrentCalls(final int maxConcurrentCalls) {
+            if (maxConcurrentCalls < 1) {
+                throw new IllegalArgumentException("maxConcurrentCalls must be greater than 0: " + maxConcurrentCalls);
+            }
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            return this;
+        }
+
+        /**
+         * How long a call may wait for room in the bulkhead before being
+         * rejected. Calls are rejected immediately by default.
+         *
+         * @param maxWait how long to wait.
+         * @param unit unit of `maxWait`.
+         * @return this Builder.
+         */
+        public Builder maxWait(final long maxWait, final TimeUnit unit) {
+            if (maxWait < 0) {
+                throw new IllegalArgumentException("maxWait cannot be negative: " + maxWait);
+            }
+            this.maxWaitMillis = unit.toMillis(maxWait);
+            return this;
+        }
+
+        /**
+         * Fraction of recent calls which must fail for the circuit to open.
+         *
+         * @param failureRateThreshold between 0 (exclusive) and 1 (inclusive).
+         * @return this Builder.
+         */
+        public Builder failureRateThreshold(final double failureRateThreshold) {
+            checkRate("failureRateThreshold", failureRateThreshold);
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Also open the circuit once the passed fraction of recent calls
+         * took longer than the passed threshold. Disabled by default.
+         *
+         * @param threshold time after which a call is considered slow.
+         * @param unit unit of `threshold`.
+         * @param slowCallRateThreshold between 0 (exclusive) and 1 (inclusive).
+         * @return this Builder.
+         */
+        public Builder slowCalls(final long threshold, final TimeUnit unit, final double slowCallRateThreshold) {
+            if (threshold < 1) {
+                throw new IllegalArgumentException("threshold must be greater than 0: " + threshold);
+            }
+            checkRate("slowCallRateThreshold", slowCallRateThreshold);
+            this.slowCallThresholdMillis = unit.toMillis(threshold);
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        /**
+         * Number of most recent calls the failure and slow call rates are
+         * computed over, and the least number of calls which must have
+         * been made before the circuit may open.
+         *
+         * @param slidingWindowSize number of recent calls considered.
+         * @param minimumCalls least number of calls before the circuit may open.
+         * @return this Builder.
+         */
+        public Builder slidingWindow(final int slidingWindowSize, final int minimumCalls) {
+            if (slidingWindowSize < 1 || minimumCalls < 1 || minimumCalls > slidingWindowSize) {
+                throw new IllegalArgumentException("slidingWindow must satisfy 0 < minimumCalls <= slidingWindowSize: "
+                        + minimumCalls + ", " + slidingWindowSize);
+            }
+            this.slidingWindowSize = slidingWindowSize;
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * How long the circuit stays open before letting trial calls through.
+         *
+         * @param openDuration how long to stay open.
+         * @param unit unit of `openDuration`.
+         * @return this Builder.
+         */
+        public Builder openDuration(final long openDuration, final TimeUnit unit) {
+            if (openDuration < 1) {
+                throw new IllegalArgumentException("openDuration must be greater than 0: " + openDuration);
+            }
+            this.openDurationMillis = unit.toMillis(openDuration);
+            return this;
+        }
+
+        /**
+         * Number of trial calls which must succeed, once the open duration
+         * lapses, for the circuit to close again.
+         *
+         * @param halfOpenCalls number of trial calls.
+         * @return this Builder.
+         */
+        public Builder halfOpenCalls(final int halfOpenCalls) {
+            if (halfOpenCalls < 1) {
+                throw new IllegalArgumentException("halfOpenCalls must be greater than 0: " + halfOpenCalls);
+            }
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        public Isolation build() {
+            return new Isolation(this);
+        }
+
+        private static void checkRate(final String name, final double rate) {
+            if (!(rate > 0 && rate <= 1)) {
+                throw new IllegalArgumentException(name + " must be greater than 0 and at most 1: " + rate);
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.retry;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * When, how often, and how long to wait before sending a failed request
+ * again.
+ *
+ * <p>A failed request is retried if the server answered with one of the
+ * retryable status codes, or with an error carrying one of the retryable
+ * exception names which is not `conflicted`. Only idempotent requests are
+ * ever retried: GET, HEAD, PUT, DELETE, and OPTIONS along with those
+ * operations, by their `@Named` name, marked as safe to retry through
+ * {@link Builder#idempotent(String...)}.
+ *
+ * <p>Attempts are spaced by an exponentially growing backoff, of which a
+ * random fraction (the jitter) is taken off such that many callers failing
+ * at once don't all retry at once, and give up once the deadline, if any,
+ * would be exceeded. Policies differing for specific operations can be
+ * added through {@link Builder#override(String, RetryPolicy)}.
+ */
+public final class RetryPolicy {
+
+    public static final Set<String> IDEMPOTENT_METHODS = ImmutableSet.of("GET", "HEAD", "PUT", "DELETE", "OPTIONS");
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final double multiplier;
+    private final double jitter;
+    private final long deadlineMillis;
+    private final Set<Integer> statusCodes;
+    private final Set<String> exceptionNames;
+    private final Set<String> idempotentCommandNames;
+    private final Set<String> excludedCommandNames;
+    private final Map<String, RetryPolicy> overrides;
+
+    private RetryPolicy(final Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffMillis = builder.initialBackoffMillis;
+        this.maxBackoffMillis = builder.maxBackoffMillis;
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+        this.deadlineMillis = builder.deadlineMillis;
+        this.statusCodes = ImmutableSet.copyOf(builder.statusCodes);
+        this.exceptionNames = ImmutableSet.copyOf(builder.exceptionNames);
+        this.idempotentCommandNames = ImmutableSet.copyOf(builder.idempotentCommandNames);
+        this.excludedCommandNames = ImmutableSet.copyOf(builder.excludedCommandNames);
+        this.overrides = ImmutableMap.copyOf(builder.overrides);
+    }
+
+    /**
+     * Policy making up to 3 attempts, backing off from 200 millis, of
+     * requests answered with a 429, 502, 503, or 504 along with merges
+     * which raced with a push (i.e. "Please retry the merge").
+     *
+     * @return default RetryPolicy.
+     */
+    public static RetryPolicy defaults() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Policy applying to the passed operation.
+     *
+     * @param commandName name of the operation or null if not known.
+     * @return the operation's override if any, otherwise this policy.
+     */
+    public RetryPolicy forOperation(final String commandName) {
+        final RetryPolicy override = commandName != null ? overrides.get(commandName) : null;
+        return override != null ? override : this;
+    }
+
+    /**
+     * Whether or not a request of the passed method and operation may be retried at all.
+     *
+     * @param method HTTP method of the request.
+     * @param commandName name of the operation or null if not known.
+     * @return true if retries are allowed.
+     */
+    public boolean isRetryable(final String method, final String commandName) {
+        if (commandName != null && excludedCommandNames.contains(commandName)) {
+            return false;
+        }
+        return IDEMPOTENT_METHODS.contains(method) || (commandName != null && idempotentCommandNames.contains(commandName));
+    }
+
+    /**
+     * Whether or not the passed failure is worth retrying.
+     *
+     * @param failure classification of the failure.
+     * @return true if the failure is transient.
+     */
+    public boolean isTransient(final RetryableFailure failure) {
+        if (statusCodes.contains(failure.statusCode())) {
+            return true;
+        }
+        return !failure.conflicted() && failure.exceptionName() != null && exceptionNames.contains(failure.exceptionName());
+    }
+
+    /**
+     * Time to wait before making the passed attempt, jitter included.
+     *
+     * @param attempt attempt about to be made, the first retry being attempt 2.
+     * @return millis to wait.
+     */
+    public long backoffMillis(final int attempt) {
+        final double backoff = Math.min(maxBackoffMillis, initialBackoffMillis * Math.pow(multiplier, Math.max(0, attempt - 2)));
+        return (long) (backoff * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Total time, measured from the first attempt, within which all attempts must be made.
+     *
+     * @return deadline in millis or 0 if none.
+     */
+    public long deadlineMillis() {
+        return deadlineMillis;
+    }
+
+    public static class Builder {
+
+        private int maxAttempts = 3;
+        private long initialBackoffMillis = 200;
+        private long maxBackoffMillis = TimeUnit.SECONDS.toMillis(10);
+        private double multiplier = 2;
+        private double jitter = 0.5;
+        private long deadlineMillis;
+        private final Set<Integer> statusCodes = Sets.newHashSet(429, 502, 503, 504);
+        private final Set<String> exceptionNames = Sets.newHashSet("com.atlassian.stash.scm.MergeException",
+                "com.atlassian.bitbucket.scm.MergeException");
+        private final Set<String> idempotentCommandNames = Sets.newHashSet("pull-request:merge");
+        private final Set<String> excludedCommandNames = Sets.newHashSet();
+        private final Map<String, RetryPolicy> overrides = Maps.newHashMap();
+
+        /**
+         * Maximum number of attempts, the first one included, to make.
+         *
+         * @param maxAttempts maximum number of attempts.
+         * @return this Builder.
+         */
+        public Builder maxAttempts(final int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be greater than 0: " + maxAttempts);
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Backoff before the first retry, doubled for each retry thereafter up to `max`.
+         *
+         * @param initial backoff before the first retry.
+         * @param max upper bound on any backoff.
+         * @param unit unit of `initial` and `max`.
+         * @return this Builder.
+         */
+        public Builder backoff(final long initial, final long max, final TimeUnit unit) {
+            if (initial < 0 || max < initial) {
+                throw new IllegalArgumentException("backoff must satisfy 0 <= initial <= max: " + initial + ", " + max);
+            }
+            this.initialBackoffMillis = unit.toMillis(initial);
+            this.maxBackoffMillis = unit.toMillis(max);
+            return this;
+        }
+
+        /**
+         * Factor by which the backoff grows with each retry.
+         *
+         * @param multiplier growth factor of the backoff.
+         * @return this Builder.
+         */
+        public Builder multiplier(final double multiplier) {
+            if (!(multiplier >= 1)) {
+                throw new IllegalArgumentException("multiplier must be at least 1: " + multiplier);
+            }
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Largest fraction of each backoff which may randomly be taken off.
+         *
+         * @param jitter between 0 (no jitter) and 1 (anywhere between 0 and the full backoff).
+         * @return this Builder.
+         */
+        public Builder jitter(final double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("jitter must be between 0 and 1: " + jitter);
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Total time, measured from the first attempt, after which no further
+         * attempts are made. Unbounded by default.
+         *
+         * @param deadline time budget for all attempts.
+         * @param unit unit of `deadline`.
+         * @return this Builder.
+         */
+        public Builder deadline(final long deadline, final TimeUnit unit) {
+            if (deadline < 1) {
+                throw new IllegalArgumentException("deadline must be greater than 0: " + deadline);
+            }
+            this.deadlineMillis = unit.toMillis(deadline);
+            return this;
+        }
+
+        /**
+         * Retry requests answered with the passed status codes, replacing the defaults.
+         *
+         * @param statusCodes retryable status codes.
+         * @return this Builder.
+         */
+        public Builder retryOnStatusCodes(final Integer... statusCodes) {
+            this.statusCodes.clear();
+            this.statusCodes.addAll(ImmutableSet.copyOf(statusCodes));
+            return this;
+        }
+
+        /**
+         * Retry requests answered with an error carrying any of the passed
+         * `exceptionName`s, and not marked as `conflicted`, replacing the defaults.
+         *
+         * @param exceptionNames retryable exception names.
+         * @return this Builder.
+         */
+        public Builder retryOnExceptionNames(final String... exceptionNames) {
+            this.exceptionNames.clear();
+            this.exceptionNames.addAll(ImmutableSet.copyOf(exceptionNames));
+            return this;
+        }
+
+        /**
+         * Mark the passed operations, regardless of their HTTP method, as safe to retry.
+         *
+         * @param commandNames names of the operations.
+         * @return this Builder.
+         */
+        public Builder idempotent(final String... commandNames) {
+            this.idempotentCommandNames.addAll(ImmutableSet.copyOf(commandNames));
+            return this;
+        }
+
+        /**
+         * Never retry the passed operations.
+         *
+         * @param commandNames names of the operations.
+         * @return this Builder.
+         */
+        public Builder exclude(final String... commandNames) {
+            this.excludedCommandNames.addAll(ImmutableSet.copyOf(commandNames));
+            return this;
+        }
+
+        /**
+         * Apply the passed policy, rather than this one, to the passed operation.
+         *
+         * @param commandName name of the operation.
+         * @param policy policy to apply.
+         * @return this Builder.
+         */
+        public Builder override(final String commandName, final RetryPolicy policy) {
+            this.overrides.put(commandName, policy);
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
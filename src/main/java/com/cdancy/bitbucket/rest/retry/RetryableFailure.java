@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.retry;
+
+import java.util.List;
+
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.fallbacks.BitbucketFallbacks;
+import com.cdancy.bitbucket.rest.interceptors.HttpCommands;
+import com.google.auto.value.AutoValue;
+
+/**
+ * What a RetryPolicy gets to see of a failed request: its status code and,
+ * if Bitbucket handed back an error body, the `exceptionName` of its first
+ * error and whether any of its errors were `conflicted`.
+ */
+@AutoValue
+public abstract class RetryableFailure {
+
+    public abstract int statusCode();
+
+    @Nullable
+    public abstract String exceptionName();
+
+    public abstract boolean conflicted();
+
+    public static RetryableFailure create(final int statusCode, @Nullable final String exceptionName, final boolean conflicted) {
+        return new AutoValue_RetryableFailure(statusCode, exceptionName, conflicted);
+    }
+
+    /**
+     * Classify the passed exception as thrown, by way of BitbucketErrorHandler,
+     * while invoking a command.
+     *
+     * @param exception exception thrown while invoking a command.
+     * @return RetryableFailure describing the exception.
+     */
+    public static RetryableFailure from(final Throwable exception) {
+        final int statusCode = HttpCommands.statusCode(exception);
+
+        // mapped exceptions carry the error body as their message
+        final String message = exception.getMessage();
+        if (!(exception instanceof HttpResponseException) && message != null && message.trim().startsWith("{")) {
+            final List<Error> errors = BitbucketFallbacks.getErrors(message);
+            boolean conflicted = false;
+            for (final Error error : errors) {
+                conflicted |= error.conflicted();
+            }
+            return create(statusCode, errors.isEmpty() ? null : errors.get(0).exceptionName(), conflicted);
+        }
+        return create(statusCode, null, false);
+    }
+}
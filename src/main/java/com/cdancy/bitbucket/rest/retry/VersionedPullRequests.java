@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.retry;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.domain.common.Error;
+import com.cdancy.bitbucket.rest.domain.common.ErrorsHolder;
+import com.cdancy.bitbucket.rest.domain.common.RequestStatus;
+import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequest;
+import com.cdancy.bitbucket.rest.fallbacks.BitbucketFallbacks;
+import com.cdancy.bitbucket.rest.features.PullRequestApi;
+
+/**
+ * Version aware variants of the {@link PullRequestApi} operations requiring
+ * the current `version` of a pull request (merge, decline, reopen, and
+ * delete).
+ *
+ * <p>Each operation either reads the latest version of the pull request
+ * first or, if passed a previously fetched PullRequest, optimistically uses
+ * its version and skips the read. Should Bitbucket answer that the version
+ * is out of date the pull request is read again and the operation retried,
+ * up to the `maxAttempts` of the {@link RetryPolicy}. A version just read
+ * which is already out of date again means others are racing for the same
+ * pull request, so such retries are spaced by the policy's backoff whereas
+ * retries of a stale cached version are made right away. Every other
+ * failure (e.g. merge conflicts or vetoes) is returned as is.
+ */
+public class VersionedPullRequests {
+
+    public static final String OUT_OF_DATE_EXCEPTION = "com.atlassian.bitbucket.pull.PullRequestOutOfDateException";
+
+    private final PullRequestApi api;
+    private final RetryPolicy retryPolicy;
+
+    private VersionedPullRequests(final Builder builder) {
+        this.api = builder.api;
+        this.retryPolicy = builder.retryPolicy;
+    }
+
+    public static Builder builder(final PullRequestApi api) {
+        return new Builder(api);
+    }
+
+    public PullRequest merge(final String project, final String repo, final int pullRequestId) {
+        return versioned(project, repo, pullRequestId, null,
+                version -> api.merge(project, repo, pullRequestId, version), BitbucketFallbacks::createPullRequestFromErrors);
+    }
+
+    /**
+     * Merge the passed pull request starting from its, possibly stale, version.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param pullRequest previously fetched pull request.
+     * @return the merged pull request or one holding the Error's of the last attempt.
+     */
+    public PullRequest merge(final String project, final String repo, final PullRequest pullRequest) {
+        final int pullRequestId = pullRequest.id();
+        return versioned(project, repo, pullRequestId, pullRequest.version(),
+                version -> api.merge(project, repo, pullRequestId, version), BitbucketFallbacks::createPullRequestFromErrors);
+    }
+
+    public PullRequest decline(final String project, final String repo, final int pullRequestId) {
+        return versioned(project, repo, pullRequestId, null,
+                version -> api.decline(project, repo, pullRequestId, version), BitbucketFallbacks::createPullRequestFromErrors);
+    }
+
+    /**
+     * Decline the passed pull request starting from its, possibly stale, version.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param pullRequest previously fetched pull request.
+     * @return the declined pull request or one holding the Error's of the last attempt.
+     */
+    public PullRequest decline(final String project, final String repo, final PullRequest pullRequest) {
+        final int pullRequestId = pullRequest.id();
+        return versioned(project, repo, pullRequestId, pullRequest.version(),
+                version -> api.decline(project, repo, pullRequestId, version), BitbucketFallbacks::createPullRequestFromErrors);
+    }
+
+    public PullRequest reopen(final String project, final String repo, final int pullRequestId) {
+        return versioned(project, repo, pullRequestId, null,
+                version -> api.reopen(project, repo, pullRequestId, version), BitbucketFallbacks::createPullRequestFromErrors);
+    }
+
+    /**
+     * Reopen the passed pull request starting from its, possibly stale, version.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param pullRequest previously fetched pull request.
+     * @return the reopened pull request or one holding the Error's of the last attempt.
+     */
+    public PullRequest reopen(final String project, final String repo, final PullRequest pullRequest) {
+        final int pullRequestId = pullRequest.id();
+        return versioned(project, repo, pullRequestId, pullRequest.version(),
+                version -> api.reopen(project, repo, pullRequestId, version), BitbucketFallbacks::createPullRequestFromErrors);
+    }
+
+    public RequestStatus delete(final String project, final String repo, final int pullRequestId) {
+        return versioned(project, repo, pullRequestId, null,
+                version -> api.delete(project, repo, pullRequestId, version), errors -> RequestStatus.create(false, errors));
+    }
+
+    /**
+     * Delete the passed pull request starting from its, possibly stale, version.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param pullRequest previously fetched pull request.
+     * @return status of the delete.
+     */
+    public RequestStatus delete(final String project, final String repo, final PullRequest pullRequest) {
+        final int pullRequestId = pullRequest.id();
+        return versioned(project, repo, pullRequestId, pullRequest.version(),
+                version -> api.delete(project, repo, pullRequestId, version), errors -> RequestStatus.create(false, errors));
+    }
+
+    /**
+     * Whether or not the passed Error's mean the version a pull request was
+     * modified with is out of date.
+     *
+     * @param errors Error's of a failed operation.
+     * @return true if the version was out of date.
+     */
+    public static boolean isOutOfDate(final List<Error> errors) {
+        for (final Error error : errors) {
+            if (OUT_OF_DATE_EXCEPTION.equals(error.exceptionName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T extends ErrorsHolder> T versioned(final String project,
+            final String repo,
+            final int pullRequestId,
+            @Nullable final Integer knownVersion,
+            final IntFunction<T> operation,
+            final Function<List<Error>, T> readFailure) {
+        Integer version = knownVersion;
+        for (int attempt = 1; ; attempt++) {
+            final boolean fresh = version == null;
+            if (fresh) {
+                final PullRequest latest = api.get(project, repo, pullRequestId);
+                if (!latest.errors().isEmpty()) {
+                    return readFailure.apply(latest.errors());
+                }
+                version = latest.version();
+            }
+
+            final T result = operation.apply(version);
+            if (!isOutOfDate(result.errors()) || attempt >= retryPolicy.maxAttempts()) {
+                return result;
+            }
+            version = null;
+            if (fresh) {
+                try {
+                    Thread.sleep(retryPolicy.backoffMillis(attempt + 1));
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return result;
+                }
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private final PullRequestApi api;
+        private RetryPolicy retryPolicy = RetryPolicy.defaults();
+
+        Builder(final PullRequestApi api) {
+            this.api = Objects.requireNonNull(api, "api cannot be null");
+        }
+
+        /**
+         * How many times, and how far apart, an operation racing with other
+         * updates of the same pull request is attempted. Only `maxAttempts`
+         * and the backoff of the policy are used. Defaults to {@link RetryPolicy#defaults()}.
+         *
+         * @param retryPolicy the policy to retry out of date operations with.
+         * @return this Builder.
+         */
+        public Builder retryPolicy(final RetryPolicy retryPolicy) {
+            this.retryPolicy = Objects.requireNonNull(retryPolicy, "retryPolicy cannot be null");
+            return this;
+        }
+
+        public VersionedPullRequests build() {
+            return new VersionedPullRequests(this);
+        }
+    }
+}
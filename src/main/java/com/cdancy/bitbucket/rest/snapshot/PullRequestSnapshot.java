@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.snapshot;
+
+import java.util.Set;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.domain.activities.ActivitiesPage;
+import com.cdancy.bitbucket.rest.domain.build.Summary;
+import com.cdancy.bitbucket.rest.domain.insights.InsightReportPage;
+import com.cdancy.bitbucket.rest.domain.participants.ParticipantsPage;
+import com.cdancy.bitbucket.rest.domain.pullrequest.MergeStatus;
+import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequest;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Everything needed to render the status of a single pull request, as
+ * fetched concurrently by {@link PullRequestSnapshots}.
+ *
+ * <p>Parts which could not be fetched before the deadline, or which failed
+ * outright, are null and listed in {@link #missing()}. Parts whose endpoint
+ * fell back are present and carry their Error's as usual.
+ */
+@AutoValue
+public abstract class PullRequestSnapshot {
+
+    /**
+     * The individual calls a snapshot is assembled from.
+     */
+    public enum Part {
+        PULL_REQUEST,
+        MERGE_STATUS,
+        PARTICIPANTS,
+        ACTIVITIES,
+        BUILD_SUMMARY,
+        INSIGHT_REPORTS
+    }
+
+    @Nullable
+    public abstract PullRequest pullRequest();
+
+    @Nullable
+    public abstract MergeStatus mergeStatus();
+
+    @Nullable
+    public abstract ParticipantsPage participants();
+
+    @Nullable
+    public abstract ActivitiesPage activities();
+
+    /**
+     * Build status summary of the head commit of the pull request.
+     *
+     * @return build status summary or null if missing.
+     */
+    @Nullable
+    public abstract Summary buildSummary();
+
+    /**
+     * Code Insights reports attached to the head commit of the pull request.
+     *
+     * @return first page of reports or null if missing.
+     */
+    @Nullable
+    public abstract InsightReportPage insightReports();
+
+    public abstract Set<Part> missing();
+
+    /**
+     * Whether or not every part of this snapshot was fetched.
+     *
+     * @return true if nothing is missing.
+     */
+    public boolean complete() {
+        return missing().isEmpty();
+    }
+
+    public static PullRequestSnapshot create(@Nullable final PullRequest pullRequest,
+            @Nullable final MergeStatus mergeStatus,
+            @Nullable final ParticipantsPage participants,
+            @Nullable final ActivitiesPage activities,
+            @Nullable final Summary buildSummary,
+            @Nullable final InsightReportPage insightReports,
+            final Set<Part> missing) {
+        return new AutoValue_PullRequestSnapshot(pullRequest, mergeStatus, participants, activities,
+                buildSummary, insightReports, ImmutableSet.copyOf(missing));
+    }
+}
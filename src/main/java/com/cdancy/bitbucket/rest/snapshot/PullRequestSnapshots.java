@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.snapshot;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.BitbucketAsyncApi;
+import com.cdancy.bitbucket.rest.concurrent.BitbucketExecutors;
+import com.cdancy.bitbucket.rest.domain.activities.ActivitiesPage;
+import com.cdancy.bitbucket.rest.domain.build.Summary;
+import com.cdancy.bitbucket.rest.domain.insights.InsightReportPage;
+import com.cdancy.bitbucket.rest.domain.participants.ParticipantsPage;
+import com.cdancy.bitbucket.rest.domain.pullrequest.MergeStatus;
+import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequest;
+import com.cdancy.bitbucket.rest.snapshot.PullRequestSnapshot.Part;
+import com.google.common.collect.Maps;
+
+/**
+ * Fetches, concurrently through a {@link BitbucketAsyncApi}, everything
+ * making up a {@link PullRequestSnapshot}.
+ *
+ * <p>The pull request, its merge status, participants, and activities are
+ * all requested at once. The build status summary and Code Insights reports
+ * are requested as soon as the pull request, and with it the latest commit of
+ * its source branch, comes back. A snapshot therefore takes about as long as
+ * the slowest of these chains rather than the sum of every call.
+ *
+ * <p>Should the deadline pass first the snapshot is completed with whatever
+ * has come back so far and every outstanding call, including those made
+ * for the head commit, is cancelled: calls still waiting for a free slot
+ * are never sent while those already in flight run to completion and are
+ * ignored.
+ */
+public class PullRequestSnapshots {
+
+    public static final int INSIGHT_REPORTS_LIMIT = 100;
+
+    private static final ScheduledExecutorService DEADLINES = BitbucketExecutors
+            .newDaemonScheduledExecutor("bitbucket-rest-snapshot-deadline-%d");
+
+    /**
+     * Fetch a snapshot of the passed pull request.
+     *
+     * @param asyncApi the BitbucketAsyncApi to make calls through.
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param pullRequestId the id of the pull request.
+     * @param timeout overall deadline for the snapshot.
+     * @param unit unit of `timeout`.
+     * @return CompletableFuture completed, no later than the deadline, with the snapshot.
+     */
+    public static CompletableFuture<PullRequestSnapshot> fetch(final BitbucketAsyncApi asyncApi,
+            final String project,
+            final String repo,
+            final int pullRequestId,
+            final long timeout,
+            final TimeUnit unit) {
+        Objects.requireNonNull(asyncApi, "asyncApi cannot be null");
+        if (timeout < 1) {
+            throw new IllegalArgumentException("timeout must be greater than 0: " + timeout);
+        }
+
+        final CompletableFuture<PullRequest> pullRequest = asyncApi.pullRequestApi(api -> api.get(project, repo, pullRequestId));
+        final CompletableFuture<String> headCommit = pullRequest.thenApply(PullRequestSnapshots::headCommit);
+        final CompletableFuture<PullRequestSnapshot> snapshot = new CompletableFuture<>();
+
+        // cancelling a part composed on the head commit leaves the call it composed
+        // with untouched so those calls are kept track of, and cancelled, separately.
+        final Queue<CompletableFuture<?>> headCommitCalls = new ConcurrentLinkedQueue<>();
+        final Map<Part, CompletableFuture<?>> parts = Maps.newEnumMap(Part.class);
+        parts.put(Part.PULL_REQUEST, pullRequest);
+        parts.put(Part.MERGE_STATUS, asyncApi.pullRequestApi(api -> api.canMerge(project, repo, pullRequestId)));
+        parts.put(Part.PARTICIPANTS, asyncApi.pullRequestApi(api -> api.listParticipants(project, repo, pullRequestId, null, null)));
+        parts.put(Part.ACTIVITIES, asyncApi.pullRequestApi(api -> api.listActivities(project, repo, pullRequestId, null, null)));
+        parts.put(Part.BUILD_SUMMARY, headCommit.thenCompose(commit -> commit != null
+                ? cancellable(snapshot, headCommitCalls, asyncApi.buildStatusApi(api -> api.summary(commit)))
+                : CompletableFuture.<Summary>completedFuture(null)));
+        parts.put(Part.INSIGHT_REPORTS, headCommit.thenCompose(commit -> commit != null
+                ? cancellable(snapshot, headCommitCalls,
+                        asyncApi.insightsApi(api -> api.listReports(project, repo, commit, INSIGHT_REPORTS_LIMIT, 0)))
+                : CompletableFuture.<InsightReportPage>completedFuture(null)));
+
+        CompletableFuture.allOf(parts.values().toArray(new CompletableFuture[0]))
+                .whenComplete((ignored, error) -> snapshot.complete(assemble(parts)));
+
+        final ScheduledFuture<?> deadline = DEADLINES.schedule(() -> {
+            if (snapshot.complete(assemble(parts))) {
+                for (final CompletableFuture<?> part : parts.values()) {
+                    part.cancel(false);
+                }
+                for (final CompletableFuture<?> call : headCommitCalls) {
+                    call.cancel(false);
+                }
+            }
+        }, timeout, unit);
+        snapshot.whenComplete((ignored, error) -> deadline.cancel(false));
+        return snapshot;
+    }
+
+    private static <T> CompletableFuture<T> cancellable(final CompletableFuture<?> snapshot,
+            final Queue<CompletableFuture<?>> calls,
+            final CompletableFuture<T> call) {
+        calls.add(call);
+        // the deadline may have passed, and cancelled every call it knew of, in the meantime
+        if (snapshot.isDone()) {
+            call.cancel(false);
+        }
+        return call;
+    }
+
+    @Nullable
+    private static String headCommit(final PullRequest pullRequest) {
+        if (pullRequest == null || !pullRequest.errors().isEmpty() || pullRequest.fromRef() == null) {
+            return null;
+        }
+        return pullRequest.fromRef().latestCommit();
+    }
+
+    private static PullRequestSnapshot assemble(final Map<Part, CompletableFuture<?>> parts) {
+        final Set<Part> missing = EnumSet.noneOf(Part.class);
+        final Map<Part, Object> values = Maps.newEnumMap(Part.class);
+        for (final Map.Entry<Part, CompletableFuture<?>> part : parts.entrySet()) {
+            final Object value = valueOf(part.getValue());
+            if (value != null) {
+                values.put(part.getKey(), value);
+            } else {
+                missing.add(part.getKey());
+            }
+        }
+        return PullRequestSnapshot.create((PullRequest) values.get(Part.PULL_REQUEST),
+                (MergeStatus) values.get(Part.MERGE_STATUS),
+                (ParticipantsPage) values.get(Part.PARTICIPANTS),
+                (ActivitiesPage) values.get(Part.ACTIVITIES),
+                (Summary) values.get(Part.BUILD_SUMMARY),
+                (InsightReportPage) values.get(Part.INSIGHT_REPORTS),
+                missing);
+    }
+
+    @Nullable
+    private static Object valueOf(final CompletableFuture<?> future) {
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            return future.join();
+        }
+        return null;
+    }
+
+    protected PullRequestSnapshots() {
+        throw new UnsupportedOperationException("Purposefully not implemented");
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.sync;
+
+import java.util.List;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.domain.activities.Activities;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Activities of a pull request not seen by a previous sync, along with the
+ * watermark to hand to the next one.
+ */
+@AutoValue
+public abstract class ActivityUpdates {
+
+    /**
+     * New activities, oldest first.
+     *
+     * @return new activities or an empty list if nothing happened.
+     */
+    public abstract List<Activities> activities();
+
+    /**
+     * Watermark to pass to the next sync.
+     *
+     * @return updated watermark or null if the pull request has no activities yet.
+     */
+    @Nullable
+    public abstract ActivityWatermark watermark();
+
+    /**
+     * Number of pages requested to find the new activities.
+     *
+     * @return number of pages requested.
+     */
+    public abstract int pagesFetched();
+
+    public static ActivityUpdates create(final List<Activities> activities,
+            @Nullable final ActivityWatermark watermark,
+            final int pagesFetched) {
+        return new AutoValue_ActivityUpdates(ImmutableList.copyOf(activities), watermark, pagesFetched);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.sync;
+
+import com.cdancy.bitbucket.rest.domain.activities.Activities;
+import com.google.auto.value.AutoValue;
+
+/**
+ * Newest activity of a pull request seen by a previous sync. Activities
+ * at, or older than, this point are not handed back again.
+ */
+@AutoValue
+public abstract class ActivityWatermark {
+
+    public abstract long activityId();
+
+    public abstract long createdDate();
+
+    /**
+     * Whether or not the passed activity was already seen by the sync which
+     * produced this watermark.
+     *
+     * @param activity the activity to check.
+     * @return true if the activity is this watermark or predates it.
+     */
+    public boolean covers(final Activities activity) {
+        return activity.id() == activityId() || activity.createdDate() < createdDate();
+    }
+
+    public static ActivityWatermark of(final Activities activity) {
+        return create(activity.id(), activity.createdDate());
+    }
+
+    public static ActivityWatermark create(final long activityId, final long createdDate) {
+        return new AutoValue_ActivityWatermark(activityId, createdDate);
+    }
+}
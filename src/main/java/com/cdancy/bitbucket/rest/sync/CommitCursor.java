@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.sync;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Progress of syncing the commits of a single ref.
+ *
+ * <p>`since` is the head of the ref as of the last completed sync. While a
+ * sync is in progress `until` pins the head it is working towards, so that
+ * the list of commits between the two never changes, and `start` is the
+ * offset of the next page to request. A sync interrupted part way through
+ * therefore resumes exactly where it left off.
+ */
+@AutoValue
+public abstract class CommitCursor {
+
+    /**
+     * Head of the ref as of the last completed sync.
+     *
+     * @return commit id or null if the ref was never fully synced.
+     */
+    @Nullable
+    public abstract String since();
+
+    /**
+     * Head of the ref the in-progress sync is working towards.
+     *
+     * @return commit id or null if no sync is in progress.
+     */
+    @Nullable
+    public abstract String until();
+
+    public abstract int start();
+
+    public boolean inProgress() {
+        return until() != null;
+    }
+
+    /**
+     * Cursor for a ref which was never synced.
+     *
+     * @return initial cursor.
+     */
+    public static CommitCursor initial() {
+        return create(null, null, 0);
+    }
+
+    public static CommitCursor create(@Nullable final String since, @Nullable final String until, final int start) {
+        return new AutoValue_CommitCursor(since, until, start);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.sync;
+
+import org.jclouds.javax.annotation.Nullable;
+
+/**
+ * Store of CommitCursor's keyed by project, repository, and ref.
+ * Implementations must be safe for concurrent use.
+ */
+public interface CommitCursorStore {
+
+    /**
+     * Look up the cursor saved for the passed ref.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param ref the branch, tag, or ref being synced.
+     * @return saved cursor or null if none.
+     */
+    @Nullable
+    CommitCursor load(String project, String repo, String ref);
+
+    /**
+     * Save, replacing any existing entry, the cursor of the passed ref.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param ref the branch, tag, or ref being synced.
+     * @param cursor the cursor to save.
+     */
+    void save(String project, String repo, String ref, CommitCursor cursor);
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.sync;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.cdancy.bitbucket.rest.domain.commit.Commit;
+import com.cdancy.bitbucket.rest.domain.commit.CommitPage;
+import com.cdancy.bitbucket.rest.exception.PageFetchException;
+import com.cdancy.bitbucket.rest.features.CommitsApi;
+
+/**
+ * Hands over only those commits of a ref which were added since its last
+ * sync, tracking progress through a {@link CommitCursorStore}.
+ *
+ * <p>A sync asks Bitbucket for the commits reachable from the head of the
+ * ref but not from the head recorded by the previous sync, pinning the new
+ * head as soon as the first page comes back. Commits are handed over in the
+ * order Bitbucket lists them (i.e. newest first) and the cursor is
+ * checkpointed after every page. Should a sync be interrupted, by an error or
+ * the process going away, the next one resumes at the first page not fully
+ * handed over, so commits are delivered at least once.
+ *
+ * <p>Should Bitbucket hand back a page with errors a {@link PageFetchException}
+ * is thrown and the cursor is left at the last checkpoint.
+ */
+public class CommitSync {
+
+    public static final int DEFAULT_PAGE_LIMIT = 100;
+
+    private final CommitsApi api;
+    private final CommitCursorStore store;
+    private final int pageLimit;
+
+    public CommitSync(final CommitsApi api, final CommitCursorStore store) {
+        this(api, store, DEFAULT_PAGE_LIMIT);
+    }
+
+    /**
+     * Create a CommitSync.
+     *
+     * @param api the CommitsApi to list commits through.
+     * @param store where cursors are loaded from and checkpointed to.
+     * @param pageLimit number of commits to request per page.
+     */
+    public CommitSync(final CommitsApi api, final CommitCursorStore store, final int pageLimit) {
+        this.api = Objects.requireNonNull(api, "api cannot be null");
+        this.store = Objects.requireNonNull(store, "store cannot be null");
+        if (pageLimit < 1) {
+            throw new IllegalArgumentException("pageLimit must be greater than 0: " + pageLimit);
+        }
+        this.pageLimit = pageLimit;
+    }
+
+    /**
+     * Hand over every commit added to the passed ref since its last sync.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param ref the branch, tag, or ref to sync.
+     * @param consumer receives each new commit.
+     * @return number of commits handed over.
+     */
+    public long sync(final String project, final String repo, final String ref, final Consumer<Commit> consumer) {
+        Objects.requireNonNull(consumer, "consumer cannot be null");
+
+        final CommitCursor saved = store.load(project, repo, ref);
+        CommitCursor cursor = saved != null ? saved : CommitCursor.initial();
+        long handedOver = 0;
+        while (true) {
+            final int start = cursor.start();
+            final CommitPage page = api.list(project, repo, null, null, null, null, null,
+                    cursor.since(), cursor.inProgress() ? cursor.until() : ref, pageLimit, start);
+            if (!page.errors().isEmpty()) {
+                throw new PageFetchException("Failed fetching commits of " + project + "/" + repo + " " + ref
+                        + " starting at " + start, page.errors());
+            }
+
+            if (!cursor.inProgress()) {
+                if (page.values().isEmpty()) {
+                    return handedOver;
+                }
+                cursor = CommitCursor.create(cursor.since(), page.values().get(0).id(), start);
+            }
+
+            for (final Commit commit : page.values()) {
+                consumer.accept(commit);
+                handedOver++;
+            }
+
+            // guard against a server that never reports the last page but
+            // also never moves the cursor forward.
+            if (page.isLastPage() || page.nextPageStart() <= start) {
+                store.save(project, repo, ref, CommitCursor.create(cursor.until(), null, 0));
+                return handedOver;
+            }
+            cursor = CommitCursor.create(cursor.since(), cursor.until(), page.nextPageStart());
+            store.save(project, repo, ref, cursor);
+        }
+    }
+
+    /**
+     * Cursor currently saved for the passed ref.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param ref the branch, tag, or ref being synced.
+     * @return saved cursor or the initial cursor if the ref was never synced.
+     */
+    public CommitCursor cursor(final String project, final String repo, final String ref) {
+        final CommitCursor saved = store.load(project, repo, ref);
+        return saved != null ? saved : CommitCursor.initial();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Properties;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+
+/**
+ * CommitCursorStore persisting every cursor to a single properties file.
+ *
+ * <p>Every save rewrites the file to a temporary sibling, forced to disk,
+ * which is then moved over the original, so a crash part way through a save
+ * leaves the previous cursors intact.
+ */
+public class FileCommitCursorStore implements CommitCursorStore {
+
+    private static final String SEPARATOR = ",";
+
+    private final Path file;
+    private final Properties cursors = new Properties();
+
+    /**
+     * Create a FileCommitCursorStore, loading any cursors already saved to the passed file.
+     *
+     * @param file where cursors are persisted.
+     */
+    public FileCommitCursorStore(final Path file) {
+        this.file = Objects.requireNonNull(file, "file cannot be null");
+        if (Files.exists(file)) {
+            try (final InputStream stream = Files.newInputStream(file)) {
+                cursors.load(stream);
+            } catch (final IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized CommitCursor load(final String project, final String repo, final String ref) {
+        final String value = cursors.getProperty(key(project, repo, ref));
+        if (value == null) {
+            return null;
+        }
+        final String[] parts = value.split(SEPARATOR, -1);
+        return CommitCursor.create(Strings.emptyToNull(parts[0]),
+                Strings.emptyToNull(parts[1]),
+                Integer.parseInt(parts[2]));
+    }
+
+    @Override
+    public synchronized void save(final String project, final String repo, final String ref, final CommitCursor cursor) {
+        cursors.setProperty(key(project, repo, ref), Strings.nullToEmpty(cursor.since())
+                + SEPARATOR + Strings.nullToEmpty(cursor.until())
+                + SEPARATOR + cursor.start());
+        try {
+            final Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (final FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // store flushes its writer once done, the stream itself is unbuffered
+                cursors.store(Channels.newOutputStream(channel), null);
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    private static String key(final String project, final String repo, final String ref) {
+        return project + "/" + repo + "/" + ref;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.sync;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.domain.activities.Activities;
+import com.cdancy.bitbucket.rest.features.PullRequestApi;
+import com.cdancy.bitbucket.rest.pagination.PagedIterable;
+import com.cdancy.bitbucket.rest.pagination.PagedIterable.PagedIterator;
+import com.google.common.collect.Lists;
+
+/**
+ * Reads only those activities of a pull request which happened since a
+ * previous read.
+ *
+ * <p>Bitbucket hands back activities newest first, so pages are walked only
+ * until an activity covered by the passed {@link ActivityWatermark} shows up.
+ * As most polls find few, if any, new activities the first page requested is
+ * kept small with any further pages requested at the regular size.
+ *
+ * <p>Should Bitbucket hand back a page with errors a
+ * {@link com.cdancy.bitbucket.rest.exception.PageFetchException} is thrown
+ * and the caller's watermark should be kept as is.
+ */
+public class IncrementalActivityReader {
+
+    public static final int DEFAULT_FIRST_PAGE_LIMIT = 10;
+    public static final int DEFAULT_PAGE_LIMIT = 100;
+
+    private final PullRequestApi api;
+    private final int firstPageLimit;
+    private final int pageLimit;
+
+    public IncrementalActivityReader(final PullRequestApi api) {
+        this(api, DEFAULT_FIRST_PAGE_LIMIT, DEFAULT_PAGE_LIMIT);
+    }
+
+    /**
+     * Create an IncrementalActivityReader.
+     *
+     * @param api the PullRequestApi to read activities through.
+     * @param firstPageLimit number of activities to request on the first page.
+     * @param pageLimit number of activities to request on every following page.
+     */
+    public IncrementalActivityReader(final PullRequestApi api, final int firstPageLimit, final int pageLimit) {
+        this.api = Objects.requireNonNull(api, "api cannot be null");
+        if (firstPageLimit < 1 || pageLimit < 1) {
+            throw new IllegalArgumentException("page limits must be greater than 0: " + firstPageLimit + ", " + pageLimit);
+        }
+        this.firstPageLimit = firstPageLimit;
+        this.pageLimit = pageLimit;
+    }
+
+    /**
+     * Read the activities of the passed pull request not covered by `since`.
+     *
+     * @param project the project key.
+     * @param repo the repository slug.
+     * @param pullRequestId the id of the pull request.
+     * @param since watermark handed back by the previous read or null to read
+     *     the entire history.
+     * @return new activities along with the updated watermark.
+     */
+    public ActivityUpdates read(final String project,
+            final String repo,
+            final long pullRequestId,
+            @Nullable final ActivityWatermark since) {
+        final AtomicInteger pagesFetched = new AtomicInteger();
+        final PagedIterable<Activities> activities = PagedIterable.sequential(start -> {
+            pagesFetched.incrementAndGet();
+            return api.listActivities(project, repo, pullRequestId, start == 0 ? firstPageLimit : pageLimit, start);
+        });
+
+        final List<Activities> newestFirst = Lists.newArrayList();
+        try (final PagedIterator<Activities> iterator = activities.iterator()) {
+            while (iterator.hasNext()) {
+                final Activities activity = iterator.next();
+                if (since != null && since.covers(activity)) {
+                    break;
+                }
+                newestFirst.add(activity);
+            }
+        }
+
+        final ActivityWatermark watermark = newestFirst.isEmpty()
+                ? since
+                : ActivityWatermark.of(newestFirst.get(0));
+        return ActivityUpdates.create(Lists.reverse(newestFirst), watermark, pagesFetched.get());
+    }
+}
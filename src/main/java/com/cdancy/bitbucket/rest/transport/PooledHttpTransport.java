@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.transport;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.okhttp.OkHttpClientSupplier;
+import org.jclouds.http.okhttp.OkHttpCommandExecutorService;
+import org.jclouds.http.okhttp.config.OkHttpCommandExecutorServiceModule;
+import org.jclouds.javax.annotation.Nullable;
+
+import com.cdancy.bitbucket.rest.interceptors.ConnectionLimitInterceptor;
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+
+/**
+ * OkHttp based transport whose keep-alive connections are pooled and
+ * reused across requests rather than re-established, along with their TLS
+ * handshake, each time. A single PooledHttpTransport may be handed to any
+ * number of clients in which case they all share the same pool and, if
+ * set, the same per-route connection cap.
+ */
+public final class PooledHttpTransport {
+
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 32;
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final int maxIdleConnections;
+    private final long keepAliveMillis;
+    private final ConnectionPool pool;
+    @Nullable
+    private final ConnectionLimitInterceptor connectionLimit;
+
+    private PooledHttpTransport(final int maxIdleConnections, final long keepAliveMillis, final int maxConnectionsPerRoute) {
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAliveMillis = keepAliveMillis;
+        this.pool = new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS);
+        this.connectionLimit = maxConnectionsPerRoute > 0
+                ? new ConnectionLimitInterceptor(maxConnectionsPerRoute)
+                : null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Module configuring the OkHttp transport to use this pool.
+     *
+     * @return transport Module.
+     */
+    public Module transportModule() {
+        return new AbstractModule() {
+            @Override
+            protected void configure() {
+                install(new OkHttpCommandExecutorServiceModule());
+                bind(OkHttpClientSupplier.class).toInstance(new PooledClientSupplier(pool));
+            }
+        };
+    }
+
+    /**
+     * HttpCommandExecutorService configured by {@link #transportModule()}.
+     *
+     * @return transport type.
+     */
+    public Class<? extends HttpCommandExecutorService> transportType() {
+        return OkHttpCommandExecutorService.class;
+    }
+
+    /**
+     * Interceptor capping the number of requests concurrently in flight per
+     * route, shared by every client using this transport.
+     *
+     * @return ConnectionLimitInterceptor or null if unbounded.
+     */
+    @Nullable
+    public ConnectionLimitInterceptor connectionLimit() {
+        return connectionLimit;
+    }
+
+    /**
+     * Number of connections, both in use and idle, currently held by the pool.
+     *
+     * @return number of pooled connections.
+     */
+    public int connectionCount() {
+        return pool.getConnectionCount();
+    }
+
+    /**
+     * Number of connections currently idle and available for reuse.
+     *
+     * @return number of idle connections.
+     */
+    public int idleConnectionCount() {
+        return pool.getIdleConnectionCount();
+    }
+
+    /**
+     * Number of further requests which could currently be sent to the passed
+     * route without waiting on the per-route cap.
+     *
+     * @param endpoint any URI pointing at the route in question.
+     * @return number of available permits or Integer.MAX_VALUE if unbounded.
+     */
+    public int availablePermits(final URI endpoint) {
+        return connectionLimit != null ? connectionLimit.availablePermits(endpoint) : Integer.MAX_VALUE;
+    }
+
+    public int maxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public long keepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * Close, and remove from the pool, every idle connection.
+     */
+    public void evictAll() {
+        pool.evictAll();
+    }
+
+    public static class Builder {
+
+        private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+        private long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+        private int maxConnectionsPerRoute;
+
+        /**
+         * Maximum number of idle connections kept around for reuse.
+         *
+         * @param maxIdleConnections maximum number of idle connections.
+         * @return this Builder.
+         */
+        public Builder maxIdleConnections(final int maxIdleConnections) {
+            if (maxIdleConnections < 0) {
+                throw new IllegalArgumentException("maxIdleConnections cannot be negative: " + maxIdleConnections);
+            }
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        /**
+         * How long a connection may sit idle before being evicted.
+         *
+         * @param idleTimeout how long idle connections are kept.
+         * @param unit unit of `idleTimeout`.
+         * @return this Builder.
+         */
+        public Builder idleTimeout(final long idleTimeout, final TimeUnit unit) {
+            if (idleTimeout < 1) {
+                throw new IllegalArgumentException("idleTimeout must be greater than 0: " + idleTimeout);
+            }
+            this.keepAliveMillis = unit.toMillis(idleTimeout);
+            return this;
+        }
+
+        /**
+         * Optional cap on the number of requests concurrently in flight per
+         * route (i.e. scheme, host, and port). Unbounded by default.
+         *
+         * @param maxConnectionsPerRoute maximum number of concurrent requests per route.
+         * @return this Builder.
+         */
+        public Builder maxConnectionsPerRoute(final int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+
+        public PooledHttpTransport build() {
+            return new PooledHttpTransport(maxIdleConnections, keepAliveMillis, maxConnectionsPerRoute);
+        }
+    }
+
+    private static final class PooledClientSupplier implements OkHttpClientSupplier {
+
+        private final ConnectionPool pool;
+
+        PooledClientSupplier(final ConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public OkHttpClient get() {
+            final OkHttpClient client = new OkHttpClient();
+            client.setConnectionPool(pool);
+            return client;
+        }
+    }
+}
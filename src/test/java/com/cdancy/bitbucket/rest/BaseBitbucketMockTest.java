@@ -78,6 +78,20 @@ public class BaseBitbucketMockTest {
                 .buildApi(BitbucketApi.class);
     }
 
+    /**
+     * Create BitbucketClient.Builder, pointed at the passed URL, to which
+     * further options can be added.
+     *
+     * @param url endpoint of instance.
+     * @return instance of BitbucketClient.Builder.
+     */
+    public BitbucketClient.Builder clientBuilder(final URL url) {
+        return BitbucketClient.builder()
+                .endPoint(url.toString())
+                .credentials("hello:world")
+                .overrides(setupProperties());
+    }
+
     protected Properties setupProperties() {
         final Properties properties = new Properties();
         properties.setProperty(Constants.PROPERTY_MAX_RETRIES, "0");
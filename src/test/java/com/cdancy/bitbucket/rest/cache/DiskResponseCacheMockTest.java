@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.domain.file.RawContent;
+import com.google.common.collect.ImmutableMultimap;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link DiskResponseCache} class.
+ */
+@Test(groups = "unit", testName = "DiskResponseCacheMockTest")
+public class DiskResponseCacheMockTest extends BaseBitbucketMockTest {
+
+    private final String commitHash = "abcdef0123abcdef4567abcdef8987abcdef6543";
+
+    public void testSurvivesRestart() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final Path directory = Files.createTempDirectory("bitbucket-rest-cache-");
+
+        server.enqueue(new MockResponse().setBody("Hello, World!").setResponseCode(200));
+        try {
+            try (final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024);
+                    final BitbucketClient client = clientBuilder(server.getUrl("/")).immutableResponseCache(cache).build()) {
+                final RawContent content = client.api().fileApi().raw("PRJ", "myrepo", "README.md", commitHash);
+                assertThat(content.value()).isEqualTo("Hello, World!");
+            }
+
+            try (final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024);
+                    final BitbucketClient client = clientBuilder(server.getUrl("/")).immutableResponseCache(cache).build()) {
+                final RawContent content = client.api().fileApi().raw("PRJ", "myrepo", "README.md", commitHash);
+                assertThat(content.value()).isEqualTo("Hello, World!");
+                assertThat(cache.hits()).isEqualTo(1);
+            }
+
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            delete(directory);
+            server.shutdown();
+        }
+    }
+
+    public void testInvalidateSurvivesRestart() throws Exception {
+        final Path directory = Files.createTempDirectory("bitbucket-rest-cache-");
+        try {
+            try (final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024)) {
+                cache.put("one", response("1"));
+                cache.put("two", response("2"));
+                cache.invalidate("one");
+            }
+            try (final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024)) {
+                assertThat(cache.size()).isEqualTo(1);
+                assertThat(cache.get("one")).isNull();
+                assertThat(new String(cache.get("two").body(), UTF_8)).isEqualTo("2");
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    public void testEnforcesMaxBytes() throws Exception {
+        final Path directory = Files.createTempDirectory("bitbucket-rest-cache-");
+        try (final DiskResponseCache cache = new DiskResponseCache(directory, 4096, 1024)) {
+            final String body = new String(new char[512]).replace('\0', 'x');
+            for (int i = 0; i < 32; i++) {
+                cache.put("key-" + i, response(body));
+            }
+
+            assertThat(cache.bytesOnDisk()).isLessThanOrEqualTo(4096);
+            assertThat(cache.evictions()).isGreaterThan(0);
+            assertThat(cache.get("key-0")).isNull();
+            assertThat(new String(cache.get("key-31").body(), UTF_8)).isEqualTo(body);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    public void testCompactReclaimsGarbage() throws Exception {
+        final Path directory = Files.createTempDirectory("bitbucket-rest-cache-");
+        try (final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024, 1024)) {
+            for (int i = 0; i < 16; i++) {
+                cache.put("same-key", response("version-" + i));
+            }
+            final long before = cache.bytesOnDisk();
+            cache.compact();
+
+            assertThat(cache.bytesOnDisk()).isLessThan(before);
+            assertThat(cache.size()).isEqualTo(1);
+            assertThat(new String(cache.get("same-key").body(), UTF_8)).isEqualTo("version-15");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    public void testOversizedResponseInvalidatesKey() throws Exception {
+        final Path directory = Files.createTempDirectory("bitbucket-rest-cache-");
+        try (final DiskResponseCache cache = new DiskResponseCache(directory, 1024)) {
+            cache.put("key", response("small"));
+            cache.put("key", response(new String(new char[2048]).replace('\0', 'x')));
+
+            // rather than serving the previous, now outdated, response
+            assertThat(cache.get("key")).isNull();
+        } finally {
+            delete(directory);
+        }
+    }
+
+    public void testSurvivesInterruptedCallers() throws Exception {
+        final Path directory = Files.createTempDirectory("bitbucket-rest-cache-");
+        try (final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024)) {
+            Thread.currentThread().interrupt();
+            try {
+                cache.put("one", response("1"));
+                assertThat(new String(cache.get("one").body(), UTF_8)).isEqualTo("1");
+            } finally {
+                assertThat(Thread.interrupted()).isTrue();
+            }
+
+            cache.put("two", response("2"));
+            assertThat(new String(cache.get("one").body(), UTF_8)).isEqualTo("1");
+            assertThat(new String(cache.get("two").body(), UTF_8)).isEqualTo("2");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    public void testKeepsStoredResponseWhenMakingRoomFails() throws Exception {
+        final Path directory = Files.createTempDirectory("bitbucket-rest-cache-");
+        try (final DiskResponseCache cache = new DiskResponseCache(directory, 1700, 1024)) {
+            // segment 0 holds a, b, and c (277 bytes each), segment 1 holds d, a, and b
+            for (final String key : new String[] {"a", "b", "c", "d", "a", "b"}) {
+                cache.put(key, response(repeat(key, 200)));
+            }
+
+            // e (99 bytes) still fits segment 1 but takes the cache over its max, compacting
+            // segment 0 must then copy c forward to a new segment which cannot be created
+            final Path blocker = Files.createDirectory(directory.resolve("segment-2.dat"));
+            cache.put("e", response(repeat("e", 20)));
+            assertThat(new String(cache.get("e").body(), UTF_8)).isEqualTo(repeat("e", 20));
+            assertThat(new String(cache.get("c").body(), UTF_8)).isEqualTo(repeat("c", 200));
+
+            Files.delete(blocker);
+            cache.put("f", response(repeat("f", 20)));
+            assertThat(cache.bytesOnDisk()).isLessThanOrEqualTo(1700);
+            assertThat(new String(cache.get("c").body(), UTF_8)).isEqualTo(repeat("c", 200));
+            assertThat(cache.size()).isEqualTo(6);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    public void testUnwrittenTombstoneSurvivesRestart() throws Exception {
+        final Path directory = Files.createTempDirectory("bitbucket-rest-cache-");
+        try {
+            // a segment per record
+            try (final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024, 1)) {
+                cache.put("one", response("1"));
+                cache.put("two", response("2"));
+
+                final Path blocker = Files.createDirectory(directory.resolve("segment-2.dat"));
+                cache.invalidate("one");
+                assertThat(cache.get("one")).isNull();
+
+                Files.delete(blocker);
+                cache.put("three", response("3"));
+            }
+            try (final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024, 1)) {
+                assertThat(cache.get("one")).isNull();
+                assertThat(new String(cache.get("two").body(), UTF_8)).isEqualTo("2");
+                assertThat(new String(cache.get("three").body(), UTF_8)).isEqualTo("3");
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    public void testInvalidateAllSurvivesWriteFailures() throws Exception {
+        final Path directory = Files.createTempDirectory("bitbucket-rest-cache-");
+        try (final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024)) {
+            cache.put("one", response("1"));
+            cache.put("two", response("2"));
+
+            final Path blocker = Files.createDirectory(directory.resolve("segment-1.dat"));
+            cache.invalidateAll();
+            assertThat(cache.size()).isEqualTo(0);
+            assertThat(cache.get("one")).isNull();
+
+            cache.put("three", response("3"));
+            assertThat(cache.get("three")).isNull();
+
+            Files.delete(blocker);
+            cache.put("three", response("3"));
+            assertThat(new String(cache.get("three").body(), UTF_8)).isEqualTo("3");
+            assertThat(cache.get("one")).isNull();
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static CachedResponse response(final String body) {
+        return CachedResponse.create(200, "OK", ImmutableMultimap.of("ETag", "\"" + body.hashCode() + "\""),
+                "text/plain", body.getBytes(UTF_8), System.currentTimeMillis());
+    }
+
+    private static String repeat(final String value, final int times) {
+        return new String(new char[times]).replace("\0", value);
+    }
+
+    private static void delete(final Path directory) throws IOException {
+        try (final Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
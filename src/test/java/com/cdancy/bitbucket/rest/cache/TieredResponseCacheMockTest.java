@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.google.common.collect.ImmutableMultimap;
+
+/**
+ * Mock tests for the {@link TieredResponseCache} class.
+ */
+@Test(groups = "unit", testName = "TieredResponseCacheMockTest")
+public class TieredResponseCacheMockTest extends BaseBitbucketMockTest {
+
+    public void testPromotesFromSecondTier() {
+        final InMemoryResponseCache first = new InMemoryResponseCache();
+        final InMemoryResponseCache second = new InMemoryResponseCache();
+        final TieredResponseCache cache = new TieredResponseCache(first, second);
+
+        second.put("key", response("Hello"));
+        assertThat(first.get("key")).isNull();
+
+        assertThat(new String(cache.get("key").body(), UTF_8)).isEqualTo("Hello");
+        assertThat(new String(first.get("key").body(), UTF_8)).isEqualTo("Hello");
+        assertThat(cache.get("missing")).isNull();
+        assertThat(first.size()).isEqualTo(1);
+    }
+
+    public void testWritesAndInvalidatesBothTiers() {
+        final InMemoryResponseCache first = new InMemoryResponseCache();
+        final InMemoryResponseCache second = new InMemoryResponseCache();
+        final TieredResponseCache cache = new TieredResponseCache(first, second);
+
+        cache.put("one", response("1"));
+        cache.put("two", response("2"));
+        assertThat(first.size()).isEqualTo(2);
+        assertThat(second.size()).isEqualTo(2);
+
+        cache.invalidate("one");
+        assertThat(first.get("one")).isNull();
+        assertThat(second.get("one")).isNull();
+        assertThat(cache.get("one")).isNull();
+        assertThat(cache.size()).isEqualTo(1);
+
+        cache.invalidateAll();
+        assertThat(first.size()).isEqualTo(0);
+        assertThat(second.size()).isEqualTo(0);
+        assertThat(cache.get("two")).isNull();
+    }
+
+    private static CachedResponse response(final String body) {
+        return CachedResponse.create(200, "OK", ImmutableMultimap.<String, String>of(),
+                "text/plain", body.getBytes(UTF_8), System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.crawl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.crawl.RepositoryCrawler.Expansion;
+import com.cdancy.bitbucket.rest.exception.PageFetchException;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * Mock tests for the {@link RepositoryCrawler} class.
+ */
+@Test(groups = "unit", testName = "RepositoryCrawlerMockTest")
+public class RepositoryCrawlerMockTest extends BaseBitbucketMockTest {
+
+    public void testCrawlEveryRepository() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.setDispatcher(new CrawlDispatcher(false));
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final List<CrawledRepository> crawled = new CopyOnWriteArrayList<>();
+            final long count = RepositoryCrawler.builder(baseApi)
+                    .parallelism(4)
+                    .expand(Expansion.DEFAULT_BRANCH, Expansion.HOOKS)
+                    .build()
+                    .crawl(crawled::add)
+                    .get(30, TimeUnit.SECONDS);
+
+            assertThat(count).isEqualTo(4);
+            assertThat(crawled.stream().map(repository -> repository.repository().slug()).collect(Collectors.toList()))
+                    .containsExactlyInAnyOrder("repo-1", "repo-2", "repo-3", "my-repo");
+            for (final CrawledRepository repository : crawled) {
+                assertThat(repository.defaultBranch().displayId()).isEqualTo("master");
+                assertThat(repository.hooks().values()).isNotEmpty();
+                assertThat(repository.userPermissions()).isNull();
+                assertThat(repository.groupPermissions()).isNull();
+            }
+
+            // 2 pages of projects, 1 page of repositories for each of the 2 projects, 2 expansions of 4 repositories
+            assertThat(server.getRequestCount()).isEqualTo(12);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testCrawlWithoutExpansions() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.setDispatcher(new CrawlDispatcher(false));
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final List<CrawledRepository> crawled = new CopyOnWriteArrayList<>();
+            final long count = RepositoryCrawler.builder(baseApi)
+                    .parallelism(1)
+                    .build()
+                    .crawl(crawled::add)
+                    .get(30, TimeUnit.SECONDS);
+
+            assertThat(count).isEqualTo(4);
+            assertThat(crawled).allMatch(repository -> repository.defaultBranch() == null);
+            assertThat(server.getRequestCount()).isEqualTo(4);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testCrawlFailsOnPageWithErrors() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.setDispatcher(new CrawlDispatcher(true));
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            try {
+                RepositoryCrawler.builder(baseApi)
+                        .build()
+                        .crawl(repository -> { })
+                        .get(30, TimeUnit.SECONDS);
+                fail("Expected the crawl to fail");
+            } catch (final ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(PageFetchException.class);
+                assertThat(((PageFetchException) e.getCause()).errors()).isNotEmpty();
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testCrawlStopsRequestingAfterPageWithErrors() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.setDispatcher(new CrawlDispatcher(true));
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final List<CrawledRepository> crawled = new CopyOnWriteArrayList<>();
+            try {
+                RepositoryCrawler.builder(baseApi)
+                        .parallelism(1)
+                        .expand(Expansion.DEFAULT_BRANCH)
+                        .build()
+                        .crawl(crawled::add)
+                        .get(30, TimeUnit.SECONDS);
+                fail("Expected the crawl to fail");
+            } catch (final ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(PageFetchException.class);
+            }
+
+            // 2 pages of projects and the repositories of PRJ1 and PRJ2, the
+            // default branches of PRJ1's repositories were queued behind PRJ2
+            // and must never be requested.
+            assertThat(server.getRequestCount()).isEqualTo(4);
+            assertThat(crawled).isEmpty();
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Serves 2 pages of projects, PRJ1 with 3 repositories and PRJ2 with 1.
+     */
+    private class CrawlDispatcher extends Dispatcher {
+
+        private final boolean failSecondProject;
+
+        CrawlDispatcher(final boolean failSecondProject) {
+            this.failSecondProject = failSecondProject;
+        }
+
+        @Override
+        public MockResponse dispatch(final RecordedRequest request) {
+            final String path = request.getPath();
+            if (path.contains("/branches/default")) {
+                return ok("/branch-default.json");
+            } else if (path.contains("/settings/hooks")) {
+                return ok("/repository-hooks.json");
+            } else if (path.contains("/projects/PRJ1/repos")) {
+                return ok("/repository-page-full.json");
+            } else if (path.contains("/projects/PRJ2/repos")) {
+                return failSecondProject
+                        ? new MockResponse().setBody(payloadFromResource("/project-not-exist.json")).setResponseCode(404)
+                        : ok("/repository-page-single.json");
+            } else if (path.contains("/projects?") && path.contains("start=0")) {
+                return ok("/project-page-truncated.json");
+            } else if (path.contains("/projects?")) {
+                return new MockResponse().setBody("{\"size\": 0, \"limit\": 2, \"start\": 2, \"isLastPage\": true, \"values\": []}")
+                        .setResponseCode(200);
+            }
+            return new MockResponse().setResponseCode(404);
+        }
+
+        private MockResponse ok(final String resource) {
+            return new MockResponse().setBody(payloadFromResource(resource)).setResponseCode(200);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.features;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketAsyncApi;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.domain.pullrequest.MergeStatus;
+import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequest;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link BitbucketAsyncApi} class.
+ */
+@Test(groups = "unit", testName = "BitbucketAsyncApiMockTest")
+public class BitbucketAsyncApiMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+
+    public void testGetPullRequest() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request.json")).setResponseCode(200));
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).build()) {
+            final PullRequest pr = client.asyncApi()
+                    .pullRequestApi(api -> api.get(projectKey, repoKey, 101))
+                    .get();
+
+            assertThat(pr).isNotNull();
+            assertThat(pr.errors()).isEmpty();
+            assertThat(pr.id()).isEqualTo(101);
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testGetPullRequestFallsBack() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-not-exist.json")).setResponseCode(404));
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).build()) {
+            final PullRequest pr = client.asyncApi()
+                    .pullRequestApi(api -> api.get(projectKey, repoKey, 101))
+                    .get();
+
+            assertThat(pr).isNotNull();
+            assertThat(pr.errors()).isNotEmpty();
+            assertThat(pr.errors().get(0).exceptionName()).endsWith("NoSuchPullRequestException");
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testBoundedInFlightRequests() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final int requests = 6;
+        for (int i = 0; i < requests; i++) {
+            server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-can-merge-succeed.json")).setResponseCode(200));
+        }
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).maxAsyncRequests(2).build()) {
+            final BitbucketAsyncApi asyncApi = client.asyncApi();
+            final List<CompletableFuture<MergeStatus>> futures = IntStream.range(0, requests)
+                    .mapToObj(index -> asyncApi.pullRequestApi(api -> api.canMerge(projectKey, repoKey, 101)))
+                    .collect(Collectors.toList());
+
+            assertThat(asyncApi.inFlight()).isLessThanOrEqualTo(2);
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+            for (final CompletableFuture<MergeStatus> future : futures) {
+                assertThat(future.get().canMerge()).isTrue();
+            }
+            assertThat(asyncApi.queued()).isEqualTo(0);
+            assertThat(server.getRequestCount()).isEqualTo(requests);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testCloseFailsQueuedCalls() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final int requests = 5;
+        for (int i = 0; i < requests; i++) {
+            server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-can-merge-succeed.json"))
+                    .setBodyDelay(300, TimeUnit.MILLISECONDS)
+                    .setResponseCode(200));
+        }
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).build()) {
+            final BitbucketAsyncApi asyncApi = new BitbucketAsyncApi(client.api(), null, 1);
+            final List<CompletableFuture<MergeStatus>> futures = IntStream.range(0, requests)
+                    .mapToObj(index -> asyncApi.pullRequestApi(api -> api.canMerge(projectKey, repoKey, 101)))
+                    .collect(Collectors.toList());
+            asyncApi.close();
+
+            // every call completes, be it the one running or those failed for having been queued
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .handle((ignored, error) -> null)
+                    .get(10, TimeUnit.SECONDS);
+            assertThat(futures.get(0).get().canMerge()).isTrue();
+            for (final CompletableFuture<MergeStatus> future : futures.subList(1, requests)) {
+                try {
+                    future.get();
+                    fail("Expected queued call to be rejected");
+                } catch (final ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+                }
+            }
+            assertThat(asyncApi.queued()).isEqualTo(0);
+            assertThat(server.getRequestCount()).isEqualTo(1);
+
+            // as is every call made once closed
+            try {
+                asyncApi.pullRequestApi(api -> api.canMerge(projectKey, repoKey, 101)).get(10, TimeUnit.SECONDS);
+                fail("Expected call made once closed to be rejected");
+            } catch (final ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+}
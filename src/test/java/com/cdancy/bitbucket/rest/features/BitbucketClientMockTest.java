@@ -19,10 +19,21 @@ package com.cdancy.bitbucket.rest.features;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.jclouds.http.HttpResponse;
 import org.testng.annotations.Test;
 
 import com.cdancy.bitbucket.rest.BitbucketClient;
 import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.domain.pullrequest.MergeStatus;
+import com.cdancy.bitbucket.rest.interceptors.HttpCommandInterceptor;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
 
 @Test(groups = "unit", testName = "BitbucketClientMockTest")
 public class BitbucketClientMockTest extends BaseBitbucketMockTest {
@@ -32,4 +43,64 @@ public class BitbucketClientMockTest extends BaseBitbucketMockTest {
         final BitbucketClient client = BitbucketClient.builder().build();
         assertThat(client).isNotNull();
     }
+
+    public void testVirtualThreadsWithConnectionCap() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final int requests = 8;
+        for (int i = 0; i < requests; i++) {
+            server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-can-merge-succeed.json")).setResponseCode(200));
+        }
+
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final HttpCommandInterceptor tracker = (command, next) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                return next.invoke(command);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        };
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/"))
+                .virtualThreads(true)
+                .maxConnectionsPerEndpoint(2)
+                .interceptors(tracker)
+                .build()) {
+            final List<CompletableFuture<MergeStatus>> futures = IntStream.range(0, requests)
+                    .mapToObj(index -> client.asyncApi().pullRequestApi(api -> api.canMerge("PRJ", "my-repo", 101)))
+                    .collect(Collectors.toList());
+            for (final CompletableFuture<MergeStatus> future : futures) {
+                assertThat(future.get().canMerge()).isTrue();
+            }
+
+            assertThat(maxInFlight.get()).isBetween(1, 2);
+            assertThat(server.getRequestCount()).isEqualTo(requests);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testInterceptorSeesEveryCommand() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-can-merge-succeed.json")).setResponseCode(200));
+
+        final AtomicInteger commands = new AtomicInteger();
+        final HttpCommandInterceptor counter = (command, next) -> {
+            commands.incrementAndGet();
+            final HttpResponse response = next.invoke(command);
+            assertThat(response.getStatusCode()).isEqualTo(200);
+            return response;
+        };
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(counter).build()) {
+            final MergeStatus status = client.api().pullRequestApi().canMerge("PRJ", "my-repo", 101);
+            assertThat(status.canMerge()).isTrue();
+            assertThat(commands.get()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
 }
@@ -21,16 +21,27 @@ import com.cdancy.bitbucket.rest.BitbucketApi;
 import com.cdancy.bitbucket.rest.BitbucketApiMetadata;
 import com.cdancy.bitbucket.rest.domain.commit.Commit;
 import com.cdancy.bitbucket.rest.domain.file.LastModified;
+import com.cdancy.bitbucket.rest.domain.file.Line;
 import com.cdancy.bitbucket.rest.domain.file.LinePage;
 import com.cdancy.bitbucket.rest.domain.file.RawContent;
+import com.cdancy.bitbucket.rest.domain.file.RawContentStream;
 import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
 import com.cdancy.bitbucket.rest.domain.file.FilesPage;
+import com.cdancy.bitbucket.rest.pagination.PageSummary;
+import com.cdancy.bitbucket.rest.pagination.StreamingPage;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import okio.Buffer;
 import org.testng.annotations.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -97,6 +108,97 @@ public class FileApiMockTest extends BaseBitbucketMockTest {
         }
     }
     
+    public void testStreamLines() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/line-page.json")).setResponseCode(200));
+        final BitbucketApi baseApi = api(server.getUrl("/"));
+        final FileApi api = baseApi.fileApi();
+        try {
+
+            final List<String> lines = new ArrayList<>();
+            final StreamingPage<Line> page = api.streamLines(projectKey, repoKey, filePath, null, null, 1000);
+            final PageSummary summary = page.forEach(line -> lines.add(line.text()));
+            assertThat(summary.errors().isEmpty()).isTrue();
+            assertThat(summary.isLastPage()).isTrue();
+            assertThat(summary.limit()).isEqualTo(25);
+            assertThat(lines).containsExactly("BEARS");
+            assertSent(server, getMethod, browsePath + filePath, ImmutableMap.of("limit", 1000));
+        } finally {
+            baseApi.close();
+            server.shutdown();
+        }
+    }
+
+    public void testGetContentStream() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final byte[] binary = {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0x00, (byte) 0xFF};
+        server.enqueue(new MockResponse().setBody(new Buffer().write(binary)).setResponseCode(200));
+        final BitbucketApi baseApi = api(server.getUrl("/"));
+        final FileApi api = baseApi.fileApi();
+        try (final RawContentStream rawContent = api.rawStream(projectKey, repoKey, filePath, null)) {
+
+            assertThat(rawContent).isNotNull();
+            assertThat(rawContent.errors().isEmpty()).isTrue();
+            try (final InputStream stream = rawContent.value()) {
+                assertThat(ByteStreams.toByteArray(stream)).isEqualTo(binary);
+            }
+            assertSentAcceptText(server, getMethod, rawPath + filePath);
+
+        } finally {
+            baseApi.close();
+            server.shutdown();
+        }
+    }
+
+    public void testGetContentStreamTransferTo() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final byte[] binary = new byte[3 * 1024 * 1024 + 7];
+        for (int i = 0; i < binary.length; i++) {
+            binary[i] = (byte) i;
+        }
+        server.enqueue(new MockResponse().setBody(new Buffer().write(binary)).setResponseCode(200));
+        final BitbucketApi baseApi = api(server.getUrl("/"));
+        final FileApi api = baseApi.fileApi();
+        final Path target = Files.createTempFile("bitbucket-rest-raw-", ".bin");
+        try {
+
+            final RawContentStream rawContent = api.rawStream(projectKey, repoKey, filePath, "master");
+            assertThat(rawContent.errors().isEmpty()).isTrue();
+            assertThat(rawContent.transferTo(target)).isEqualTo(binary.length);
+            assertThat(Files.readAllBytes(target)).isEqualTo(binary);
+            assertSentAcceptText(server, getMethod, rawPath + filePath + "?at=master");
+
+        } finally {
+            Files.deleteIfExists(target);
+            baseApi.close();
+            server.shutdown();
+        }
+    }
+
+    public void testGetContentStreamOnNotFound() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody("<html>randomString</html>").setResponseCode(404));
+        final BitbucketApi baseApi = api(server.getUrl("/"));
+        final FileApi api = baseApi.fileApi();
+        try (final RawContentStream rawContent = api.rawStream(projectKey, repoKey, filePath, null)) {
+
+            assertThat(rawContent).isNotNull();
+            assertThat(rawContent.value()).isNull();
+            assertThat(rawContent.channel()).isNull();
+            assertThat(rawContent.errors().isEmpty()).isFalse();
+            assertThat(rawContent.errors().get(0).message()).isEqualTo("Failed retrieving raw content");
+            assertSentAcceptText(server, getMethod, rawPath + filePath);
+
+        } finally {
+            baseApi.close();
+            server.shutdown();
+        }
+    }
+
     public void testListLines() throws Exception {
         final MockWebServer server = mockWebServer();
 
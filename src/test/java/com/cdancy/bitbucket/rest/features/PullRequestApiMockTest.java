@@ -19,6 +19,8 @@ package com.cdancy.bitbucket.rest.features;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import com.cdancy.bitbucket.rest.domain.activities.ActivitiesPage;
@@ -33,6 +35,8 @@ import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequestPage;
 import com.cdancy.bitbucket.rest.domain.common.Reference;
 import com.cdancy.bitbucket.rest.domain.pullrequest.User;
 import com.cdancy.bitbucket.rest.options.CreateParticipants;
+import com.cdancy.bitbucket.rest.pagination.PageSummary;
+import com.cdancy.bitbucket.rest.pagination.StreamingPage;
 import org.testng.annotations.Test;
 
 import com.cdancy.bitbucket.rest.BitbucketApi;
@@ -512,6 +516,55 @@ public class PullRequestApiMockTest extends BaseBitbucketMockTest {
         }
     }
 
+    public void testStreamPullRequestActivities() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-activities.json"))
+                .setResponseCode(200));
+        final BitbucketApi baseApi = api(server.getUrl("/"));
+        final PullRequestApi api = baseApi.pullRequestApi();
+        try {
+
+            final List<Activities> activities = new ArrayList<>();
+            final StreamingPage<Activities> page = api.streamActivities(projectKey, repoKey, 1, 5, 0);
+            assertThat(page.errors()).isEmpty();
+
+            final PageSummary summary = page.forEach(activities::add);
+            assertThat(summary.errors()).isEmpty();
+            assertThat(summary.size()).isEqualTo(3);
+            assertThat(activities).hasSize(3);
+            assertThat(activities.get(1).id()).isEqualTo(29733L);
+
+            final Map<String, ?> queryParams = ImmutableMap.of(startKeyword, "0", limitKeyword, 5);
+            assertSent(server, getMethod, restApiPath + BitbucketApiMetadata.API_VERSION
+                    + "/projects/PRJ/repos/my-repo/pull-requests/1/activities", queryParams);
+        } finally {
+            baseApi.close();
+            server.shutdown();
+        }
+    }
+
+    public void testStreamPullRequestActivitiesOnError() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-activities-error.json"))
+                .setResponseCode(404));
+        final BitbucketApi baseApi = api(server.getUrl("/"));
+        final PullRequestApi api = baseApi.pullRequestApi();
+        try (final StreamingPage<Activities> page = api.streamActivities(projectKey, repoKey, 1, 5, 0)) {
+
+            assertThat(page.errors()).isNotEmpty();
+            final PageSummary summary = page.forEach(activity -> {
+                throw new AssertionError("no values expected");
+            });
+            assertThat(summary.errors()).isNotEmpty();
+            assertThat(summary.isLastPage()).isTrue();
+        } finally {
+            baseApi.close();
+            server.shutdown();
+        }
+    }
+
     public void testGetPullRequestParticipants() throws Exception {
         final MockWebServer server = mockWebServer();
 
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.domain.repository.Repository;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import okio.Buffer;
+
+/**
+ * Mock tests for the {@link CompressionInterceptor} class.
+ */
+@Test(groups = "unit", testName = "CompressionInterceptorMockTest")
+public class CompressionInterceptorMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+
+    public void testDecodesGzip() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final byte[] body = payloadFromResource("/repository.json").getBytes(StandardCharsets.UTF_8);
+        final byte[] compressed = gzip(body);
+        server.enqueue(new MockResponse().setBody(new Buffer().write(compressed))
+                .setHeader("Content-Encoding", "gzip")
+                .setResponseCode(200));
+
+        final CompressionInterceptor interceptor = new CompressionInterceptor();
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isEmpty();
+            assertThat(repository.slug()).isEqualToIgnoringCase(repoKey);
+            assertThat(interceptor.compressedResponses()).isEqualTo(1);
+            assertThat(interceptor.wireBytes()).isBetween(1L, (long) compressed.length);
+            assertThat(interceptor.decodedBytes()).isGreaterThan(interceptor.wireBytes());
+
+            final RecordedRequest request = server.takeRequest();
+            assertThat(request.getHeader("Accept-Encoding")).isEqualTo(CompressionInterceptor.ACCEPTED_ENCODINGS);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testDecodesDeflate() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final byte[] body = payloadFromResource("/repository.json").getBytes(StandardCharsets.UTF_8);
+        server.enqueue(new MockResponse().setBody(new Buffer().write(deflate(body)))
+                .setHeader("Content-Encoding", "deflate")
+                .setResponseCode(200));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).compression(true).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isEmpty();
+            assertThat(repository.slug()).isEqualToIgnoringCase(repoKey);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testDecodesCompressedErrors() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final byte[] body = payloadFromResource("/repository-not-exist.json").getBytes(StandardCharsets.UTF_8);
+        server.enqueue(new MockResponse().setBody(new Buffer().write(gzip(body)))
+                .setHeader("Content-Encoding", "gzip")
+                .setResponseCode(404));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).compression(true).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).hasSize(1);
+            assertThat(repository.errors().get(0).exceptionName())
+                    .isEqualTo("com.atlassian.bitbucket.repository.NoSuchRepositoryException");
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testPassesThroughUncompressed() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+
+        final CompressionInterceptor interceptor = new CompressionInterceptor();
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isEmpty();
+            assertThat(interceptor.compressedResponses()).isEqualTo(0);
+            assertThat(interceptor.wireBytes()).isEqualTo(0);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static byte[] gzip(final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final DeflaterOutputStream deflate = new DeflaterOutputStream(out)) {
+            deflate.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
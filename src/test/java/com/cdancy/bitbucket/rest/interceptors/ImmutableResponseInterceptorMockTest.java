@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.cache.WeightedResponseCache;
+import com.cdancy.bitbucket.rest.domain.commit.Commit;
+import com.cdancy.bitbucket.rest.domain.file.RawContent;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link ImmutableResponseInterceptor} class.
+ */
+@Test(groups = "unit", testName = "ImmutableResponseInterceptorMockTest")
+public class ImmutableResponseInterceptorMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "myrepo";
+    private final String commitHash = "abcdef0123abcdef4567abcdef8987abcdef6543";
+
+    public void testCachesCommitBySha() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/commit.json")).setResponseCode(200));
+
+        final ImmutableResponseInterceptor interceptor = new ImmutableResponseInterceptor(new WeightedResponseCache(), "identity");
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            final Commit first = client.api().commitsApi().get(projectKey, repoKey, commitHash, null);
+            final Commit second = client.api().commitsApi().get(projectKey, repoKey, commitHash, null);
+
+            assertThat(first.errors()).isEmpty();
+            assertThat(second).isEqualTo(first);
+            assertThat(interceptor.hits()).isEqualTo(1);
+            assertThat(interceptor.misses()).isEqualTo(1);
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testPassesThroughUnpinnedRequests() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody("Hello").setResponseCode(200));
+        server.enqueue(new MockResponse().setBody("World").setResponseCode(200));
+        server.enqueue(new MockResponse().setBody("Pinned").setResponseCode(200));
+
+        final WeightedResponseCache cache = new WeightedResponseCache();
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).immutableResponseCache(cache).build()) {
+            final RawContent first = client.api().fileApi().raw(projectKey, repoKey, "README.md", "master");
+            final RawContent second = client.api().fileApi().raw(projectKey, repoKey, "README.md", "master");
+            final RawContent pinned = client.api().fileApi().raw(projectKey, repoKey, "README.md", commitHash);
+            final RawContent pinnedAgain = client.api().fileApi().raw(projectKey, repoKey, "README.md", commitHash);
+
+            assertThat(first.value()).isEqualTo("Hello");
+            assertThat(second.value()).isEqualTo("World");
+            assertThat(pinned.value()).isEqualTo("Pinned");
+            assertThat(pinnedAgain.value()).isEqualTo("Pinned");
+            assertThat(server.getRequestCount()).isEqualTo(3);
+            assertThat(cache.size()).isEqualTo(1);
+            assertThat(cache.stats().hitCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testPassesThroughShaLikeFilePaths() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody("Hello").setResponseCode(200));
+        server.enqueue(new MockResponse().setBody("World").setResponseCode(200));
+
+        final WeightedResponseCache cache = new WeightedResponseCache();
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).immutableResponseCache(cache).build()) {
+            final String filePath = "vendor/" + commitHash + "/a.txt";
+            assertThat(client.api().fileApi().raw(projectKey, repoKey, filePath, null).value()).isEqualTo("Hello");
+            assertThat(client.api().fileApi().raw(projectKey, repoKey, filePath, null).value()).isEqualTo("World");
+            assertThat(server.getRequestCount()).isEqualTo(2);
+            assertThat(cache.size()).isEqualTo(0);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testEvictsByWeight() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final String otherHash = "0123456789012345678901234567890123456789";
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/commit.json")).setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/commit.json")).setResponseCode(200));
+
+        final WeightedResponseCache cache = new WeightedResponseCache(payloadFromResource("/commit.json").length() + 256);
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).immutableResponseCache(cache).build()) {
+            client.api().commitsApi().get(projectKey, repoKey, commitHash, null);
+            client.api().commitsApi().get(projectKey, repoKey, otherHash, null);
+
+            assertThat(server.getRequestCount()).isEqualTo(2);
+            assertThat(cache.size()).isLessThanOrEqualTo(1);
+            assertThat(cache.stats().evictionCount()).isGreaterThanOrEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testIsShaPinned() {
+        final String commits = "http://localhost/rest/api/1.0/projects/PRJ/repos/my-repo/commits/";
+        assertThat(ImmutableResponseInterceptor.isShaPinned("commits:get", URI.create(commits + commitHash))).isTrue();
+        assertThat(ImmutableResponseInterceptor.isShaPinned("commits:list-changes", URI.create(commits + commitHash + "/changes"))).isTrue();
+        assertThat(ImmutableResponseInterceptor.isShaPinned("commits:get", URI.create(commits + "abcdef0"))).isFalse();
+        assertThat(ImmutableResponseInterceptor.isShaPinned("file:raw-content", URI.create("http://localhost/raw/a.txt?at=" + commitHash))).isTrue();
+        assertThat(ImmutableResponseInterceptor.isShaPinned("file:raw-content", URI.create("http://localhost/raw/a.txt?at=master"))).isFalse();
+    }
+
+    public void testIgnoresShaLikeFilePaths() {
+        final String raw = "http://localhost/projects/PRJ/repos/my-repo/raw/vendor/" + commitHash + "/a.txt";
+        assertThat(ImmutableResponseInterceptor.isShaPinned("file:raw-content", URI.create(raw))).isFalse();
+        assertThat(ImmutableResponseInterceptor.isShaPinned("file:raw-content", URI.create(raw + "?at=refs/heads/master"))).isFalse();
+        assertThat(ImmutableResponseInterceptor.isShaPinned("file:list-lines",
+                URI.create("http://localhost/rest/api/1.0/projects/PRJ/repos/my-repo/browse/" + commitHash + "/a.txt"))).isFalse();
+    }
+}
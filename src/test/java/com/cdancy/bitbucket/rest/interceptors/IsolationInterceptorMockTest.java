@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.domain.project.Project;
+import com.cdancy.bitbucket.rest.domain.repository.Repository;
+import com.cdancy.bitbucket.rest.exception.BulkheadFullException;
+import com.cdancy.bitbucket.rest.exception.CircuitOpenException;
+import com.cdancy.bitbucket.rest.features.ProjectApi;
+import com.cdancy.bitbucket.rest.features.RepositoryApi;
+import com.cdancy.bitbucket.rest.resilience.CircuitBreaker;
+import com.cdancy.bitbucket.rest.resilience.Isolation;
+import com.google.common.collect.ImmutableMap;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link IsolationInterceptor} class.
+ */
+@Test(groups = "unit", testName = "IsolationInterceptorMockTest")
+public class IsolationInterceptorMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+
+    public void testCircuitOpensOnlyForFailingApi() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/project.json")).setResponseCode(200));
+
+        final Isolation isolation = Isolation.builder()
+                .slidingWindow(4, 2)
+                .openDuration(1, TimeUnit.MINUTES)
+                .build();
+        final IsolationInterceptor interceptor = new IsolationInterceptor(ImmutableMap.<Class<?>, Isolation>of(
+                RepositoryApi.class, isolation,
+                ProjectApi.class, isolation));
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            assertThat(client.api().repositoryApi().get(projectKey, repoKey).errors()).isNotEmpty();
+            assertThat(client.api().repositoryApi().get(projectKey, repoKey).errors()).isNotEmpty();
+            assertThat(interceptor.circuitState(RepositoryApi.class)).isEqualTo(CircuitBreaker.State.OPEN);
+
+            final Repository rejected = client.api().repositoryApi().get(projectKey, repoKey);
+            assertThat(rejected.errors()).hasSize(1);
+            assertThat(rejected.errors().get(0).exceptionName()).isEqualTo(CircuitOpenException.class.getName());
+
+            final Project project = client.api().projectApi().get(projectKey);
+            assertThat(project.errors()).isEmpty();
+            assertThat(interceptor.circuitState(ProjectApi.class)).isEqualTo(CircuitBreaker.State.CLOSED);
+
+            assertThat(server.getRequestCount()).isEqualTo(3);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testCircuitClosesAfterSuccessfulTrialCalls() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+
+        final IsolationInterceptor interceptor = new IsolationInterceptor(ImmutableMap.<Class<?>, Isolation>of(
+                RepositoryApi.class, Isolation.builder()
+                        .slidingWindow(1, 1)
+                        .openDuration(200, TimeUnit.MILLISECONDS)
+                        .halfOpenCalls(1)
+                        .build()));
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            assertThat(client.api().repositoryApi().get(projectKey, repoKey).errors()).isNotEmpty();
+            assertThat(interceptor.circuitState(RepositoryApi.class)).isEqualTo(CircuitBreaker.State.OPEN);
+
+            Thread.sleep(300);
+
+            assertThat(client.api().repositoryApi().get(projectKey, repoKey).errors()).isEmpty();
+            assertThat(interceptor.circuitState(RepositoryApi.class)).isEqualTo(CircuitBreaker.State.CLOSED);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testBulkheadRejectsExcessCalls() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json"))
+                .setBodyDelay(500, TimeUnit.MILLISECONDS)
+                .setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/"))
+                .isolate(RepositoryApi.class, Isolation.builder().maxConcurrentCalls(1).build())
+                .build()) {
+            final CompletableFuture<Repository> first = client.asyncApi().repositoryApi(api -> api.get(projectKey, repoKey));
+            Thread.sleep(200);
+            final CompletableFuture<Repository> second = client.asyncApi().repositoryApi(api -> api.get(projectKey, repoKey));
+
+            assertThat(first.get().errors()).isEmpty();
+            assertThat(second.get().errors()).hasSize(1);
+            assertThat(second.get().errors().get(0).exceptionName()).isEqualTo(BulkheadFullException.class.getName());
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testInterruptedBulkheadHandsBackTrialCall() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+
+        final IsolationInterceptor interceptor = new IsolationInterceptor(ImmutableMap.<Class<?>, Isolation>of(
+                RepositoryApi.class, Isolation.builder()
+                        .slidingWindow(1, 1)
+                        .openDuration(200, TimeUnit.MILLISECONDS)
+                        .halfOpenCalls(1)
+                        .maxWait(1, TimeUnit.SECONDS)
+                        .build()));
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            assertThat(client.api().repositoryApi().get(projectKey, repoKey).errors()).isNotEmpty();
+            Thread.sleep(300);
+
+            Thread.currentThread().interrupt();
+            try {
+                assertThat(client.api().repositoryApi().get(projectKey, repoKey).errors()).isNotEmpty();
+            } finally {
+                Thread.interrupted();
+            }
+
+            // the only trial call must have been handed back
+            assertThat(client.api().repositoryApi().get(projectKey, repoKey).errors()).isEmpty();
+            assertThat(interceptor.circuitState(RepositoryApi.class)).isEqualTo(CircuitBreaker.State.CLOSED);
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testIgnoresResultsOfEarlierStates() throws Exception {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(Isolation.builder()
+                .slidingWindow(1, 1)
+                .openDuration(1, TimeUnit.MILLISECONDS)
+                .halfOpenCalls(1)
+                .build());
+
+        final long slow = circuitBreaker.tryAcquire();
+        final long failing = circuitBreaker.tryAcquire();
+        circuitBreaker.onResult(failing, true, 0);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        Thread.sleep(10);
+
+        final long trial = circuitBreaker.tryAcquire();
+        assertThat(trial).isNotEqualTo(CircuitBreaker.NO_PERMIT);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        // a call let through while CLOSED neither closes the circuit nor frees up a trial call
+        circuitBreaker.onResult(slow, false, 0);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(CircuitBreaker.NO_PERMIT);
+
+        circuitBreaker.onResult(trial, false, 0);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.domain.repository.Repository;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link RateLimitInterceptor} class.
+ */
+@Test(groups = "unit", testName = "RateLimitInterceptorMockTest")
+public class RateLimitInterceptorMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+
+    public void testWaitsOutRetryAfter() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setHeader("Retry-After", "1").setResponseCode(429));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+
+        final RateLimitInterceptor interceptor = new RateLimitInterceptor("identity", 100, 10);
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            final long start = System.nanoTime();
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+            final long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+            assertThat(repository.errors()).isEmpty();
+            assertThat(elapsedMillis).isGreaterThanOrEqualTo(900);
+            assertThat(server.getRequestCount()).isEqualTo(2);
+            assertThat(interceptor.throttled()).isEqualTo(1);
+            assertThat(interceptor.permitsPerSecond(server.getUrl("/").toURI())).isLessThan(100);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testLearnsAdvertisedLimits() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json"))
+                .setHeader("X-RateLimit-Limit", "3")
+                .setHeader("X-RateLimit-Remaining", "0")
+                .setHeader("X-RateLimit-FillRate", "10")
+                .setHeader("X-RateLimit-Interval-Seconds", "5")
+                .setResponseCode(200));
+
+        final RateLimitInterceptor interceptor = new RateLimitInterceptor("identity", 100, 10);
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            final URI endpoint = server.getUrl("/").toURI();
+            assertThat(interceptor.availablePermits(endpoint)).isEqualTo(10);
+
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isEmpty();
+            assertThat(interceptor.permitsPerSecond(endpoint)).isEqualTo(2.0);
+            assertThat(interceptor.availablePermits(endpoint)).isEqualTo(0);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testGivesUpAfterMaxRetries() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setHeader("Retry-After", "0").setResponseCode(429));
+        server.enqueue(new MockResponse().setHeader("Retry-After", "0").setResponseCode(429));
+
+        final RateLimitInterceptor interceptor = new RateLimitInterceptor("identity", 100, 10, 1);
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isNotEmpty();
+            assertThat(server.getRequestCount()).isEqualTo(2);
+            assertThat(interceptor.throttled()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.cache.InMemoryResponseCache;
+import com.cdancy.bitbucket.rest.cache.ResponseCachePolicy;
+import com.cdancy.bitbucket.rest.domain.project.Project;
+import com.cdancy.bitbucket.rest.domain.repository.Repository;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * Mock tests for the {@link ResponseCacheInterceptor} class.
+ */
+@Test(groups = "unit", testName = "ResponseCacheInterceptorMockTest")
+public class ResponseCacheInterceptorMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+    private final String etag = "\"abc123\"";
+
+    public void testRevalidatesWithETag() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json"))
+                .setHeader("ETag", etag)
+                .setResponseCode(200));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        final ResponseCacheInterceptor interceptor = new ResponseCacheInterceptor(new InMemoryResponseCache(),
+                ResponseCachePolicy.defaults(), "identity");
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            final Repository first = client.api().repositoryApi().get(projectKey, repoKey);
+            final Repository second = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(first.errors()).isEmpty();
+            assertThat(second).isEqualTo(first);
+            assertThat(interceptor.misses()).isEqualTo(1);
+            assertThat(interceptor.notModified()).isEqualTo(1);
+
+            final RecordedRequest initial = server.takeRequest();
+            assertThat(initial.getHeader("If-None-Match")).isNull();
+            final RecordedRequest revalidation = server.takeRequest();
+            assertThat(revalidation.getHeader("If-None-Match")).isEqualTo(etag);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testRefreshesOnChange() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json"))
+                .setHeader("ETag", etag)
+                .setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json"))
+                .setHeader("ETag", "\"def456\"")
+                .setResponseCode(200));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        final ResponseCacheInterceptor interceptor = new ResponseCacheInterceptor(new InMemoryResponseCache(),
+                ResponseCachePolicy.defaults(), "identity");
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            for (int i = 0; i < 3; i++) {
+                assertThat(client.api().repositoryApi().get(projectKey, repoKey).errors()).isEmpty();
+            }
+
+            assertThat(interceptor.misses()).isEqualTo(2);
+            assertThat(interceptor.notModified()).isEqualTo(1);
+            server.takeRequest();
+            server.takeRequest();
+            assertThat(server.takeRequest().getHeader("If-None-Match")).isEqualTo("\"def456\"");
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testServesWithinTtl() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/project.json")).setResponseCode(200));
+
+        final ResponseCacheInterceptor interceptor = new ResponseCacheInterceptor(new InMemoryResponseCache(),
+                ResponseCachePolicy.builder().ttl(1, TimeUnit.HOURS, "project:get").build(), "identity");
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            final Project first = client.api().projectApi().get(projectKey);
+            final Project second = client.api().projectApi().get(projectKey);
+
+            assertThat(first.errors()).isEmpty();
+            assertThat(second).isEqualTo(first);
+            assertThat(interceptor.hits()).isEqualTo(1);
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testIgnoresOperationsOutsidePolicy() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/project.json"))
+                .setHeader("ETag", etag)
+                .setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/project.json"))
+                .setHeader("ETag", etag)
+                .setResponseCode(200));
+
+        final InMemoryResponseCache cache = new InMemoryResponseCache();
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/"))
+                .responseCache(cache, ResponseCachePolicy.builder().revalidate("repository:get").build())
+                .build()) {
+            client.api().projectApi().get(projectKey);
+            client.api().projectApi().get(projectKey);
+
+            assertThat(cache.size()).isEqualTo(0);
+            server.takeRequest();
+            assertThat(server.takeRequest().getHeader("If-None-Match")).isNull();
+        } finally {
+            server.shutdown();
+        }
+    }
+}
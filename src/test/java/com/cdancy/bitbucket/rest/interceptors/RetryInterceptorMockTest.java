@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequest;
+import com.cdancy.bitbucket.rest.domain.repository.Repository;
+import com.cdancy.bitbucket.rest.options.CreateRepository;
+import com.cdancy.bitbucket.rest.retry.RetryPolicy;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.SocketPolicy;
+
+/**
+ * Mock tests for the {@link RetryInterceptor} class.
+ */
+@Test(groups = "unit", testName = "RetryInterceptorMockTest")
+public class RetryInterceptorMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+
+    private final RetryPolicy fastPolicy = RetryPolicy.builder()
+            .backoff(10, 50, TimeUnit.MILLISECONDS)
+            .build();
+
+    public void testRetriesMergeRace() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/merge-failed-retry.json")).setResponseCode(409));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-merge.json")).setResponseCode(200));
+
+        final RetryInterceptor interceptor = new RetryInterceptor(fastPolicy);
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            final PullRequest pr = client.api().pullRequestApi().merge(projectKey, repoKey, 101, 1);
+
+            assertThat(pr.errors()).isEmpty();
+            assertThat(pr.state()).isEqualToIgnoringCase("MERGED");
+            assertThat(server.getRequestCount()).isEqualTo(2);
+            assertThat(interceptor.retries()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testRetriesTransientStatusUntilMaxAttempts() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        final RetryInterceptor interceptor = new RetryInterceptor(fastPolicy);
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).interceptors(interceptor).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isNotEmpty();
+            assertThat(server.getRequestCount()).isEqualTo(fastPolicy.maxAttempts());
+            assertThat(interceptor.retries()).isEqualTo(fastPolicy.maxAttempts() - 1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testNeverRetriesNonIdempotentPost() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(201));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).retryPolicy(fastPolicy).build()) {
+            final Repository repository = client.api().repositoryApi().create(projectKey, CreateRepository.create(repoKey, true));
+
+            assertThat(repository.errors()).isNotEmpty();
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testGivesUpOnceDeadlineWouldBeExceeded() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+
+        final RetryPolicy policy = RetryPolicy.builder()
+                .backoff(5, 5, TimeUnit.SECONDS)
+                .jitter(0)
+                .deadline(100, TimeUnit.MILLISECONDS)
+                .build();
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).retryPolicy(policy).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isNotEmpty();
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testNeverRetriesConflicts() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody("{\"errors\":[{\"context\":null,\"message\":\"Merge conflict\","
+                + "\"exceptionName\":\"com.atlassian.bitbucket.scm.MergeException\",\"conflicted\":true}]}").setResponseCode(409));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).retryPolicy(fastPolicy).build()) {
+            final PullRequest pr = client.api().pullRequestApi().merge(projectKey, repoKey, 101, 1);
+
+            assertThat(pr.errors()).hasSize(1);
+            assertThat(pr.errors().get(0).conflicted()).isTrue();
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testKeepsRetryingDroppedConnections() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+
+        // jclouds' own retries left at their defaults
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).overrides(new Properties()).retryPolicy(fastPolicy).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isEmpty();
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testKeepsFollowingRedirects() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final String renamedPath = "/rest/api/1.0/projects/" + projectKey + "/repos/renamed";
+        server.enqueue(new MockResponse().setResponseCode(302).setHeader("Location", server.getUrl(renamedPath).toString()));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).overrides(new Properties()).retryPolicy(fastPolicy).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isEmpty();
+            assertThat(server.getRequestCount()).isEqualTo(2);
+            server.takeRequest();
+            assertThat(server.takeRequest().getPath()).isEqualTo(renamedPath);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testLeavesServerErrorsToThePolicy() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+
+        // a 500 is not retryable by fastPolicy and must not be retried by jclouds either
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).overrides(new Properties()).retryPolicy(fastPolicy).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isNotEmpty();
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testLeavesThrottlingToTheRateLimiter() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        for (int i = 0; i < 10; i++) {
+            server.enqueue(new MockResponse().setHeader("Retry-After", "0").setResponseCode(429));
+        }
+
+        // 429 is transient to fastPolicy but the rate limiter alone may re-send it
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).retryPolicy(fastPolicy).rateLimit(100, 10).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isNotEmpty();
+            assertThat(server.getRequestCount()).isEqualTo(RateLimitInterceptor.DEFAULT_MAX_RETRIES + 1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testRetriesThrottlingWithoutRateLimiter() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).retryPolicy(fastPolicy).build()) {
+            final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+
+            assertThat(repository.errors()).isEmpty();
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.interceptors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequest;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link SingleFlightInterceptor} class.
+ */
+@Test(groups = "unit", testName = "SingleFlightInterceptorMockTest")
+public class SingleFlightInterceptorMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+
+    public void testCoalescesConcurrentGets() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final int callers = 5;
+        for (int i = 0; i < callers; i++) {
+            server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request.json"))
+                    .setBodyDelay(500, TimeUnit.MILLISECONDS)
+                    .setResponseCode(200));
+        }
+
+        final SingleFlightInterceptor interceptor = new SingleFlightInterceptor("identity");
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/"))
+                .maxAsyncRequests(callers)
+                .interceptors(interceptor)
+                .build()) {
+            final List<CompletableFuture<PullRequest>> futures = IntStream.range(0, callers)
+                    .mapToObj(index -> client.asyncApi().pullRequestApi(api -> api.get(projectKey, repoKey, 101)))
+                    .collect(Collectors.toList());
+            for (final CompletableFuture<PullRequest> future : futures) {
+                assertThat(future.get().id()).isEqualTo(101);
+            }
+
+            assertThat(server.getRequestCount()).isEqualTo(1);
+            assertThat(interceptor.coalesced()).isEqualTo(callers - 1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testSharesFailure() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-not-exist.json"))
+                .setBodyDelay(500, TimeUnit.MILLISECONDS)
+                .setResponseCode(404));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-not-exist.json"))
+                .setResponseCode(404));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).coalesceRequests(true).build()) {
+            final CompletableFuture<PullRequest> first = client.asyncApi().pullRequestApi(api -> api.get(projectKey, repoKey, 101));
+            final CompletableFuture<PullRequest> second = client.asyncApi().pullRequestApi(api -> api.get(projectKey, repoKey, 101));
+
+            assertThat(first.get().errors()).isNotEmpty();
+            assertThat(second.get().errors()).isNotEmpty();
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testDoesNotCoalesceSequentialGets() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request.json")).setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request.json")).setResponseCode(200));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).coalesceRequests(true).build()) {
+            client.api().pullRequestApi().get(projectKey, repoKey, 101);
+            client.api().pullRequestApi().get(projectKey, repoKey, 101);
+
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.domain.repository.Repository;
+import com.cdancy.bitbucket.rest.options.CreateRepository;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link InMemoryMetricsSink} class.
+ */
+@Test(groups = "unit", testName = "InMemoryMetricsSinkMockTest")
+public class InMemoryMetricsSinkMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+
+    public void testRecordsPerOperationAndStatusCode() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json"))
+                .setBodyDelay(200, TimeUnit.MILLISECONDS)
+                .setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository-not-exist.json")).setResponseCode(404));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(201));
+
+        final InMemoryMetricsSink sink = new InMemoryMetricsSink();
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).metrics(sink).build()) {
+            client.api().repositoryApi().get(projectKey, repoKey);
+            client.api().repositoryApi().get(projectKey, repoKey);
+            final Repository missing = client.api().repositoryApi().get(projectKey, repoKey);
+            assertThat(missing.errors()).isNotEmpty();
+            client.api().repositoryApi().create(projectKey, CreateRepository.create(repoKey, true));
+
+            final List<OperationMetrics> snapshot = sink.snapshot();
+            assertThat(snapshot).hasSize(3);
+
+            final OperationMetrics found = snapshot.get(0);
+            assertThat(found.operation()).isEqualTo("repository:get");
+            assertThat(found.statusCode()).isEqualTo(200);
+            assertThat(found.count()).isEqualTo(2);
+            assertThat(found.errors()).isEqualTo(0);
+            assertThat(found.bytesIn()).isGreaterThan(0);
+            assertThat(found.maxLatency()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(150));
+            assertThat(found.p50Latency()).isLessThanOrEqualTo(found.maxLatency());
+
+            final OperationMetrics notFound = find(snapshot, "repository:get", 404);
+            assertThat(notFound.count()).isEqualTo(1);
+            assertThat(notFound.errors()).isEqualTo(1);
+
+            final OperationMetrics created = find(snapshot, "repository:create", 201);
+            assertThat(created.count()).isEqualTo(1);
+            assertThat(created.bytesOut()).isGreaterThan(0);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testHistogramPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.count()).isEqualTo(10000);
+        assertThat(histogram.max()).isEqualTo(10000);
+        assertThat(histogram.mean()).isEqualTo(5000.5);
+        assertThat(histogram.percentile(50)).isBetween(4850L, 5150L);
+        assertThat(histogram.percentile(99)).isBetween(9600L, 10000L);
+        assertThat(histogram.percentile(100)).isEqualTo(10000);
+        assertThat(new LatencyHistogram().percentile(99)).isEqualTo(0);
+    }
+
+    private static OperationMetrics find(final List<OperationMetrics> snapshot, final String operation, final int statusCode) {
+        for (final OperationMetrics metrics : snapshot) {
+            if (metrics.operation().equals(operation) && metrics.statusCode() == statusCode) {
+                return metrics;
+            }
+        }
+        throw new AssertionError("no metrics recorded for " + operation + " " + statusCode);
+    }
+}
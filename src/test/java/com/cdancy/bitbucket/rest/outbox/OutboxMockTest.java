@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.outbox;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.options.CreateBuildStatus;
+import com.cdancy.bitbucket.rest.retry.RetryPolicy;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * Mock tests for the {@link Outbox} class.
+ */
+@Test(groups = "unit", testName = "OutboxMockTest")
+public class OutboxMockTest extends BaseBitbucketMockTest {
+
+    private final RetryPolicy quickRetries = RetryPolicy.builder()
+            .maxAttempts(3)
+            .backoff(10, 10, TimeUnit.MILLISECONDS)
+            .build();
+
+    public void testDeliverSubmittedOperations() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final OutboxDispatcher dispatcher = new OutboxDispatcher(0);
+        server.setDispatcher(dispatcher);
+        final Path journal = Files.createTempDirectory("outbox").resolve("journal");
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"));
+                final Outbox outbox = Outbox.builder(baseApi, journal).retryPolicy(quickRetries).build()) {
+
+            assertThat(outbox.submit(OutboxOperation.buildStatus("abc", status()))).isTrue();
+            assertThat(outbox.submit(OutboxOperation.taskState(99, "RESOLVED"))).isTrue();
+
+            assertThat(outbox.flush(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(outbox.delivered()).isEqualTo(2);
+            assertThat(outbox.failed()).isEqualTo(0);
+            assertThat(outbox.pending()).isEqualTo(0);
+            assertThat(dispatcher.requests).containsExactlyInAnyOrder(
+                    "POST /rest/build-status/1.0/commits/abc",
+                    "PUT /rest/api/1.0/tasks/99");
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testDropDuplicateDedupeKeys() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final OutboxDispatcher dispatcher = new OutboxDispatcher(0);
+        server.setDispatcher(dispatcher);
+        final Path journal = Files.createTempDirectory("outbox").resolve("journal");
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            try (final Outbox outbox = Outbox.builder(baseApi, journal).retryPolicy(quickRetries).build()) {
+                assertThat(outbox.submit("event-1", OutboxOperation.buildStatus("abc", status()))).isTrue();
+                assertThat(outbox.flush(10, TimeUnit.SECONDS)).isTrue();
+                assertThat(outbox.submit("event-1", OutboxOperation.buildStatus("abc", status()))).isFalse();
+            }
+
+            // delivered dedupe keys are remembered across restarts
+            try (final Outbox outbox = Outbox.builder(baseApi, journal).retryPolicy(quickRetries).build()) {
+                assertThat(outbox.submit("event-1", OutboxOperation.buildStatus("abc", status()))).isFalse();
+                assertThat(outbox.submit("event-2", OutboxOperation.buildStatus("abc", status()))).isTrue();
+                assertThat(outbox.flush(10, TimeUnit.SECONDS)).isTrue();
+            }
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testDeliverRecoveredOperations() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final OutboxDispatcher dispatcher = new OutboxDispatcher(0);
+        server.setDispatcher(dispatcher);
+        final Path journal = Files.createTempDirectory("outbox").resolve("journal");
+
+        // left pending by a previous process
+        try (final OutboxJournal previous = OutboxJournal.open(journal)) {
+            previous.append(null, OutboxOperation.buildStatus("abc", status()));
+            final OutboxEntry delivered = previous.append(null, OutboxOperation.taskState(98, "OPEN"));
+            previous.append(null, OutboxOperation.taskState(99, "RESOLVED"));
+            previous.acknowledge(delivered.id());
+        }
+        Files.write(journal, "[\"A\",4,null,\"TASK_ST".getBytes(UTF_8), StandardOpenOption.APPEND);
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"));
+                final Outbox outbox = Outbox.builder(baseApi, journal).retryPolicy(quickRetries).build()) {
+
+            assertThat(outbox.flush(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(outbox.delivered()).isEqualTo(2);
+            assertThat(dispatcher.requests).containsExactlyInAnyOrder(
+                    "POST /rest/build-status/1.0/commits/abc",
+                    "PUT /rest/api/1.0/tasks/99");
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testForgetAppendsFailingToBeForced() throws Exception {
+        final Path journal = Files.createTempDirectory("outbox").resolve("journal");
+        final AtomicBoolean failing = new AtomicBoolean(true);
+        final OutboxJournal.Forcer forcer = channel -> {
+            if (failing.get()) {
+                throw new IOException("Simulated failing disk");
+            }
+            OutboxJournal.FORCE_DATA.force(channel);
+        };
+
+        try (final OutboxJournal failed = OutboxJournal.open(journal, OutboxJournal.DEFAULT_DEDUPE_WINDOW,
+                OutboxJournal.DEFAULT_COMPACT_THRESHOLD, forcer)) {
+            try {
+                failed.append("event-1", OutboxOperation.taskState(98, "OPEN"));
+                fail("Expected the append to fail");
+            } catch (final RuntimeException e) {
+                assertThat(e).hasRootCauseInstanceOf(IOException.class);
+            }
+            assertThat(failed.size()).isEqualTo(0);
+
+            // neither holding on to its dedupe key
+            failing.set(false);
+            assertThat(failed.append("event-1", OutboxOperation.taskState(99, "RESOLVED"))).isNotNull();
+        }
+
+        // nor being recovered
+        try (final OutboxJournal reopened = OutboxJournal.open(journal)) {
+            assertThat(reopened.pending()).hasSize(1);
+            assertThat(reopened.pending().get(0).operation()).isEqualTo(OutboxOperation.taskState(99, "RESOLVED"));
+        }
+    }
+
+    public void testRetryFailedDelivery() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final OutboxDispatcher dispatcher = new OutboxDispatcher(1);
+        server.setDispatcher(dispatcher);
+        final Path journal = Files.createTempDirectory("outbox").resolve("journal");
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"));
+                final Outbox outbox = Outbox.builder(baseApi, journal).retryPolicy(quickRetries).build()) {
+
+            assertThat(outbox.submit(OutboxOperation.buildStatus("abc", status()))).isTrue();
+            assertThat(outbox.flush(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(outbox.delivered()).isEqualTo(1);
+            assertThat(outbox.failed()).isEqualTo(0);
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testGiveUpAfterMaxAttempts() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final OutboxDispatcher dispatcher = new OutboxDispatcher(Integer.MAX_VALUE);
+        server.setDispatcher(dispatcher);
+        final Path journal = Files.createTempDirectory("outbox").resolve("journal");
+        final List<OutboxEntry> givenUp = new CopyOnWriteArrayList<>();
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"));
+                final Outbox outbox = Outbox.builder(baseApi, journal)
+                        .retryPolicy(quickRetries)
+                        .onFailure((entry, errors) -> givenUp.add(entry))
+                        .build()) {
+
+            assertThat(outbox.submit(OutboxOperation.buildStatus("abc", status()))).isTrue();
+            assertThat(outbox.flush(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(outbox.delivered()).isEqualTo(0);
+            assertThat(outbox.failed()).isEqualTo(1);
+            assertThat(givenUp).hasSize(1);
+            assertThat(server.getRequestCount()).isEqualTo(3);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testNeverRetryRefusedOperations() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final OutboxDispatcher dispatcher = new OutboxDispatcher(Integer.MAX_VALUE, 404);
+        server.setDispatcher(dispatcher);
+        final Path journal = Files.createTempDirectory("outbox").resolve("journal");
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"));
+                final Outbox outbox = Outbox.builder(baseApi, journal).retryPolicy(quickRetries).build()) {
+
+            assertThat(outbox.submit(OutboxOperation.buildStatus("abc", status()))).isTrue();
+            assertThat(outbox.flush(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(outbox.failed()).isEqualTo(1);
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testKeepSendingWhenFailureHandlerThrows() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final OutboxDispatcher dispatcher = new OutboxDispatcher(1, 404);
+        server.setDispatcher(dispatcher);
+        final Path journal = Files.createTempDirectory("outbox").resolve("journal");
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"));
+                final Outbox outbox = Outbox.builder(baseApi, journal)
+                        .senders(1)
+                        .retryPolicy(quickRetries)
+                        .onFailure((entry, errors) -> {
+                            throw new IllegalStateException("handler failed");
+                        })
+                        .build()) {
+
+            assertThat(outbox.submit(OutboxOperation.buildStatus("abc", status()))).isTrue();
+            assertThat(outbox.submit(OutboxOperation.buildStatus("def", status()))).isTrue();
+            assertThat(outbox.flush(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(outbox.failed()).isEqualTo(1);
+            assertThat(outbox.delivered()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testSurviveInterruptedCallers() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final OutboxDispatcher dispatcher = new OutboxDispatcher(0);
+        server.setDispatcher(dispatcher);
+        final Path journal = Files.createTempDirectory("outbox").resolve("journal");
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"));
+                final Outbox outbox = Outbox.builder(baseApi, journal).retryPolicy(quickRetries).build()) {
+
+            Thread.currentThread().interrupt();
+            try {
+                assertThat(outbox.submit(OutboxOperation.buildStatus("abc", status()))).isTrue();
+            } finally {
+                // the interrupt is handed back rather than lost
+                assertThat(Thread.interrupted()).isTrue();
+            }
+            assertThat(outbox.submit(OutboxOperation.taskState(99, "RESOLVED"))).isTrue();
+            assertThat(outbox.flush(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(outbox.delivered()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testCloseWhileBackingOff() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final OutboxDispatcher dispatcher = new OutboxDispatcher(1);
+        server.setDispatcher(dispatcher);
+        final Path journal = Files.createTempDirectory("outbox").resolve("journal");
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final RetryPolicy slowRetries = RetryPolicy.builder()
+                    .maxAttempts(3)
+                    .backoff(1, 1, TimeUnit.MINUTES)
+                    .build();
+            final Outbox outbox = Outbox.builder(baseApi, journal).retryPolicy(slowRetries).build();
+            assertThat(outbox.submit(OutboxOperation.buildStatus("abc", status()))).isTrue();
+            while (server.getRequestCount() == 0) {
+                Thread.sleep(10);
+            }
+
+            final long start = System.nanoTime();
+            outbox.close();
+            assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(10);
+
+            // left pending, and delivered, once opened again
+            try (final Outbox reopened = Outbox.builder(baseApi, journal).retryPolicy(quickRetries).build()) {
+                assertThat(reopened.flush(10, TimeUnit.SECONDS)).isTrue();
+                assertThat(reopened.delivered()).isEqualTo(1);
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static CreateBuildStatus status() {
+        return CreateBuildStatus.create(CreateBuildStatus.STATE.SUCCESSFUL, "build", "Build", "http://ci/1", "done");
+    }
+
+    /**
+     * Answers build statuses with 204, task updates with task.json, and
+     * fails the first `failures` requests with the passed status code.
+     */
+    private class OutboxDispatcher extends Dispatcher {
+
+        private final List<String> requests = new CopyOnWriteArrayList<>();
+        private final AtomicInteger failures;
+        private final int failureCode;
+
+        OutboxDispatcher(final int failures) {
+            this(failures, 500);
+        }
+
+        OutboxDispatcher(final int failures, final int failureCode) {
+            this.failures = new AtomicInteger(failures);
+            this.failureCode = failureCode;
+        }
+
+        @Override
+        public MockResponse dispatch(final RecordedRequest request) {
+            requests.add(request.getMethod() + " " + request.getPath());
+            if (failures.getAndDecrement() > 0) {
+                return new MockResponse().setBody(payloadFromResource("/errors.json")).setResponseCode(failureCode);
+            }
+            if (request.getPath().contains("/tasks/")) {
+                return new MockResponse().setBody(payloadFromResource("/task.json")).setResponseCode(200);
+            }
+            return new MockResponse().setResponseCode(204);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.pagination;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.BitbucketApiMetadata;
+import com.cdancy.bitbucket.rest.domain.repository.Repository;
+import com.cdancy.bitbucket.rest.exception.PageFetchException;
+import com.cdancy.bitbucket.rest.features.RepositoryApi;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link PagedIterable} class.
+ */
+@Test(groups = "unit", testName = "PagedIterableMockTest")
+public class PagedIterableMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String getMethod = "GET";
+    private final String startKeyword = "start";
+    private final String limitKeyword = "limit";
+    private final String reposPath = restBasePath + BitbucketApiMetadata.API_VERSION + "/projects/PRJ/repos";
+    private final int limit = 2;
+
+    public void testWalkAllPages() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository-page-truncated.json")).setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository-page-single.json")).setResponseCode(200));
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final RepositoryApi api = baseApi.repositoryApi();
+
+            final List<Repository> repositories = Lists.newArrayList(PagedIterable
+                    .of((final int start) -> api.list(projectKey, start, limit)));
+
+            assertThat(repositories).hasSize(3);
+            assertThat(repositories.get(0).slug()).isEqualTo("repo-1");
+            assertThat(repositories.get(2).slug()).isEqualTo("my-repo");
+
+            final Map<String, ?> firstPage = ImmutableMap.of(startKeyword, 0, limitKeyword, limit);
+            final Map<String, ?> secondPage = ImmutableMap.of(startKeyword, 2, limitKeyword, limit);
+            assertSent(server, getMethod, reposPath, firstPage);
+            assertSent(server, getMethod, reposPath, secondPage);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testStreamShortCircuits() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository-page-truncated.json")).setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository-page-single.json")).setResponseCode(200));
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final RepositoryApi api = baseApi.repositoryApi();
+
+            final Optional<Repository> first;
+            try (final Stream<Repository> stream = PagedIterable
+                    .sequential((final int start) -> api.list(projectKey, start, limit))
+                    .stream()) {
+                first = stream.findFirst();
+            }
+
+            assertThat(first.isPresent()).isTrue();
+            assertThat(first.get().slug()).isEqualTo("repo-1");
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testStreamAllPages() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository-page-truncated.json")).setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository-page-single.json")).setResponseCode(200));
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final RepositoryApi api = baseApi.repositoryApi();
+
+            final List<String> slugs;
+            try (final Stream<Repository> stream = PagedIterable
+                    .of((final int start) -> api.list(projectKey, start, limit))
+                    .stream()) {
+                slugs = stream.map(Repository::slug).collect(Collectors.toList());
+            }
+
+            assertThat(slugs).containsExactly("repo-1", "repo-2", "my-repo");
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = PageFetchException.class)
+    public void testPageWithErrors() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository-not-exist.json")).setResponseCode(404));
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final RepositoryApi api = baseApi.repositoryApi();
+            PagedIterable.sequential((final int start) -> api.list(projectKey, start, limit)).iterator().next();
+        } finally {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.domain.insights.Annotation;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * Mock tests for the {@link AnnotationUploader} class.
+ */
+@Test(groups = "unit", testName = "AnnotationUploaderMockTest")
+public class AnnotationUploaderMockTest extends BaseBitbucketMockTest {
+
+    private final String project = "PRJ";
+    private final String repo = "my-repo";
+    private final String commitId = "abcdef0123456789";
+    private final String reportKey = "static-analysis";
+
+    public void testUploadInChunks() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final AnnotationDispatcher dispatcher = new AnnotationDispatcher();
+        server.setDispatcher(dispatcher);
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final Stream<Annotation> annotations = annotations(2500, -1);
+            final AnnotationUpload upload = AnnotationUploader.builder(baseApi)
+                    .parallelism(2)
+                    .build()
+                    .upload(project, repo, commitId, reportKey, annotations::iterator);
+
+            assertThat(upload.succeeded()).isTrue();
+            assertThat(upload.annotations()).isEqualTo(2500);
+            assertThat(upload.chunks()).isEqualTo(3);
+            assertThat(server.getRequestCount()).isEqualTo(3);
+            assertThat(dispatcher.annotationsReceived.get()).isEqualTo(2500);
+            assertThat(dispatcher.maxConcurrent.get()).isLessThanOrEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testReportFailedChunks() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.setDispatcher(new AnnotationDispatcher());
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final List<Annotation> annotations = annotations(250, 130).collect(Collectors.toList());
+            final AnnotationUpload upload = AnnotationUploader.builder(baseApi)
+                    .chunkSize(100)
+                    .build()
+                    .upload(project, repo, commitId, reportKey, annotations);
+
+            assertThat(upload.succeeded()).isFalse();
+            assertThat(upload.annotations()).isEqualTo(250);
+            assertThat(upload.chunks()).isEqualTo(3);
+            assertThat(upload.failures()).hasSize(1);
+
+            final FailedAnnotationChunk failed = upload.failures().get(0);
+            assertThat(failed.index()).isEqualTo(1);
+            assertThat(failed.offset()).isEqualTo(100);
+            assertThat(failed.annotations()).isEqualTo(annotations.subList(100, 200));
+            assertThat(failed.errors()).isNotEmpty();
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testReadOnlyAsManyChunksAsUploading() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final AtomicInteger read = new AtomicInteger();
+        final AtomicInteger maxReadAhead = new AtomicInteger();
+        server.setDispatcher(new AnnotationDispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) throws InterruptedException {
+                final MockResponse response = super.dispatch(request);
+                maxReadAhead.accumulateAndGet(read.get() - annotationsReceived.get(), Math::max);
+                return response;
+            }
+        });
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final Stream<Annotation> annotations = annotations(100, -1).peek(annotation -> read.incrementAndGet());
+            final AnnotationUpload upload = AnnotationUploader.builder(baseApi)
+                    .chunkSize(10)
+                    .parallelism(2)
+                    .build()
+                    .upload(project, repo, commitId, reportKey, annotations::iterator);
+
+            assertThat(upload.succeeded()).isTrue();
+            assertThat(upload.chunks()).isEqualTo(10);
+            // besides the chunk just received only the other one being uploaded may have been read
+            assertThat(maxReadAhead.get()).isLessThanOrEqualTo(10);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Stream of annotations, the one on line `failingLine` (if any) pointing
+     * at a path the dispatcher rejects.
+     */
+    private Stream<Annotation> annotations(final int count, final int failingLine) {
+        return IntStream.range(0, count).mapToObj(line -> Annotation.create(reportKey,
+                "id-" + line,
+                line,
+                null,
+                "Unused import",
+                line == failingLine ? "rejected/Main.java" : "src/Main.java",
+                Annotation.AnnotationSeverity.LOW,
+                Annotation.AnnotationType.CODE_SMELL));
+    }
+
+    /**
+     * Counts the annotations received, and the peak number of concurrent
+     * requests, rejecting any chunk with an annotation on a rejected path.
+     */
+    private class AnnotationDispatcher extends Dispatcher {
+
+        private final AtomicInteger annotationsReceived = new AtomicInteger();
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        @Override
+        public MockResponse dispatch(final RecordedRequest request) throws InterruptedException {
+            final int current = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(current, Math::max);
+            try {
+                // give other chunks the chance to overlap with this one
+                TimeUnit.MILLISECONDS.sleep(50);
+
+                final String body = request.getBody().readUtf8();
+                if (body.contains("rejected/")) {
+                    return new MockResponse().setBody(payloadFromResource("/errors.json")).setResponseCode(400);
+                }
+                annotationsReceived.addAndGet(body.split("\"externalId\"", -1).length - 1);
+                return new MockResponse().setResponseCode(204);
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.options.CreateBuildStatus;
+import com.cdancy.bitbucket.rest.retry.RetryPolicy;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * Mock tests for the {@link BuildStatusPublisher} class.
+ */
+@Test(groups = "unit", testName = "BuildStatusPublisherMockTest")
+public class BuildStatusPublisherMockTest extends BaseBitbucketMockTest {
+
+    private final RetryPolicy quickRetries = RetryPolicy.builder()
+            .maxAttempts(3)
+            .backoff(10, 10, TimeUnit.MILLISECONDS)
+            .build();
+
+    public void testCoalesceQueuedStatuses() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final CountDownLatch release = new CountDownLatch(1);
+        final StatusDispatcher dispatcher = new StatusDispatcher(release, 0);
+        server.setDispatcher(dispatcher);
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"));
+                final BuildStatusPublisher publisher = BuildStatusPublisher.builder(baseApi.buildStatusApi())
+                        .senders(1)
+                        .build()) {
+
+            publisher.publish("c0", status(CreateBuildStatus.STATE.INPROGRESS));
+            dispatcher.awaitFirstRequest();
+
+            // the only sender is stuck on c0 so these all queue up behind it
+            publisher.publish("c1", status(CreateBuildStatus.STATE.INPROGRESS));
+            publisher.publish("c1", status(CreateBuildStatus.STATE.SUCCESSFUL));
+            publisher.publish("c2", status(CreateBuildStatus.STATE.FAILED));
+            assertThat(publisher.queued()).isEqualTo(2);
+            release.countDown();
+
+            assertThat(publisher.flush(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(publisher.published()).isEqualTo(4);
+            assertThat(publisher.coalesced()).isEqualTo(1);
+            assertThat(publisher.sent()).isEqualTo(3);
+            assertThat(publisher.failed()).isEqualTo(0);
+            assertThat(server.getRequestCount()).isEqualTo(3);
+            assertThat(dispatcher.bodies.get("c1")).contains("SUCCESSFUL").doesNotContain("INPROGRESS");
+            assertThat(dispatcher.bodies.get("c2")).contains("FAILED");
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testRetryFailedStatus() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.setDispatcher(new StatusDispatcher(null, 1));
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"));
+                final BuildStatusPublisher publisher = BuildStatusPublisher.builder(baseApi.buildStatusApi())
+                        .retryPolicy(quickRetries)
+                        .build()) {
+
+            assertThat(publisher.tryPublish("c0", status(CreateBuildStatus.STATE.SUCCESSFUL))).isTrue();
+
+            assertThat(publisher.flush(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(publisher.sent()).isEqualTo(1);
+            assertThat(publisher.failed()).isEqualTo(0);
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testGiveUpAfterMaxAttempts() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.setDispatcher(new StatusDispatcher(null, Integer.MAX_VALUE));
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"));
+                final BuildStatusPublisher publisher = BuildStatusPublisher.builder(baseApi.buildStatusApi())
+                        .retryPolicy(quickRetries)
+                        .build()) {
+
+            publisher.publish("c0", status(CreateBuildStatus.STATE.SUCCESSFUL));
+
+            assertThat(publisher.flush(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(publisher.sent()).isEqualTo(0);
+            assertThat(publisher.failed()).isEqualTo(1);
+            assertThat(server.getRequestCount()).isEqualTo(3);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testNeverRetryRefusedStatus() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.enqueue(new MockResponse().setBody("{\"errors\":[{\"context\":\"url\",\"message\":\"The url is not valid\","
+                + "\"exceptionName\":\"com.atlassian.bitbucket.validation.ArgumentValidationException\"}]}").setResponseCode(400));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/build-status-post.json")).setResponseCode(204));
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"));
+                final BuildStatusPublisher publisher = BuildStatusPublisher.builder(baseApi.buildStatusApi())
+                        .retryPolicy(quickRetries)
+                        .build()) {
+
+            publisher.publish("c0", status(CreateBuildStatus.STATE.SUCCESSFUL));
+
+            assertThat(publisher.flush(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(publisher.sent()).isEqualTo(0);
+            assertThat(publisher.failed()).isEqualTo(1);
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static CreateBuildStatus status(final CreateBuildStatus.STATE state) {
+        return CreateBuildStatus.create(state,
+                "REPO-MASTER",
+                "REPO-MASTER-42",
+                "https://bamboo.example.com/browse/REPO-MASTER-42",
+                "Changes by John Doe");
+    }
+
+    /**
+     * Records the body posted for each commit, optionally holding the first
+     * request until released and failing the first `failures` requests.
+     */
+    private class StatusDispatcher extends Dispatcher {
+
+        private final Map<String, String> bodies = new ConcurrentHashMap<>();
+        private final CountDownLatch firstRequest = new CountDownLatch(1);
+        private final CountDownLatch release;
+        private final int failures;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        StatusDispatcher(final CountDownLatch release, final int failures) {
+            this.release = release;
+            this.failures = failures;
+        }
+
+        void awaitFirstRequest() throws InterruptedException {
+            assertThat(firstRequest.await(10, TimeUnit.SECONDS)).isTrue();
+        }
+
+        @Override
+        public MockResponse dispatch(final RecordedRequest request) throws InterruptedException {
+            final String path = request.getPath();
+            bodies.put(path.substring(path.lastIndexOf('/') + 1), request.getBody().readUtf8());
+            firstRequest.countDown();
+            if (release != null) {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            if (requests.incrementAndGet() <= failures) {
+                return new MockResponse().setBody(payloadFromResource("/errors.json")).setResponseCode(500);
+            }
+            return new MockResponse().setBody(payloadFromResource("/build-status-post.json")).setResponseCode(204);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.publish;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.domain.insights.Annotation;
+import com.cdancy.bitbucket.rest.domain.insights.InsightReportData;
+import com.cdancy.bitbucket.rest.options.CreateInsightReport;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * Mock tests for the {@link InsightReportUpserter} class.
+ */
+@Test(groups = "unit", testName = "InsightReportUpserterMockTest")
+public class InsightReportUpserterMockTest extends BaseBitbucketMockTest {
+
+    private final String project = "PRJ";
+    private final String repo = "my-repo";
+    private final String commitId = "abcdef0123456789";
+    private final String reportKey = "qwerty";
+
+    // the same report, and annotations, as served from insight-report.json and annotations.json
+    private final CreateInsightReport report = CreateInsightReport.create("details",
+            null,
+            null,
+            CreateInsightReport.RESULT.FAIL,
+            "THIS_IS_THE_REPORT_TITLE",
+            "TEST_REPORTER",
+            Arrays.asList(InsightReportData.createText("THIS_IS_A_TITLE", "THIS_IS_A_VALUE"),
+                    InsightReportData.createPercentage("Code Coverage", (byte) 3)));
+    private final List<Annotation> annotations = Arrays.asList(
+            Annotation.create(null, "ext-id", 1, null, "something wrong", ".gitignore",
+                    Annotation.AnnotationSeverity.MEDIUM, Annotation.AnnotationType.BUG),
+            Annotation.create(null, null, 0, null, "test", ".gitignore",
+                    Annotation.AnnotationSeverity.HIGH, null),
+            Annotation.create(null, null, 2, null, "is this a whitespace", ".gitignore",
+                    Annotation.AnnotationSeverity.LOW, Annotation.AnnotationType.CODE_SMELL));
+
+    public void testSkipUnchangedReport() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final InsightsDispatcher dispatcher = new InsightsDispatcher(true);
+        server.setDispatcher(dispatcher);
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final InsightReportUpserter upserter = InsightReportUpserter.builder(baseApi).build();
+
+            final ReportUpsert upsert = upserter.upsert(project, repo, commitId, reportKey, report, annotations);
+            assertThat(upsert.succeeded()).isTrue();
+            assertThat(upsert.reportSent()).isFalse();
+            assertThat(upsert.annotationsSent()).isFalse();
+            assertThat(dispatcher.requests).containsExactly("GET /reports/qwerty", "GET /reports/qwerty/annotations");
+
+            // the saved fingerprint spares asking Bitbucket again
+            final ReportUpsert again = upserter.upsert(project, repo, commitId, reportKey, report, annotations);
+            assertThat(again.reportSent()).isFalse();
+            assertThat(again.annotationsSent()).isFalse();
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testReplaceOnlyChangedAnnotations() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final InsightsDispatcher dispatcher = new InsightsDispatcher(true);
+        server.setDispatcher(dispatcher);
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final List<Annotation> changed = new ArrayList<>(annotations);
+            changed.add(Annotation.create(null, null, 3, null, "new finding", ".gitignore",
+                    Annotation.AnnotationSeverity.LOW, Annotation.AnnotationType.BUG));
+
+            final ReportUpsert upsert = InsightReportUpserter.builder(baseApi).build()
+                    .upsert(project, repo, commitId, reportKey, report, changed);
+            assertThat(upsert.succeeded()).isTrue();
+            assertThat(upsert.reportSent()).isFalse();
+            assertThat(upsert.annotationsSent()).isTrue();
+            assertThat(upsert.annotationUpload().annotations()).isEqualTo(4);
+            assertThat(dispatcher.requests).containsExactly("GET /reports/qwerty",
+                    "GET /reports/qwerty/annotations",
+                    "DELETE /reports/qwerty/annotations",
+                    "POST /reports/qwerty/annotations");
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testSendMissingReport() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final InsightsDispatcher dispatcher = new InsightsDispatcher(false);
+        server.setDispatcher(dispatcher);
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final InMemoryInsightFingerprintStore store = new InMemoryInsightFingerprintStore();
+            final ReportUpsert upsert = InsightReportUpserter.builder(baseApi).store(store).build()
+                    .upsert(project, repo, commitId, reportKey, report, annotations);
+            assertThat(upsert.succeeded()).isTrue();
+            assertThat(upsert.reportSent()).isTrue();
+            assertThat(upsert.annotationsSent()).isTrue();
+            assertThat(dispatcher.requests).containsExactly("GET /reports/qwerty",
+                    "PUT /reports/qwerty",
+                    "DELETE /reports/qwerty/annotations",
+                    "POST /reports/qwerty/annotations");
+            assertThat(store.load(project, repo, commitId, reportKey)).isEqualTo(InsightFingerprint.of(report, annotations));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Serves the report, and annotations, of insight-report.json and
+     * annotations.json if present, recording each request by method and the
+     * part of its path from the report on.
+     */
+    private class InsightsDispatcher extends Dispatcher {
+
+        private final List<String> requests = new CopyOnWriteArrayList<>();
+        private final boolean present;
+
+        InsightsDispatcher(final boolean present) {
+            this.present = present;
+        }
+
+        @Override
+        public MockResponse dispatch(final RecordedRequest request) {
+            final String path = request.getPath().replaceFirst("\\?.*", "");
+            final String method = request.getMethod();
+            requests.add(method + " " + path.substring(path.indexOf("/reports/")));
+
+            if ("GET".equals(method) && path.endsWith("/annotations")) {
+                return present
+                        ? new MockResponse().setBody(payloadFromResource("/annotations.json")).setResponseCode(200)
+                        : new MockResponse().setBody(payloadFromResource("/insight-report-error.json")).setResponseCode(404);
+            } else if ("GET".equals(method)) {
+                return present
+                        ? new MockResponse().setBody(payloadFromResource("/insight-report.json")).setResponseCode(200)
+                        : new MockResponse().setBody(payloadFromResource("/insight-report-error.json")).setResponseCode(404);
+            } else if ("PUT".equals(method)) {
+                return new MockResponse().setBody(payloadFromResource("/insight-report.json")).setResponseCode(200);
+            }
+            return new MockResponse().setResponseCode(204);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.retry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.domain.common.RequestStatus;
+import com.cdancy.bitbucket.rest.domain.pullrequest.PullRequest;
+import com.cdancy.bitbucket.rest.features.PullRequestApi;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link VersionedPullRequests} class.
+ */
+@Test(groups = "unit", testName = "VersionedPullRequestsMockTest")
+public class VersionedPullRequestsMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+    private final String pullRequestPath = "/rest/api/1.0/projects/PRJ/repos/my-repo/pull-requests/101";
+
+    private final RetryPolicy quickRetries = RetryPolicy.builder()
+            .maxAttempts(2)
+            .backoff(1, 1, TimeUnit.MILLISECONDS)
+            .build();
+
+    public void testMergeReadsLatestVersion() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request.json")).setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-merge.json")).setResponseCode(200));
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final PullRequest merged = VersionedPullRequests.builder(baseApi.pullRequestApi()).build()
+                    .merge(projectKey, repoKey, 101);
+            assertThat(merged.errors()).isEmpty();
+            assertThat(merged.state()).isEqualTo("MERGED");
+
+            assertThat(server.takeRequest().getPath()).isEqualTo(pullRequestPath);
+            assertThat(server.takeRequest().getPath()).isEqualTo(pullRequestPath + "/merge?version=1");
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testRetryStaleCachedVersion() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request.json")).setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-delete-invalid-version.json")).setResponseCode(409));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request.json")).setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-decline.json")).setResponseCode(200));
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final PullRequestApi api = baseApi.pullRequestApi();
+            final PullRequest cached = api.get(projectKey, repoKey, 101);
+            server.takeRequest();
+
+            final PullRequest declined = VersionedPullRequests.builder(api).retryPolicy(quickRetries).build()
+                    .decline(projectKey, repoKey, cached);
+            assertThat(declined.errors()).isEmpty();
+            assertThat(declined.state()).isEqualTo("DECLINED");
+
+            // the cached version is tried first, and only read again once out of date
+            assertThat(server.takeRequest().getPath()).isEqualTo(pullRequestPath + "/decline?version=1");
+            assertThat(server.takeRequest().getPath()).isEqualTo(pullRequestPath);
+            assertThat(server.takeRequest().getPath()).isEqualTo(pullRequestPath + "/decline?version=1");
+            assertThat(server.getRequestCount()).isEqualTo(4);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testGiveUpAfterMaxAttempts() throws Exception {
+        final MockWebServer server = mockWebServer();
+        for (int i = 0; i < 2; i++) {
+            server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request.json")).setResponseCode(200));
+            server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-delete-invalid-version.json")).setResponseCode(409));
+        }
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final RequestStatus status = VersionedPullRequests.builder(baseApi.pullRequestApi()).retryPolicy(quickRetries).build()
+                    .delete(projectKey, repoKey, 101);
+            assertThat(status.value()).isFalse();
+            assertThat(VersionedPullRequests.isOutOfDate(status.errors())).isTrue();
+            assertThat(server.getRequestCount()).isEqualTo(4);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testOtherFailuresNotRetried() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request.json")).setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-delete-merged.json")).setResponseCode(409));
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final RequestStatus status = VersionedPullRequests.builder(baseApi.pullRequestApi()).retryPolicy(quickRetries).build()
+                    .delete(projectKey, repoKey, 101);
+            assertThat(status.value()).isFalse();
+            assertThat(status.errors()).isNotEmpty();
+            assertThat(VersionedPullRequests.isOutOfDate(status.errors())).isFalse();
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testReadFailureReturned() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/pull-request-not-exist.json")).setResponseCode(404));
+
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final PullRequest reopened = VersionedPullRequests.builder(baseApi.pullRequestApi()).build()
+                    .reopen(projectKey, repoKey, 101);
+            assertThat(reopened.errors()).isNotEmpty();
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.snapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketAsyncApi;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.snapshot.PullRequestSnapshot.Part;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * Mock tests for the {@link PullRequestSnapshots} class.
+ */
+@Test(groups = "unit", testName = "PullRequestSnapshotsMockTest")
+public class PullRequestSnapshotsMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+    private final String headCommit = "930228bb501e07c2653771858320873d94518e33";
+
+    public void testSnapshotFetchesEveryPart() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final List<String> paths = new CopyOnWriteArrayList<>();
+        server.setDispatcher(new SnapshotDispatcher(paths, 0));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).build()) {
+            final PullRequestSnapshot snapshot = client.asyncApi()
+                    .pullRequestSnapshot(projectKey, repoKey, 101, 10, TimeUnit.SECONDS)
+                    .get();
+
+            assertThat(snapshot.complete()).isTrue();
+            assertThat(snapshot.pullRequest().id()).isEqualTo(101);
+            assertThat(snapshot.mergeStatus().canMerge()).isTrue();
+            assertThat(snapshot.participants().values()).isNotEmpty();
+            assertThat(snapshot.activities().values()).isNotEmpty();
+            assertThat(snapshot.buildSummary().successful()).isEqualTo(3);
+            assertThat(snapshot.insightReports().values()).isNotEmpty();
+
+            assertThat(server.getRequestCount()).isEqualTo(6);
+            assertThat(paths).contains("/rest/build-status/1.0/commits/stats/" + headCommit);
+            assertThat(paths).anyMatch(path -> path.startsWith("/rest/insights/1.0/projects/" + projectKey
+                    + "/repos/" + repoKey + "/commits/" + headCommit + "/reports"));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testSnapshotHonorsDeadline() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.setDispatcher(new SnapshotDispatcher(new CopyOnWriteArrayList<>(), 3000));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).build()) {
+            final long start = System.nanoTime();
+            final PullRequestSnapshot snapshot = client.asyncApi()
+                    .pullRequestSnapshot(projectKey, repoKey, 101, 1, TimeUnit.SECONDS)
+                    .get();
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertThat(elapsedMillis).isLessThan(2500);
+            assertThat(snapshot.complete()).isFalse();
+            assertThat(snapshot.missing()).containsExactly(Part.ACTIVITIES);
+            assertThat(snapshot.activities()).isNull();
+            assertThat(snapshot.pullRequest()).isNotNull();
+            assertThat(snapshot.buildSummary()).isNotNull();
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testSnapshotCancelsQueuedCallsAtDeadline() throws Exception {
+        final MockWebServer server = mockWebServer();
+        server.setDispatcher(new SnapshotDispatcher(new CopyOnWriteArrayList<>(), 3000));
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).build();
+                final BitbucketAsyncApi asyncApi = new BitbucketAsyncApi(client.api(), null, 1)) {
+            final PullRequestSnapshot snapshot = PullRequestSnapshots
+                    .fetch(asyncApi, projectKey, repoKey, 101, 1, TimeUnit.SECONDS)
+                    .get();
+            assertThat(snapshot.missing()).containsExactlyInAnyOrder(Part.ACTIVITIES, Part.BUILD_SUMMARY, Part.INSIGHT_REPORTS);
+
+            // the build summary and insight reports were queued behind the
+            // activities and must not be sent once these come back.
+            Thread.sleep(3000);
+            assertThat(server.getRequestCount()).isEqualTo(4);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testSnapshotSkipsHeadCommitWhenPullRequestFails() throws Exception {
+        final MockWebServer server = mockWebServer();
+        final List<String> paths = new CopyOnWriteArrayList<>();
+        server.setDispatcher(new SnapshotDispatcher(paths, 0) {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                if (request.getPath().endsWith("/pull-requests/101")) {
+                    paths.add(request.getPath());
+                    return new MockResponse().setBody(payloadFromResource("/pull-request-not-exist.json")).setResponseCode(404);
+                }
+                return super.dispatch(request);
+            }
+        });
+
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).build()) {
+            final PullRequestSnapshot snapshot = client.asyncApi()
+                    .pullRequestSnapshot(projectKey, repoKey, 101, 10, TimeUnit.SECONDS)
+                    .get();
+
+            assertThat(snapshot.pullRequest().errors()).isNotEmpty();
+            assertThat(snapshot.missing()).containsExactlyInAnyOrder(Part.BUILD_SUMMARY, Part.INSIGHT_REPORTS);
+            assertThat(server.getRequestCount()).isEqualTo(4);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Serves every endpoint making up a snapshot, delaying the activities by the passed millis.
+     */
+    private class SnapshotDispatcher extends Dispatcher {
+
+        private final List<String> paths;
+        private final long activitiesDelayMillis;
+
+        SnapshotDispatcher(final List<String> paths, final long activitiesDelayMillis) {
+            this.paths = paths;
+            this.activitiesDelayMillis = activitiesDelayMillis;
+        }
+
+        @Override
+        public MockResponse dispatch(final RecordedRequest request) {
+            final String path = request.getPath();
+            paths.add(path);
+            if (path.contains("/merge")) {
+                return ok("/pull-request-can-merge-succeed.json");
+            } else if (path.contains("/participants")) {
+                return ok("/pull-request-participants.json");
+            } else if (path.contains("/activities")) {
+                return ok("/pull-request-activities.json").setBodyDelay(activitiesDelayMillis, TimeUnit.MILLISECONDS);
+            } else if (path.startsWith("/rest/build-status/")) {
+                return ok("/build-summary.json");
+            } else if (path.startsWith("/rest/insights/")) {
+                return ok("/insight-report-page.json");
+            } else if (path.contains("/pull-requests/101")) {
+                return ok("/pull-request.json");
+            }
+            return new MockResponse().setResponseCode(404);
+        }
+
+        private MockResponse ok(final String resource) {
+            return new MockResponse().setBody(payloadFromResource(resource)).setResponseCode(200);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.sync;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.BitbucketApiMetadata;
+import com.cdancy.bitbucket.rest.exception.PageFetchException;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link CommitSync} class.
+ */
+@Test(groups = "unit", testName = "CommitSyncMockTest")
+public class CommitSyncMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+    private final String ref = "master";
+    private final String commitsPath = "/rest/api/" + BitbucketApiMetadata.API_VERSION
+            + "/projects/" + projectKey + "/repos/" + repoKey + "/commits";
+
+    public void testSyncEntireHistoryThenOnlyNewCommits() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(page(false, 2, commit("c3"), commit("c2")));
+        server.enqueue(page(true, 0, commit("c1")));
+        server.enqueue(page(true, 0, commit("c5"), commit("c4")));
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final CommitSync commitSync = new CommitSync(baseApi.commitsApi(), new InMemoryCommitCursorStore(), 2);
+
+            final List<String> synced = Lists.newArrayList();
+            assertThat(commitSync.sync(projectKey, repoKey, ref, commit -> synced.add(commit.id()))).isEqualTo(3);
+            assertThat(synced).containsExactly("c3", "c2", "c1");
+            assertThat(commitSync.cursor(projectKey, repoKey, ref)).isEqualTo(CommitCursor.create("c3", null, 0));
+
+            synced.clear();
+            assertThat(commitSync.sync(projectKey, repoKey, ref, commit -> synced.add(commit.id()))).isEqualTo(2);
+            assertThat(synced).containsExactly("c5", "c4");
+            assertThat(commitSync.cursor(projectKey, repoKey, ref)).isEqualTo(CommitCursor.create("c5", null, 0));
+
+            assertSent(server, "GET", commitsPath, query(null, ref, 0));
+            assertSent(server, "GET", commitsPath, query(null, "c3", 2));
+            assertSent(server, "GET", commitsPath, query("c3", ref, 0));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testSyncResumesFromCheckpoint() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(page(false, 2, commit("c3"), commit("c2")));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/commit-error.json")).setResponseCode(404));
+        server.enqueue(page(true, 0, commit("c1")));
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final CommitSync commitSync = new CommitSync(baseApi.commitsApi(), new InMemoryCommitCursorStore(), 2);
+
+            final List<String> synced = Lists.newArrayList();
+            try {
+                commitSync.sync(projectKey, repoKey, ref, commit -> synced.add(commit.id()));
+                fail("Expected a PageFetchException");
+            } catch (final PageFetchException e) {
+                assertThat(e.errors()).isNotEmpty();
+            }
+            assertThat(synced).containsExactly("c3", "c2");
+            assertThat(commitSync.cursor(projectKey, repoKey, ref)).isEqualTo(CommitCursor.create(null, "c3", 2));
+
+            assertThat(commitSync.sync(projectKey, repoKey, ref, commit -> synced.add(commit.id()))).isEqualTo(1);
+            assertThat(synced).containsExactly("c3", "c2", "c1");
+            assertThat(commitSync.cursor(projectKey, repoKey, ref)).isEqualTo(CommitCursor.create("c3", null, 0));
+
+            assertSent(server, "GET", commitsPath, query(null, ref, 0));
+            assertSent(server, "GET", commitsPath, query(null, "c3", 2));
+            assertSent(server, "GET", commitsPath, query(null, "c3", 2));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testFileCommitCursorStoreSurvivesReopening() throws Exception {
+        final Path directory = Files.createTempDirectory("commit-cursors");
+        final Path file = directory.resolve("cursors.properties");
+        try {
+            new FileCommitCursorStore(file).save(projectKey, repoKey, ref, CommitCursor.create("c3", "c5", 100));
+            new FileCommitCursorStore(file).save(projectKey, "other-repo", ref, CommitCursor.create(null, null, 0));
+
+            final FileCommitCursorStore reopened = new FileCommitCursorStore(file);
+            assertThat(reopened.load(projectKey, repoKey, ref)).isEqualTo(CommitCursor.create("c3", "c5", 100));
+            assertThat(reopened.load(projectKey, "other-repo", ref)).isEqualTo(CommitCursor.initial());
+            assertThat(reopened.load(projectKey, repoKey, "develop")).isNull();
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private Map<String, ?> query(final String since, final String until, final int start) {
+        final ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+        if (since != null) {
+            builder.put("since", since);
+        }
+        return builder.put("until", until).put("limit", 2).put("start", start).build();
+    }
+
+    private static MockResponse page(final boolean isLastPage, final int nextPageStart, final String... commits) {
+        final String body = "{\"size\": " + commits.length
+                + ", \"limit\": 2"
+                + ", \"start\": 0"
+                + ", \"isLastPage\": " + isLastPage
+                + ", \"nextPageStart\": " + nextPageStart
+                + ", \"values\": [" + String.join(", ", commits) + "]}";
+        return new MockResponse().setBody(body).setResponseCode(200);
+    }
+
+    private static String commit(final String id) {
+        return "{\"id\": \"" + id + "\", \"displayId\": \"" + id + "\", \"authorTimestamp\": 1548720847000,"
+                + " \"message\": \"commit " + id + "\", \"parents\": []}";
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.sync;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketApi;
+import com.cdancy.bitbucket.rest.BitbucketApiMetadata;
+import com.cdancy.bitbucket.rest.domain.activities.Activities;
+import com.google.common.collect.ImmutableMap;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link IncrementalActivityReader} class.
+ */
+@Test(groups = "unit", testName = "IncrementalActivityReaderMockTest")
+public class IncrementalActivityReaderMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+    private final String activitiesPath = "/rest/api/" + BitbucketApiMetadata.API_VERSION
+            + "/projects/" + projectKey + "/repos/" + repoKey + "/pull-requests/101/activities";
+
+    public void testReadEntireHistory() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(page(false, 2, activity(105, 5000), activity(104, 4000)));
+        server.enqueue(page(true, 0, activity(103, 3000)));
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final IncrementalActivityReader reader = new IncrementalActivityReader(baseApi.pullRequestApi(), 2, 50);
+            final ActivityUpdates updates = reader.read(projectKey, repoKey, 101, null);
+
+            assertThat(updates.activities().stream().map(Activities::id).collect(Collectors.toList()))
+                    .containsExactly(103L, 104L, 105L);
+            assertThat(updates.watermark()).isEqualTo(ActivityWatermark.create(105, 5000));
+            assertThat(updates.pagesFetched()).isEqualTo(2);
+
+            assertSent(server, "GET", activitiesPath, ImmutableMap.of("limit", 2, "start", 0));
+            assertSent(server, "GET", activitiesPath, ImmutableMap.of("limit", 50, "start", 2));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testReadStopsAtWatermark() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(page(false, 3, activity(107, 7000), activity(106, 6000), activity(105, 5000)));
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final IncrementalActivityReader reader = new IncrementalActivityReader(baseApi.pullRequestApi());
+            final ActivityUpdates updates = reader.read(projectKey, repoKey, 101, ActivityWatermark.create(105, 5000));
+
+            assertThat(updates.activities().stream().map(Activities::id).collect(Collectors.toList()))
+                    .containsExactly(106L, 107L);
+            assertThat(updates.watermark()).isEqualTo(ActivityWatermark.create(107, 7000));
+            assertThat(updates.pagesFetched()).isEqualTo(1);
+            assertThat(server.getRequestCount()).isEqualTo(1);
+
+            assertSent(server, "GET", activitiesPath,
+                    ImmutableMap.of("limit", IncrementalActivityReader.DEFAULT_FIRST_PAGE_LIMIT, "start", 0));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testReadWithNothingNew() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(page(false, 2, activity(105, 5000), activity(104, 4000)));
+        try (final BitbucketApi baseApi = api(server.getUrl("/"))) {
+            final ActivityWatermark since = ActivityWatermark.create(105, 5000);
+            final ActivityUpdates updates = new IncrementalActivityReader(baseApi.pullRequestApi())
+                    .read(projectKey, repoKey, 101, since);
+
+            assertThat(updates.activities()).isEmpty();
+            assertThat(updates.watermark()).isEqualTo(since);
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static MockResponse page(final boolean isLastPage, final int nextPageStart, final String... activities) {
+        final String body = "{\"size\": " + activities.length
+                + ", \"limit\": " + activities.length
+                + ", \"start\": 0"
+                + ", \"isLastPage\": " + isLastPage
+                + ", \"nextPageStart\": " + nextPageStart
+                + ", \"values\": [" + String.join(", ", activities) + "]}";
+        return new MockResponse().setBody(body).setResponseCode(200);
+    }
+
+    private static String activity(final long id, final long createdDate) {
+        return "{\"id\": " + id
+                + ", \"createdDate\": " + createdDate
+                + ", \"action\": \"COMMENTED\""
+                + ", \"user\": {\"name\": \"jdoe\", \"emailAddress\": \"jdoe@example.com\", \"id\": 1,"
+                + " \"displayName\": \"John Doe\", \"active\": true, \"slug\": \"jdoe\", \"type\": \"NORMAL\"}}";
+    }
+}
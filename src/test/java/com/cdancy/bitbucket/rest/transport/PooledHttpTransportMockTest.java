@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cdancy.bitbucket.rest.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.cdancy.bitbucket.rest.BaseBitbucketMockTest;
+import com.cdancy.bitbucket.rest.BitbucketClient;
+import com.cdancy.bitbucket.rest.domain.repository.Repository;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link PooledHttpTransport} class.
+ */
+@Test(groups = "unit", testName = "PooledHttpTransportMockTest")
+public class PooledHttpTransportMockTest extends BaseBitbucketMockTest {
+
+    private final String projectKey = "PRJ";
+    private final String repoKey = "my-repo";
+
+    public void testReusesConnections() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        final int requests = 3;
+        for (int i = 0; i < requests; i++) {
+            server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+        }
+
+        final PooledHttpTransport transport = PooledHttpTransport.builder()
+                .maxIdleConnections(4)
+                .idleTimeout(1, TimeUnit.MINUTES)
+                .build();
+        try (final BitbucketClient client = clientBuilder(server.getUrl("/")).pooledTransport(transport).build()) {
+            for (int i = 0; i < requests; i++) {
+                final Repository repository = client.api().repositoryApi().get(projectKey, repoKey);
+                assertThat(repository.errors()).isEmpty();
+            }
+
+            for (int i = 0; i < requests; i++) {
+                assertThat(server.takeRequest().getSequenceNumber()).isEqualTo(i);
+            }
+            assertThat(transport.connectionCount()).isEqualTo(1);
+            assertThat(transport.idleConnectionCount()).isEqualTo(1);
+
+            transport.evictAll();
+            assertThat(transport.connectionCount()).isEqualTo(0);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testSharesPoolAndRouteLimitAmongstClients() throws Exception {
+        final MockWebServer server = mockWebServer();
+
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(payloadFromResource("/repository.json")).setResponseCode(200));
+
+        final PooledHttpTransport transport = PooledHttpTransport.builder().maxConnectionsPerRoute(2).build();
+        try (final BitbucketClient first = clientBuilder(server.getUrl("/")).pooledTransport(transport).build();
+                final BitbucketClient second = clientBuilder(server.getUrl("/")).pooledTransport(transport).build()) {
+            assertThat(first.api().repositoryApi().get(projectKey, repoKey).errors()).isEmpty();
+            assertThat(second.api().repositoryApi().get(projectKey, repoKey).errors()).isEmpty();
+
+            assertThat(server.takeRequest().getSequenceNumber()).isEqualTo(0);
+            assertThat(server.takeRequest().getSequenceNumber()).isEqualTo(1);
+            assertThat(transport.connectionCount()).isEqualTo(1);
+            assertThat(transport.availablePermits(server.getUrl("/").toURI())).isEqualTo(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+}